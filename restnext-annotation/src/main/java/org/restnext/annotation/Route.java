@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a static route provider method, the alternative to the route XML files.
+ *
+ * <p>The annotated method must be static and not private, respecting the signature
+ * {@code static Response anyMethodName(Request request)}, or returning a
+ * {@code CompletionStage<Response>} for an asynchronous route. At build time the route index
+ * processor writes an index of the annotated methods into the jar, so the route scanner
+ * registers them without parsing XML or compiling the providers at runtime.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Route {
+
+  /**
+   * The route path.
+   *
+   * @return the path
+   */
+  String path();
+
+  /**
+   * The allowed http methods, all methods when empty.
+   *
+   * @return the http methods
+   */
+  String[] methods() default {};
+
+  /**
+   * The allowed media types, all media types when empty.
+   *
+   * @return the media types
+   */
+  String[] medias() default {};
+
+  /**
+   * Enable the route.
+   *
+   * @return true to enable, otherwise false
+   */
+  boolean enable() default true;
+
+  /**
+   * How the route receives the request body. A streaming route method must return the request
+   * body consumer ({@code static BodyConsumer anyMethodName(Request request)}).
+   *
+   * @return the body mode
+   */
+  Body body() default Body.AGGREGATE;
+
+  /**
+   * The maximum request body size in bytes, the server default when negative.
+   *
+   * @return the maximum request body size
+   */
+  long maxContentLength() default -1;
+
+  /**
+   * The name of the server provider executor running the route provider, the server default
+   * when empty.
+   *
+   * @return the provider executor name
+   */
+  String executor() default "";
+
+  /**
+   * Run the route provider on the channel thread, without any handoff to a provider executor,
+   * for the providers that never block.
+   *
+   * @return true to run the provider inline, otherwise false
+   */
+  boolean inline() default false;
+
+  /**
+   * The time in milliseconds the server waits for the route response, the server default when
+   * negative and none when zero.
+   *
+   * @return the route timeout
+   */
+  long timeout() default -1;
+
+  /**
+   * How the route receives the request body.
+   */
+  enum Body {
+
+    /**
+     * The body is buffered and the route provider receives the whole request.
+     */
+    AGGREGATE,
+
+    /**
+     * The body is never buffered, the route body consumer receives its chunks as they arrive.
+     */
+    STREAM,
+
+    /**
+     * The route does not accept any request body.
+     */
+    REJECT
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a static security provider method, the alternative to the security XML files.
+ *
+ * <p>The annotated method must be static and not private, respecting the signature
+ * {@code static boolean anyMethodName(Request request)}.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Secured {
+
+  /**
+   * The secured path.
+   *
+   * @return the path
+   */
+  String path();
+
+  /**
+   * Enable the security.
+   *
+   * @return true to enable, otherwise false
+   */
+  boolean enable() default true;
+}
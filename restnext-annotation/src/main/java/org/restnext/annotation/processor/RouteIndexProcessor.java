@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.annotation.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+
+import org.restnext.annotation.Route;
+import org.restnext.annotation.Secured;
+
+/**
+ * Writes the route and security index of the {@link Route} and {@link Secured} annotated
+ * methods at build time.
+ *
+ * <p>For each class declaring annotated methods an index class is generated in the same package,
+ * building the mappings with plain method references, and the index classes are listed in the
+ * {@code META-INF/services/org.restnext.route.RouteIndex} and
+ * {@code META-INF/services/org.restnext.security.SecurityIndex} files of the jar.
+ */
+@SupportedAnnotationTypes({
+    "org.restnext.annotation.Route",
+    "org.restnext.annotation.Secured"
+})
+public final class RouteIndexProcessor extends AbstractProcessor {
+
+  static final String ROUTE_INDEX = "org.restnext.route.RouteIndex";
+  static final String SECURITY_INDEX = "org.restnext.security.SecurityIndex";
+
+  private static final String REQUEST = "org.restnext.core.http.Request";
+  private static final String RESPONSE = "org.restnext.core.http.Response";
+  private static final List<String> ASYNC_RESPONSES = Arrays.asList(
+      "java.util.concurrent.CompletionStage<" + RESPONSE + ">",
+      "java.util.concurrent.CompletableFuture<" + RESPONSE + ">");
+  private static final String BODY_CONSUMER = "org.restnext.core.http.BodyConsumer";
+  private static final String BODY = "org.restnext.route.Route.Mapping.Body";
+  private static final String REQUEST_METHOD = "org.restnext.core.http.Request.Method";
+  private static final String MEDIA_TYPE = "org.restnext.core.http.MediaType";
+
+  private final Set<String> routeIndexes = new TreeSet<>();
+  private final Set<String> securityIndexes = new TreeSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(final Set<? extends TypeElement> annotations,
+                         final RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      writeServices(ROUTE_INDEX, routeIndexes);
+      writeServices(SECURITY_INDEX, securityIndexes);
+      return false;
+    }
+
+    final Map<TypeElement, List<String>> routes = new LinkedHashMap<>();
+    for (Element element : roundEnv.getElementsAnnotatedWith(Route.class)) {
+      final ExecutableElement method = (ExecutableElement) element;
+      final boolean streaming = method.getAnnotation(Route.class).body() == Route.Body.STREAM;
+      if (isProvider(method, streaming
+          ? new String[] {BODY_CONSUMER}
+          : new String[] {RESPONSE, ASYNC_RESPONSES.get(0), ASYNC_RESPONSES.get(1)})) {
+        routes.computeIfAbsent((TypeElement) method.getEnclosingElement(),
+            type -> new ArrayList<>()).add(routeMapping(method, streaming));
+      }
+    }
+
+    final Map<TypeElement, List<String>> securities = new LinkedHashMap<>();
+    for (Element element : roundEnv.getElementsAnnotatedWith(Secured.class)) {
+      final ExecutableElement method = (ExecutableElement) element;
+      if (isProvider(method, "boolean", Boolean.class.getName())) {
+        securities.computeIfAbsent((TypeElement) method.getEnclosingElement(),
+            type -> new ArrayList<>()).add(securityMapping(method));
+      }
+    }
+
+    routes.forEach((type, mappings) -> writeIndex(type, "_RouteIndex", ROUTE_INDEX,
+        "org.restnext.route.Route.Mapping", mappings, routeIndexes));
+    securities.forEach((type, mappings) -> writeIndex(type, "_SecurityIndex", SECURITY_INDEX,
+        "org.restnext.security.Security.Mapping", mappings, securityIndexes));
+    return true;
+  }
+
+  // private methods
+
+  private boolean isProvider(final ExecutableElement method, final String... returnTypes) {
+    final Set<Modifier> modifiers = method.getModifiers();
+    if (!modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.PRIVATE)) {
+      return error(method, "The provider method must be static and not private");
+    }
+    if (method.getParameters().size() != 1
+        || !REQUEST.equals(method.getParameters().get(0).asType().toString())) {
+      return error(method, "The provider method must have a single " + REQUEST + " parameter");
+    }
+    if (!Arrays.asList(returnTypes).contains(method.getReturnType().toString())) {
+      return error(method, "The provider method must return " + String.join(" or ", returnTypes));
+    }
+    for (Element type = method.getEnclosingElement(); type.getKind() != ElementKind.PACKAGE;
+        type = type.getEnclosingElement()) {
+      if (type.getModifiers().contains(Modifier.PRIVATE)) {
+        return error(method, "The provider method can not be declared in a private class");
+      }
+    }
+    return true;
+  }
+
+  private static boolean isAsync(final ExecutableElement method) {
+    return ASYNC_RESPONSES.contains(method.getReturnType().toString());
+  }
+
+  private String routeMapping(final ExecutableElement method, final boolean streaming) {
+    final Route route = method.getAnnotation(Route.class);
+    final String factory = streaming ? "stream(" : isAsync(method) ? "async(" : "uri(";
+    final StringBuilder mapping = new StringBuilder("org.restnext.route.Route.Mapping.")
+        .append(factory)
+        .append(literal(route.path())).append(", ").append(methodReference(method)).append(')');
+    if (!route.enable()) {
+      mapping.append(".enable(false)");
+    }
+    if (route.body() == Route.Body.REJECT) {
+      mapping.append(".body(").append(BODY).append(".REJECT)");
+    }
+    if (route.maxContentLength() >= 0) {
+      mapping.append(".maxContentLength(").append(route.maxContentLength()).append("L)");
+    }
+    if (!route.executor().isEmpty()) {
+      if (route.inline()) {
+        error(method, "The provider method can not run inline and on an executor");
+      }
+      mapping.append(".executor(").append(literal(route.executor())).append(')');
+    }
+    if (route.inline()) {
+      mapping.append(".inline(true)");
+    }
+    if (route.timeout() >= 0) {
+      mapping.append(".timeout(java.time.Duration.ofMillis(").append(route.timeout())
+          .append("L))");
+    }
+    if (route.methods().length > 0) {
+      validateMethods(method, route.methods());
+      mapping.append(Arrays.stream(route.methods())
+          .map(httpMethod -> REQUEST_METHOD + '.' + httpMethod)
+          .collect(Collectors.joining(", ", ".methods(", ")")));
+    }
+    if (route.medias().length > 0) {
+      mapping.append(Arrays.stream(route.medias())
+          .map(media -> MEDIA_TYPE + ".parse(" + literal(media) + ')')
+          .collect(Collectors.joining(", ", ".medias(", ")")));
+    }
+    return mapping.append(".build()").toString();
+  }
+
+  private String securityMapping(final ExecutableElement method) {
+    final Secured secured = method.getAnnotation(Secured.class);
+    final StringBuilder mapping = new StringBuilder("org.restnext.security.Security.Mapping.uri(")
+        .append(literal(secured.path())).append(", ").append(methodReference(method)).append(')');
+    if (!secured.enable()) {
+      mapping.append(".enable(false)");
+    }
+    return mapping.append(".build()").toString();
+  }
+
+  private void validateMethods(final ExecutableElement method, final String[] httpMethods) {
+    final TypeElement requestMethod = processingEnv.getElementUtils()
+        .getTypeElement(REQUEST_METHOD);
+    if (requestMethod == null) {
+      return;
+    }
+    final Set<String> constants = requestMethod.getEnclosedElements().stream()
+        .filter(element -> element.getKind() == ElementKind.ENUM_CONSTANT)
+        .map(element -> element.getSimpleName().toString())
+        .collect(Collectors.toSet());
+    for (String httpMethod : httpMethods) {
+      if (!constants.contains(httpMethod)) {
+        error(method, "Unknown http method " + httpMethod + ", expected one of " + constants);
+      }
+    }
+  }
+
+  private void writeIndex(final TypeElement type, final String suffix, final String index,
+                          final String mappingType, final List<String> mappings,
+                          final Set<String> indexes) {
+    final String packageName = processingEnv.getElementUtils().getPackageOf(type)
+        .getQualifiedName().toString();
+    final String simpleName = flatName(type) + suffix;
+    final String indexName = packageName.isEmpty() ? simpleName : packageName + '.' + simpleName;
+
+    try (Writer writer = processingEnv.getFiler().createSourceFile(indexName, type)
+        .openWriter()) {
+      if (!packageName.isEmpty()) {
+        writer.write("package " + packageName + ";\n\n");
+      }
+      writer.write("/**\n * Generated by " + getClass().getName() + ", do not edit.\n */\n");
+      writer.write("public final class " + simpleName + " implements " + index + " {\n\n");
+      writer.write("  @Override\n");
+      writer.write("  public java.util.List<" + mappingType + "> mappings() {\n");
+      writer.write(mappings.stream().collect(Collectors.joining(
+          ",\n        ", "    return java.util.Arrays.asList(\n        ", ");\n")));
+      writer.write("  }\n}\n");
+      indexes.add(indexName);
+    } catch (IOException e) {
+      error(type, "Could not write the index " + indexName + ": " + e.getMessage());
+    }
+  }
+
+  private void writeServices(final String index, final Set<String> indexes) {
+    if (indexes.isEmpty()) {
+      return;
+    }
+    final String location = "META-INF/services/" + index;
+    try (Writer writer = processingEnv.getFiler()
+        .createResource(StandardLocation.CLASS_OUTPUT, "", location).openWriter()) {
+      for (String indexName : indexes) {
+        writer.write(indexName + '\n');
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "Could not write the index " + location + ": " + e.getMessage());
+    }
+  }
+
+  private boolean error(final Element element, final String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    return false;
+  }
+
+  private static String methodReference(final ExecutableElement method) {
+    return ((TypeElement) method.getEnclosingElement()).getQualifiedName() + "::"
+        + method.getSimpleName();
+  }
+
+  private static String flatName(final TypeElement type) {
+    final StringJoiner joiner = new StringJoiner("_");
+    final List<String> names = new ArrayList<>();
+    for (Element element = type; element.getKind() != ElementKind.PACKAGE;
+        element = element.getEnclosingElement()) {
+      names.add(0, element.getSimpleName().toString());
+    }
+    names.forEach(joiner::add);
+    return joiner.toString();
+  }
+
+  private static String literal(final String value) {
+    final StringBuilder literal = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '"':
+          literal.append("\\\"");
+          break;
+        case '\\':
+          literal.append("\\\\");
+          break;
+        case '\n':
+          literal.append("\\n");
+          break;
+        case '\r':
+          literal.append("\\r");
+          break;
+        case '\t':
+          literal.append("\\t");
+          break;
+        default:
+          literal.append(c);
+      }
+    }
+    return literal.append('"').toString();
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.annotation.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.restnext.core.http.Request;
+import org.restnext.route.Route;
+import org.restnext.route.RouteIndex;
+import org.restnext.security.Security;
+import org.restnext.security.SecurityIndex;
+
+public class RouteIndexProcessorTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void writeRouteAndSecurityIndex() throws Exception {
+    final Path output = compile(true, "package test;\n"
+        + "import org.restnext.annotation.Route;\n"
+        + "import org.restnext.annotation.Secured;\n"
+        + "import org.restnext.core.http.BodyConsumer;\n"
+        + "import org.restnext.core.http.Request;\n"
+        + "import org.restnext.core.http.Response;\n"
+        + "public class Provider {\n"
+        + "  @Route(path = \"/ping\", methods = {\"GET\"}, medias = {\"text/plain\"},\n"
+        + "      inline = true)\n"
+        + "  public static Response ping(Request request) {\n"
+        + "    return Response.ok(\"pong\").build();\n"
+        + "  }\n"
+        + "  @Route(path = \"/regex/\\\\d+\", enable = false, body = Route.Body.REJECT,\n"
+        + "      executor = \"reports\")\n"
+        + "  static Response regex(Request request) {\n"
+        + "    return Response.ok().build();\n"
+        + "  }\n"
+        + "  @Route(path = \"/upload\", body = Route.Body.STREAM, maxContentLength = 1024)\n"
+        + "  static BodyConsumer upload(Request request) {\n"
+        + "    return null;\n"
+        + "  }\n"
+        + "  @Route(path = \"/async\", timeout = 2000)\n"
+        + "  static java.util.concurrent.CompletableFuture<Response> async(Request request) {\n"
+        + "    return java.util.concurrent.CompletableFuture.completedFuture(null);\n"
+        + "  }\n"
+        + "  @Secured(path = \"/ping\")\n"
+        + "  public static boolean secure(Request request) {\n"
+        + "    return true;\n"
+        + "  }\n"
+        + "}\n");
+
+    assertEquals(Collections.singletonList("test.Provider_RouteIndex"),
+        Files.readAllLines(output.resolve(RouteIndex.LOCATION), StandardCharsets.UTF_8));
+    assertEquals(Collections.singletonList("test.Provider_SecurityIndex"),
+        Files.readAllLines(output.resolve(SecurityIndex.LOCATION), StandardCharsets.UTF_8));
+
+    try (URLClassLoader classLoader = new URLClassLoader(
+        new URL[] {output.toUri().toURL()}, getClass().getClassLoader())) {
+      List<Route.Mapping> routes = classLoader.loadClass("test.Provider_RouteIndex")
+          .asSubclass(RouteIndex.class).getDeclaredConstructor().newInstance().mappings();
+      assertEquals(4, routes.size());
+      assertEquals("/ping", routes.get(0).getUri());
+      assertTrue(routes.get(0).isEnable());
+      assertEquals(Collections.singletonList(Request.Method.GET), routes.get(0).getMethods());
+      assertTrue(routes.get(0).isInline());
+      assertEquals("/regex/\\d+", routes.get(1).getUri());
+      assertFalse(routes.get(1).isEnable());
+      assertEquals(Route.Mapping.Body.REJECT, routes.get(1).getBody());
+      assertEquals("reports", routes.get(1).getExecutor());
+      assertTrue(routes.get(2).isStreaming());
+      assertEquals(1024, routes.get(2).getMaxContentLength());
+      assertTrue(routes.get(3).isAsync());
+      assertEquals(Duration.ofSeconds(2), routes.get(3).getTimeout());
+      assertNull(routes.get(0).getTimeout());
+
+      List<Security.Mapping> securities = classLoader.loadClass("test.Provider_SecurityIndex")
+          .asSubclass(SecurityIndex.class).getDeclaredConstructor().newInstance().mappings();
+      assertEquals(1, securities.size());
+      assertEquals("/ping", securities.get(0).getUri());
+    }
+  }
+
+  @Test
+  public void rejectInvalidProviderMethod() throws Exception {
+    compile(false, "package test;\n"
+        + "import org.restnext.annotation.Route;\n"
+        + "import org.restnext.core.http.Request;\n"
+        + "import org.restnext.core.http.Response;\n"
+        + "public class Invalid {\n"
+        + "  @Route(path = \"/instance\")\n"
+        + "  public Response instance(Request request) {\n"
+        + "    return Response.ok().build();\n"
+        + "  }\n"
+        + "  @Route(path = \"/method\", methods = {\"PATCHED\"})\n"
+        + "  public static Response method(Request request) {\n"
+        + "    return Response.ok().build();\n"
+        + "  }\n"
+        + "}\n");
+  }
+
+  private Path compile(boolean success, String source) throws IOException {
+    final Path sources = folder.newFolder("sources").toPath();
+    final Path output = folder.newFolder("output").toPath();
+    final String className = source.contains("class Provider") ? "Provider" : "Invalid";
+    final Path sourceFile = Files.createDirectories(sources.resolve("test"))
+        .resolve(className + ".java");
+    Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(
+        diagnostics, null, StandardCharsets.UTF_8)) {
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+          Arrays.asList("-classpath", classpath(), "-d", output.toString()), null,
+          fileManager.getJavaFileObjects(sourceFile.toFile()));
+      task.setProcessors(Collections.singletonList(new RouteIndexProcessor()));
+      assertEquals(diagnostics.getDiagnostics().toString(), success, task.call());
+    }
+    return output;
+  }
+
+  private static String classpath() {
+    // the surefire manifest only jar hides the test class path from java.class.path.
+    return System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+  }
+}
@@ -42,7 +42,11 @@ import java.nio.file.Paths;
 
 /**
  * Useful class for dynamically changing the classpath, adding classes during runtime.
+ *
+ * @deprecated the system class loader is not an {@link URLClassLoader} since Java 9 and the
+ *     classes added to it can never be unloaded, use {@link JarClassLoaders} instead.
  */
+@Deprecated
 public class ClasspathRegister {
 
   /**
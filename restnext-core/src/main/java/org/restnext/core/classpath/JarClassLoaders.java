@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.core.classpath;
+
+import java.io.Closeable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Isolated and unloadable class loaders, one child class loader for each hot deployed jar file.
+ *
+ * <p>When a jar is replaced or removed its class loader is released but never closed, since an
+ * in-flight request, an upload or an asynchronous stage may still be loading its classes. Its
+ * classes are unloaded, and its jar file closed, once nothing else references them and the
+ * garbage collector reclaims the class loader.
+ */
+public final class JarClassLoaders implements Closeable {
+
+  private final ClassLoader parent;
+  private final Map<Path, JarClassLoader> classLoaders = new HashMap<>();
+  private final ReferenceQueue<JarClassLoader> releasedQueue = new ReferenceQueue<>();
+  private final Set<ReleasedClassLoader> released = new HashSet<>();
+  private final AtomicLong loadedClassCount = new AtomicLong();
+  private final AtomicLong unloadedClassCount = new AtomicLong();
+
+  public JarClassLoaders() {
+    this(JarClassLoaders.class.getClassLoader());
+  }
+
+  public JarClassLoaders(final ClassLoader parent) {
+    this.parent = Objects.requireNonNull(parent, "parent");
+  }
+
+  /**
+   * Creates a new class loader for the jar file, which is not owned until
+   * {@link #put(Path, ClassLoader)} is called.
+   *
+   * @param jar the jar file
+   * @return the new class loader
+   */
+  public ClassLoader create(final Path jar) {
+    try {
+      return new JarClassLoader(jar.toUri().toURL(), parent, loadedClassCount);
+    } catch (MalformedURLException e) {
+      throw new IllegalArgumentException("Error, could not get path URL", e);
+    }
+  }
+
+  /**
+   * Own the class loader created for the jar file, releasing the one previously owned.
+   *
+   * @param jar         the jar file
+   * @param classLoader the class loader created by {@link #create(Path)}
+   */
+  public synchronized void put(final Path jar, final ClassLoader classLoader) {
+    if (!(classLoader instanceof JarClassLoader)) {
+      throw new IllegalArgumentException("The class loader was not created by this instance");
+    }
+    JarClassLoader previous = classLoaders.put(key(jar), (JarClassLoader) classLoader);
+    if (previous != null && previous != classLoader) {
+      release(previous);
+    }
+  }
+
+  /**
+   * Get the class loader owned for the jar file.
+   *
+   * @param jar the jar file
+   * @return the class loader or {@code null}
+   */
+  public synchronized ClassLoader get(final Path jar) {
+    return classLoaders.get(key(jar));
+  }
+
+  /**
+   * Release the class loader owned for the jar file.
+   *
+   * @param jar the jar file
+   */
+  public synchronized void remove(final Path jar) {
+    JarClassLoader classLoader = classLoaders.remove(key(jar));
+    if (classLoader != null) {
+      release(classLoader);
+    }
+  }
+
+  /**
+   * Discard a class loader created by {@link #create(Path)} but never owned.
+   *
+   * @param classLoader the class loader
+   */
+  public synchronized void discard(final ClassLoader classLoader) {
+    if (classLoader instanceof JarClassLoader && !classLoaders.containsValue(classLoader)) {
+      release((JarClassLoader) classLoader);
+    }
+  }
+
+  /**
+   * Release every owned class loader.
+   */
+  @Override
+  public synchronized void close() {
+    classLoaders.values().forEach(this::release);
+    classLoaders.clear();
+  }
+
+  /**
+   * The number of classes loaded by the jar class loaders since this instance was created.
+   *
+   * @return the loaded class count
+   */
+  public long getLoadedClassCount() {
+    return loadedClassCount.get();
+  }
+
+  /**
+   * The number of classes unloaded, that is the classes of the released class loaders already
+   * reclaimed by the garbage collector.
+   *
+   * @return the unloaded class count
+   */
+  public synchronized long getUnloadedClassCount() {
+    expungeUnloaded();
+    return unloadedClassCount.get();
+  }
+
+  /**
+   * The number of released class loaders not yet reclaimed by the garbage collector, a value
+   * that keeps growing between redeploys means that something still references the old classes.
+   *
+   * @return the pending released class loader count
+   */
+  public synchronized int getPendingUnloadCount() {
+    expungeUnloaded();
+    return released.size();
+  }
+
+  // only tracked, closing it would break the classes still running with a NoClassDefFoundError.
+  private void release(final JarClassLoader classLoader) {
+    released.add(new ReleasedClassLoader(classLoader, releasedQueue));
+    expungeUnloaded();
+  }
+
+  private void expungeUnloaded() {
+    Reference<? extends JarClassLoader> reference;
+    while ((reference = releasedQueue.poll()) != null) {
+      ReleasedClassLoader releasedClassLoader = (ReleasedClassLoader) reference;
+      if (released.remove(releasedClassLoader)) {
+        unloadedClassCount.addAndGet(releasedClassLoader.classCount.get());
+      }
+    }
+  }
+
+  private static Path key(final Path jar) {
+    return Objects.requireNonNull(jar, "jar").getFileName();
+  }
+
+  private static final class JarClassLoader extends URLClassLoader {
+
+    static {
+      registerAsParallelCapable();
+    }
+
+    private final AtomicInteger classCount = new AtomicInteger();
+    private final AtomicLong loadedClassCount;
+
+    JarClassLoader(final URL url, final ClassLoader parent, final AtomicLong loadedClassCount) {
+      super(new URL[] {url}, parent);
+      this.loadedClassCount = loadedClassCount;
+    }
+
+    @Override
+    protected Class<?> findClass(final String name) throws ClassNotFoundException {
+      Class<?> clazz = super.findClass(name);
+      classCount.incrementAndGet();
+      loadedClassCount.incrementAndGet();
+      return clazz;
+    }
+  }
+
+  private static final class ReleasedClassLoader extends WeakReference<JarClassLoader> {
+
+    // kept apart from the referent, which is gone when the reference is enqueued.
+    private final AtomicInteger classCount;
+
+    ReleasedClassLoader(final JarClassLoader classLoader,
+                        final ReferenceQueue<JarClassLoader> queue) {
+      super(classLoader, queue);
+      this.classCount = classLoader.classCount;
+    }
+  }
+}
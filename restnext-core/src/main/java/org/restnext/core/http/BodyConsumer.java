@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.core.http;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Consumes a request body chunk by chunk as it arrives, instead of receiving it fully buffered.
+ *
+ * <p>The next chunk is only read from the connection after the previous one was consumed, so a
+ * slow consumer slows down the client instead of buffering the body in memory.
+ */
+public interface BodyConsumer {
+
+  /**
+   * Consume a body chunk.
+   *
+   * @param chunk the read-only chunk, only valid during the call
+   * @throws Exception if the chunk could not be consumed, aborting the request
+   */
+  void onChunk(ByteBuffer chunk) throws Exception;
+
+  /**
+   * The body was fully consumed.
+   *
+   * @return the response
+   * @throws Exception if the response could not be created
+   */
+  Response onComplete() throws Exception;
+
+  /**
+   * The body could not be fully received, because of an error or the connection was closed.
+   *
+   * @param cause the cause
+   */
+  default void onError(Throwable cause) {
+  }
+}
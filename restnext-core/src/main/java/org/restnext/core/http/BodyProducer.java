@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.core.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * Produces a response body chunk by chunk as the connection can take it, instead of creating it
+ * fully in memory before the response is written.
+ *
+ * <p>The next chunk is only requested after the previous one was handed to the connection and
+ * the connection is writable, so a slow client slows down the producer instead of buffering the
+ * body in memory. The producer is called by the connection event loop and should not block.
+ */
+@FunctionalInterface
+public interface BodyProducer extends AutoCloseable {
+
+  /**
+   * Produce the next body chunk.
+   *
+   * @param allocator the allocator of the chunk buffers
+   * @return the chunk, owned by the connection from now on, or {@code null} if the body is
+   *     complete
+   * @throws Exception if the chunk could not be produced, aborting the response and closing the
+   *     connection
+   */
+  ByteBuf produce(ByteBufAllocator allocator) throws Exception;
+
+  /**
+   * The body was fully written, or could not be, because of an error or the connection was
+   * closed.
+   *
+   * @throws Exception if the producer could not be closed
+   */
+  @Override
+  default void close() throws Exception {
+  }
+}
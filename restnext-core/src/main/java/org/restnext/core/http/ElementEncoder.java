@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.core.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import java.util.function.Function;
+
+/**
+ * Encodes one element of a streamed response, such as a row of a large result set.
+ *
+ * @param <T> the element type
+ */
+@FunctionalInterface
+public interface ElementEncoder<T> {
+
+  /**
+   * Encode the element, without the delimiters of the response format.
+   *
+   * @param element the element
+   * @param out     the buffer to write the encoded element to
+   * @throws Exception if the element could not be encoded, aborting the response
+   */
+  void encode(T element, ByteBuf out) throws Exception;
+
+  /**
+   * An encoder writing the text of each element as UTF-8, such as its JSON representation.
+   *
+   * @param text the element text function
+   * @param <T>  the element type
+   * @return the element encoder
+   */
+  static <T> ElementEncoder<T> text(Function<? super T, ? extends CharSequence> text) {
+    return (element, out) -> ByteBufUtil.writeUtf8(out, text.apply(element));
+  }
+}
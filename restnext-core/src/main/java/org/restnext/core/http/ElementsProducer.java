@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.core.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Produces the elements of a stream or an iterator as newline delimited JSON or as a JSON
+ * array, batching the encoded elements into chunks of about the batch size.
+ *
+ * @param <T> the element type
+ */
+final class ElementsProducer<T> implements BodyProducer {
+
+  private final Format format;
+  private final Iterator<? extends T> elements;
+  // the source closed along with the producer, the stream or a closeable iterator.
+  private final AutoCloseable source;
+  private final ElementEncoder<? super T> encoder;
+  private final int batchSize;
+  private long count;
+  private boolean ended;
+
+  private ElementsProducer(Format format, Iterator<? extends T> elements, AutoCloseable source,
+                           ElementEncoder<? super T> encoder, int batchSize) {
+    this.format = format;
+    this.elements = elements;
+    this.source = source;
+    this.encoder = encoder;
+    this.batchSize = batchSize;
+  }
+
+  static <T> ElementsProducer<T> of(Format format, Stream<? extends T> elements,
+                                    ElementEncoder<? super T> encoder, int batchSize) {
+    return new ElementsProducer<>(format, elements.iterator(), elements, encoder, batchSize);
+  }
+
+  static <T> ElementsProducer<T> of(Format format, Iterator<? extends T> elements,
+                                    ElementEncoder<? super T> encoder, int batchSize) {
+    return new ElementsProducer<>(format, elements,
+        elements instanceof AutoCloseable ? (AutoCloseable) elements : null, encoder, batchSize);
+  }
+
+  @Override
+  public ByteBuf produce(ByteBufAllocator allocator) throws Exception {
+    if (ended) {
+      return null;
+    }
+    final ByteBuf batch = allocator.buffer(batchSize);
+    try {
+      if (count == 0 && format.open != 0) {
+        batch.writeByte(format.open);
+      }
+      while (batch.readableBytes() < batchSize && elements.hasNext()) {
+        if (count++ > 0 && format.separator != 0) {
+          batch.writeByte(format.separator);
+        }
+        encoder.encode(elements.next(), batch);
+        if (format.terminator != 0) {
+          batch.writeByte(format.terminator);
+        }
+      }
+      if (!elements.hasNext()) {
+        ended = true;
+        if (format.close != 0) {
+          batch.writeByte(format.close);
+        }
+      }
+      if (!batch.isReadable()) {
+        batch.release();
+        return null;
+      }
+      return batch;
+    } catch (Exception e) {
+      batch.release();
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    if (source != null) {
+      source.close();
+    }
+  }
+
+  /**
+   * The response format, written as single byte delimiters.
+   */
+  enum Format {
+
+    NDJSON(0, 0, '\n', 0),
+    JSON_ARRAY('[', ',', 0, ']');
+
+    private final int open;
+    private final int separator;
+    private final int terminator;
+    private final int close;
+
+    Format(int open, int separator, int terminator, int close) {
+      this.open = open;
+      this.separator = separator;
+      this.terminator = terminator;
+      this.close = close;
+    }
+  }
+}
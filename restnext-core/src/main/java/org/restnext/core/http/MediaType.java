@@ -39,6 +39,8 @@ public final class MediaType {
   public static final MediaType WILDCARD = MediaType.parse("*/*");
   public static final MediaType TEXT = MediaType.parse("text/plain");
   public static final MediaType TEXT_UTF8 = MediaType.parse(TEXT.mediaType + ";charset=utf-8");
+  public static final MediaType JSON = MediaType.parse("application/json");
+  public static final MediaType NDJSON = MediaType.parse("application/x-ndjson");
 
   private final String mediaType;
   private final String type;
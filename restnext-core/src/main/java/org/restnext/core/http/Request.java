@@ -16,8 +16,13 @@
 
 package org.restnext.core.http;
 
+import io.netty.buffer.ByteBuf;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.List;
 
@@ -31,8 +36,38 @@ public interface Request extends Message, Headers {
 
   MultivaluedMap<String, String> getParams();
 
+  /**
+   * A copy of the request body, only made on the first call.
+   *
+   * @return the body bytes or {@code null} if the request has no body
+   */
   byte[] getContent();
 
+  /**
+   * A read-only view of the request body, without copy. The view shares the reference count of
+   * the request, so it is only valid while the route provider handles the request, unless it is
+   * retained and later released by the caller.
+   *
+   * @return the body view, empty if the request has no body
+   */
+  ByteBuf getContentByteBuf();
+
+  /**
+   * A read-only view of the request body, without copy unless the body was received in several
+   * chunks. Only valid while the route provider handles the request.
+   *
+   * @return the body view, empty if the request has no body
+   */
+  ByteBuffer getContentByteBuffer();
+
+  /**
+   * A stream reading the request body, without copy. Only valid while the route provider
+   * handles the request.
+   *
+   * @return the body stream, empty if the request has no body
+   */
+  InputStream getContentStream();
+
   boolean hasContent();
 
   int getLength();
@@ -45,6 +80,20 @@ public interface Request extends Message, Headers {
 
   Charset charset();
 
+  /**
+   * The instant the response of this request is due, to propagate to the downstream calls.
+   *
+   * @return the deadline or {@code null} if the request has none
+   */
+  Instant getDeadline();
+
+  /**
+   * The time left until the response of this request is due, to bound the downstream calls.
+   *
+   * @return the remaining time, negative once expired, or {@code null} if the request has none
+   */
+  Duration getRemainingTime();
+
   Response.Builder evaluatePreconditions(EntityTag entityTag);
 
   Response.Builder evaluatePreconditions(Date lastModified);
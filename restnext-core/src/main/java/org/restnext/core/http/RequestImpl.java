@@ -26,9 +26,14 @@ import static io.netty.handler.codec.http.HttpHeaderNames.IF_NONE_MATCH;
 import static io.netty.handler.codec.http.HttpHeaderNames.IF_UNMODIFIED_SINCE;
 import static org.restnext.util.UriUtils.normalize;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
@@ -39,10 +44,14 @@ import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
 import io.netty.handler.codec.http.multipart.InterfaceHttpData;
 import io.netty.util.AsciiString;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
@@ -69,15 +78,22 @@ public final class RequestImpl implements Request {
   private final MultivaluedMap<String, String> headers;
   private final MultivaluedMap<String, String> parameters;
   private final Charset charset;
+  // the body of the netty request, released along with it.
+  private final ByteBuf body;
   private byte[] content;
+  private Instant deadline;
+  private long deadlineNanos;
 
   /**
    * Create a new instance.
    *
+   * <p>The body is only read from a {@link FullHttpRequest}, a request head has no content. The
+   * body is not copied, its views are only valid until the netty request is released.
+   *
    * @param context netty channel handler context
-   * @param request netty full http request
+   * @param request netty full http request or request head
    */
-  public RequestImpl(final ChannelHandlerContext context, final FullHttpRequest request) {
+  public RequestImpl(final ChannelHandlerContext context, final HttpRequest request) {
     Objects.requireNonNull(request, "request");
     Objects.requireNonNull(context, "context");
 
@@ -103,8 +119,13 @@ public final class RequestImpl implements Request {
       this.parameters.addAll(entry.getKey(), entry.getValue());
     }
 
+    // own indexes, the form data decoder below reads the request content.
+    this.body = request instanceof FullHttpRequest
+        ? ((FullHttpRequest) request).content().duplicate()
+        : Unpooled.EMPTY_BUFFER;
+
     // decode the inbound netty request body parameters.
-    if (Method.POST.equals(method)) {
+    if (Method.POST.equals(method) && request instanceof FullHttpRequest) {
       CharSequence charSequence = HttpUtil.getMimeType(request);
       AsciiString mimeType = charSequence != null
           ? AsciiString.of(charSequence)
@@ -138,16 +159,23 @@ public final class RequestImpl implements Request {
         } finally {
           decoder.destroy();
         }
-      } else {
-        // decode the inbound netty request body raw | form-url-encoded | octet-stream parameters.
-        this.content = request.content().hasArray()
-            ? request.content().array()
-            : request.content().toString(charset).getBytes();
       }
     }
   }
 
-  private URI createBaseUri(ChannelHandlerContext ctx, FullHttpRequest req) {
+  /**
+   * Set the deadline of this request, before its route provider is called.
+   *
+   * @param receivedNanos the {@link System#nanoTime()} the request was received
+   * @param timeout       the time the server waits for the response
+   */
+  public void setDeadline(final long receivedNanos, final Duration timeout) {
+    Objects.requireNonNull(timeout, "timeout");
+    this.deadlineNanos = receivedNanos + timeout.toNanos();
+    this.deadline = Instant.now().plusNanos(deadlineNanos - System.nanoTime());
+  }
+
+  private URI createBaseUri(ChannelHandlerContext ctx, HttpRequest req) {
     final String protocol = req.protocolVersion().protocolName().toLowerCase();
     String host = req.headers().get(HOST);
     if (host == null) {
@@ -179,9 +207,28 @@ public final class RequestImpl implements Request {
 
   @Override
   public byte[] getContent() {
+    // the copy honors the buffer reader index and never decodes the bytes.
+    if (content == null && body.isReadable()) {
+      content = ByteBufUtil.getBytes(body);
+    }
     return content;
   }
 
+  @Override
+  public ByteBuf getContentByteBuf() {
+    return body.asReadOnly();
+  }
+
+  @Override
+  public ByteBuffer getContentByteBuffer() {
+    return body.nioBuffer().asReadOnlyBuffer();
+  }
+
+  @Override
+  public InputStream getContentStream() {
+    return new ByteBufInputStream(body.asReadOnly());
+  }
+
   @Override
   public boolean hasContent() {
     return getLength() > 0;
@@ -189,7 +236,7 @@ public final class RequestImpl implements Request {
 
   @Override
   public int getLength() {
-    return content == null ? 0 : content.length;
+    return body.readableBytes();
   }
 
   @Override
@@ -217,6 +264,16 @@ public final class RequestImpl implements Request {
     return charset;
   }
 
+  @Override
+  public Instant getDeadline() {
+    return deadline;
+  }
+
+  @Override
+  public Duration getRemainingTime() {
+    return deadline == null ? null : Duration.ofNanos(deadlineNanos - System.nanoTime());
+  }
+
   @Override
   public Response.Builder evaluatePreconditions(EntityTag entityTag) {
     if (entityTag == null) {
@@ -16,21 +16,59 @@
 
 package org.restnext.core.http;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.FileRegion;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
 
 public interface Response extends Message, Headers {
 
   Status getStatus();
 
+  /**
+   * The content bytes, copied on the first call if the content is not a byte array.
+   *
+   * @return the content bytes or {@code null} if there is no content or it is a file region
+   */
   byte[] getContent();
 
+  /**
+   * The content as a buffer, without copy. A character sequence content is encoded as UTF-8
+   * straight into a buffer of the allocator. The caller owns the returned buffer, so a buffer
+   * content is transferred and can only be taken once.
+   *
+   * @param allocator the allocator of the encoded character sequence content
+   * @return the content buffer, empty if there is no content or it is a file region
+   */
+  ByteBuf getContentByteBuf(ByteBufAllocator allocator);
+
+  /**
+   * The file region content, sent without copy to user space when the transport supports it.
+   *
+   * @return the file region or {@code null}
+   */
+  FileRegion getFileRegion();
+
+  /**
+   * The producer of a streamed content, written in chunks as the connection can take it.
+   *
+   * @return the body producer or {@code null}
+   */
+  BodyProducer getBodyProducer();
+
   boolean hasContent();
 
   MediaType getMediaType();
@@ -169,6 +207,119 @@ public interface Response extends Message, Headers {
 
     Response.Builder content(String content, Charset charset);
 
+    /**
+     * Set the content buffer, the response owns the buffer and releases it once written.
+     *
+     * @param content the content buffer
+     * @return the response builder
+     */
+    Response.Builder content(ByteBuf content);
+
+    /**
+     * Set the content buffer, written without copy.
+     *
+     * @param content the content buffer
+     * @return the response builder
+     */
+    Response.Builder content(ByteBuffer content);
+
+    /**
+     * Set the content characters, encoded as UTF-8 only when written.
+     *
+     * @param content the content characters
+     * @return the response builder
+     */
+    Response.Builder content(CharSequence content);
+
+    /**
+     * Set the file region content, the response owns the region and releases it once written.
+     *
+     * @param content the file region
+     * @return the response builder
+     */
+    Response.Builder content(FileRegion content);
+
+    /**
+     * Set the file content, sent as a file region.
+     *
+     * @param file the file
+     * @return the response builder
+     */
+    Response.Builder content(Path file);
+
+    /**
+     * Set the content producer, the response is streamed in chunks as the producer creates them.
+     *
+     * @param producer the body producer
+     * @return the response builder
+     */
+    Response.Builder content(BodyProducer producer);
+
+    /**
+     * Set the content chunks, the response is streamed in chunks as the iterator returns them.
+     *
+     * @param chunks the content chunks, each one owned by the response once returned
+     * @return the response builder
+     */
+    Response.Builder content(Iterator<ByteBuf> chunks);
+
+    /**
+     * Set the content stream, opened only when the response is written and streamed in chunks
+     * of the {@link #chunked(int) chunk size}.
+     *
+     * @param stream the content stream opener
+     * @return the response builder
+     */
+    Response.Builder content(Callable<InputStream> stream);
+
+    /**
+     * Set the content elements, streamed as newline delimited JSON in chunks of about the
+     * {@link #chunked(int) chunk size}. The stream is closed once written or when the connection
+     * is closed.
+     *
+     * @param elements the content elements
+     * @param encoder  the element encoder
+     * @param <T>      the element type
+     * @return the response builder
+     */
+    <T> Response.Builder ndjson(Stream<T> elements, ElementEncoder<? super T> encoder);
+
+    /**
+     * Set the content elements, streamed as newline delimited JSON in chunks of about the
+     * {@link #chunked(int) chunk size}. A closeable iterator is closed once written or when the
+     * connection is closed.
+     *
+     * @param elements the content elements
+     * @param encoder  the element encoder
+     * @param <T>      the element type
+     * @return the response builder
+     */
+    <T> Response.Builder ndjson(Iterator<T> elements, ElementEncoder<? super T> encoder);
+
+    /**
+     * Set the content elements, streamed as a JSON array in chunks of about the
+     * {@link #chunked(int) chunk size}. The stream is closed once written or when the connection
+     * is closed.
+     *
+     * @param elements the content elements
+     * @param encoder  the element encoder
+     * @param <T>      the element type
+     * @return the response builder
+     */
+    <T> Response.Builder jsonArray(Stream<T> elements, ElementEncoder<? super T> encoder);
+
+    /**
+     * Set the content elements, streamed as a JSON array in chunks of about the
+     * {@link #chunked(int) chunk size}. A closeable iterator is closed once written or when the
+     * connection is closed.
+     *
+     * @param elements the content elements
+     * @param encoder  the element encoder
+     * @param <T>      the element type
+     * @return the response builder
+     */
+    <T> Response.Builder jsonArray(Iterator<T> elements, ElementEncoder<? super T> encoder);
+
     Response.Builder allow(Request.Method... methods);
 
     Response.Builder allow(Set<Request.Method> methods);
@@ -245,7 +396,7 @@ public interface Response extends Message, Headers {
   }
 
   static Response.Builder ok(String content, Charset charset, MediaType mediaType) {
-    return ok(content.getBytes(charset), mediaType);
+    return ok(mediaType).content(content, charset);
   }
 
   static Response.Builder ok(String content, String mediaType) {
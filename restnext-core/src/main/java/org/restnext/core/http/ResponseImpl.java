@@ -30,15 +30,27 @@ import static io.netty.handler.codec.http.HttpHeaderNames.LAST_MODIFIED;
 import static io.netty.handler.codec.http.HttpHeaderNames.LOCATION;
 import static io.netty.handler.codec.http.HttpHeaderNames.SERVER;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
 import io.netty.util.AsciiString;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -49,15 +61,20 @@ public final class ResponseImpl implements Response {
 
   private final Version version;
   private final Status status;
-  private final byte[] content;
+  // a byte array, a netty buffer, a nio buffer, a character sequence, a file region or a body
+  // producer.
+  private final Object body;
   private final MultivaluedMap<String, String> headers;
   private final boolean chunked;
   private final int chunkSize;
+  private byte[] content;
 
   private ResponseImpl(final Builder builder) {
     this.version = builder.version;
     this.status = builder.status;
-    this.content = builder.content;
+    this.body = builder.body instanceof Deferred
+        ? ((Deferred) builder.body).apply(builder.chunkSize)
+        : builder.body;
     this.headers = builder.headers;
     this.chunked = builder.chunked;
     this.chunkSize = builder.chunkSize;
@@ -75,9 +92,49 @@ public final class ResponseImpl implements Response {
 
   @Override
   public byte[] getContent() {
+    if (content == null) {
+      if (body instanceof byte[]) {
+        content = (byte[]) body;
+      } else if (body instanceof ByteBuf) {
+        content = ByteBufUtil.getBytes((ByteBuf) body);
+      } else if (body instanceof ByteBuffer) {
+        ByteBuffer buffer = ((ByteBuffer) body).duplicate();
+        content = new byte[buffer.remaining()];
+        buffer.get(content);
+      } else if (body instanceof CharSequence) {
+        content = body.toString().getBytes(StandardCharsets.UTF_8);
+      }
+    }
     return content;
   }
 
+  @Override
+  public ByteBuf getContentByteBuf(ByteBufAllocator allocator) {
+    if (body instanceof byte[]) {
+      return Unpooled.wrappedBuffer((byte[]) body);
+    }
+    if (body instanceof ByteBuf) {
+      return (ByteBuf) body;
+    }
+    if (body instanceof ByteBuffer) {
+      return Unpooled.wrappedBuffer(((ByteBuffer) body).duplicate());
+    }
+    if (body instanceof CharSequence) {
+      return ByteBufUtil.writeUtf8(allocator, (CharSequence) body);
+    }
+    return Unpooled.EMPTY_BUFFER;
+  }
+
+  @Override
+  public FileRegion getFileRegion() {
+    return body instanceof FileRegion ? (FileRegion) body : null;
+  }
+
+  @Override
+  public BodyProducer getBodyProducer() {
+    return body instanceof BodyProducer ? (BodyProducer) body : null;
+  }
+
   @Override
   public boolean hasContent() {
     return getLength() > 0;
@@ -91,7 +148,22 @@ public final class ResponseImpl implements Response {
 
   @Override
   public int getLength() {
-    return content == null ? 0 : content.length;
+    if (body instanceof byte[]) {
+      return ((byte[]) body).length;
+    }
+    if (body instanceof ByteBuf) {
+      return ((ByteBuf) body).readableBytes();
+    }
+    if (body instanceof ByteBuffer) {
+      return ((ByteBuffer) body).remaining();
+    }
+    if (body instanceof CharSequence) {
+      return ByteBufUtil.utf8Bytes((CharSequence) body);
+    }
+    if (body instanceof FileRegion) {
+      return (int) Math.min(((FileRegion) body).count(), Integer.MAX_VALUE);
+    }
+    return 0;
   }
 
   @Override
@@ -130,7 +202,8 @@ public final class ResponseImpl implements Response {
 
   @Override
   public boolean isChunked() {
-    return chunked;
+    // a streamed content is always chunked, its length is not known up front.
+    return chunked || body instanceof BodyProducer;
   }
 
   @Override
@@ -145,7 +218,7 @@ public final class ResponseImpl implements Response {
     private MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
     private Version version = Version.HTTP_1_1;
     private Status status = Status.OK;
-    private byte[] content;
+    private Object body;
     private boolean chunked = false;
     private int chunkSize = 8192;
 
@@ -187,18 +260,96 @@ public final class ResponseImpl implements Response {
 
     @Override
     public Response.Builder content(byte[] content) {
-      this.content = content;
+      this.body = content;
       return this;
     }
 
     @Override
     public Response.Builder content(String content) {
-      return content(content, StandardCharsets.UTF_8);
+      return content((CharSequence) content);
     }
 
     @Override
     public Response.Builder content(String content, Charset charset) {
-      return content(content.getBytes(charset));
+      return StandardCharsets.UTF_8.equals(charset)
+          ? content((CharSequence) content)
+          : content(content.getBytes(charset));
+    }
+
+    @Override
+    public Response.Builder content(ByteBuf content) {
+      this.body = content;
+      return this;
+    }
+
+    @Override
+    public Response.Builder content(ByteBuffer content) {
+      this.body = content;
+      return this;
+    }
+
+    @Override
+    public Response.Builder content(CharSequence content) {
+      this.body = content;
+      return this;
+    }
+
+    @Override
+    public Response.Builder content(FileRegion content) {
+      this.body = content;
+      return this;
+    }
+
+    @Override
+    public Response.Builder content(Path file) {
+      return content(new DefaultFileRegion(file.toFile(), 0, file.toFile().length()));
+    }
+
+    @Override
+    public Response.Builder content(BodyProducer producer) {
+      this.body = producer;
+      return this;
+    }
+
+    @Override
+    public Response.Builder content(Iterator<ByteBuf> chunks) {
+      return content((BodyProducer) allocator -> chunks.hasNext() ? chunks.next() : null);
+    }
+
+    @Override
+    public Response.Builder content(Callable<InputStream> stream) {
+      this.body = (Deferred) chunkSize -> new StreamProducer(stream, chunkSize);
+      return this;
+    }
+
+    @Override
+    public <T> Response.Builder ndjson(Stream<T> elements, ElementEncoder<? super T> encoder) {
+      this.body = (Deferred) chunkSize -> ElementsProducer.of(
+          ElementsProducer.Format.NDJSON, elements, encoder, chunkSize);
+      return type(MediaType.NDJSON);
+    }
+
+    @Override
+    public <T> Response.Builder ndjson(Iterator<T> elements, ElementEncoder<? super T> encoder) {
+      this.body = (Deferred) chunkSize -> ElementsProducer.of(
+          ElementsProducer.Format.NDJSON, elements, encoder, chunkSize);
+      return type(MediaType.NDJSON);
+    }
+
+    @Override
+    public <T> Response.Builder jsonArray(Stream<T> elements,
+                                          ElementEncoder<? super T> encoder) {
+      this.body = (Deferred) chunkSize -> ElementsProducer.of(
+          ElementsProducer.Format.JSON_ARRAY, elements, encoder, chunkSize);
+      return type(MediaType.JSON);
+    }
+
+    @Override
+    public <T> Response.Builder jsonArray(Iterator<T> elements,
+                                          ElementEncoder<? super T> encoder) {
+      this.body = (Deferred) chunkSize -> ElementsProducer.of(
+          ElementsProducer.Format.JSON_ARRAY, elements, encoder, chunkSize);
+      return type(MediaType.JSON);
     }
 
     @Override
@@ -321,4 +472,58 @@ public final class ResponseImpl implements Response {
     }
   }
 
+  /**
+   * A body producer created when the response is built, once the chunk size is known.
+   */
+  @FunctionalInterface
+  private interface Deferred extends IntFunction<BodyProducer> {
+  }
+
+  /**
+   * Produces the chunks of a stream, opened on the first chunk.
+   */
+  private static final class StreamProducer implements BodyProducer {
+
+    private final Callable<InputStream> opener;
+    private final int chunkSize;
+    private InputStream stream;
+
+    StreamProducer(Callable<InputStream> opener, int chunkSize) {
+      this.opener = opener;
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public ByteBuf produce(ByteBufAllocator allocator) throws Exception {
+      if (stream == null) {
+        stream = opener.call();
+      }
+      final ByteBuf chunk = allocator.buffer(chunkSize);
+      try {
+        int read = 0;
+        while (chunk.isWritable()) {
+          final int count = chunk.writeBytes(stream, chunk.writableBytes());
+          if (count < 0) {
+            break;
+          }
+          read += count;
+        }
+        if (read == 0) {
+          chunk.release();
+          return null;
+        }
+        return chunk;
+      } catch (Exception e) {
+        chunk.release();
+        throw e;
+      }
+    }
+
+    @Override
+    public void close() throws Exception {
+      if (stream != null) {
+        stream.close();
+      }
+    }
+  }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.core.classpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarClassLoadersTest {
+
+  private static final String PROBE_CLASS = Probe.class.getName();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void eachJarClassLoaderIsIsolated() throws Exception {
+    final Path jar = newProbeJar("probe.jar");
+    try (JarClassLoaders classLoaders = new JarClassLoaders(isolatedParent())) {
+      ClassLoader first = classLoaders.create(jar);
+      ClassLoader second = classLoaders.create(jar);
+      assertNotSame(first.loadClass(PROBE_CLASS), second.loadClass(PROBE_CLASS));
+      assertEquals(2, classLoaders.getLoadedClassCount());
+
+      classLoaders.put(jar, first);
+      assertSame(first, classLoaders.get(jar));
+      classLoaders.discard(second);
+    }
+  }
+
+  @Test
+  public void releasedClassLoaderIsUnloaded() throws Exception {
+    final Path jar = newProbeJar("probe.jar");
+    try (JarClassLoaders classLoaders = new JarClassLoaders(isolatedParent())) {
+      loadProbe(classLoaders, jar);
+      assertEquals(1, classLoaders.getLoadedClassCount());
+
+      classLoaders.remove(jar);
+      assertNull(classLoaders.get(jar));
+
+      for (int i = 0; i < 50 && classLoaders.getPendingUnloadCount() > 0; i++) {
+        System.gc();
+        Thread.sleep(100);
+      }
+      assertEquals(0, classLoaders.getPendingUnloadCount());
+      assertEquals(1, classLoaders.getUnloadedClassCount());
+    }
+  }
+
+  @Test
+  public void replacedClassLoaderKeepsLoadingItsJar() throws Exception {
+    final Path jar = newProbeJar("probe.jar");
+    try (JarClassLoaders classLoaders = new JarClassLoaders(isolatedParent())) {
+      ClassLoader previous = classLoaders.create(jar);
+      classLoaders.put(jar, previous);
+      classLoaders.put(jar, classLoaders.create(jar));
+
+      // an in-flight request of the previous jar may still load its classes.
+      assertNotNull(previous.getResource(PROBE_CLASS.replace('.', '/') + ".class"));
+      assertEquals(PROBE_CLASS, previous.loadClass(PROBE_CLASS).getName());
+    }
+  }
+
+  // no reference to the loaded class must survive this method.
+  private static void loadProbe(JarClassLoaders classLoaders, Path jar) throws Exception {
+    ClassLoader classLoader = classLoaders.create(jar);
+    classLoader.loadClass(PROBE_CLASS);
+    classLoaders.put(jar, classLoader);
+  }
+
+  private static ClassLoader isolatedParent() {
+    // the parent must not see the test classes, otherwise the probe class is never loaded
+    // from the jar.
+    return ClassLoader.getSystemClassLoader().getParent();
+  }
+
+  private Path newProbeJar(String name) throws IOException {
+    final Path jar = folder.getRoot().toPath().resolve(name);
+    final String entry = PROBE_CLASS.replace('.', '/') + ".class";
+    try (OutputStream os = Files.newOutputStream(jar);
+         JarOutputStream jos = new JarOutputStream(os);
+         InputStream is = Probe.class.getClassLoader().getResourceAsStream(entry)) {
+      jos.putNextEntry(new ZipEntry(entry));
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        jos.write(buffer, 0, read);
+      }
+      jos.closeEntry();
+    }
+    return jar;
+  }
+
+  public static final class Probe {
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.core.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.Test;
+
+public class RequestImplTest {
+
+  private static final byte[] BINARY = {(byte) 0xff, (byte) 0xfe, 0, (byte) 0x80, 'a'};
+
+  @Test
+  public void contentHonorsTheReaderIndexOfHeapBuffers() {
+    ByteBuf content = Unpooled.wrappedBuffer(new byte[] {'x', 'x', 'a', 'b', 'c', 'x'}, 2, 3);
+    Request request = new RequestImpl(context(), request(content));
+    assertEquals(3, request.getLength());
+    assertArrayEquals(new byte[] {'a', 'b', 'c'}, request.getContent());
+    assertSame(request.getContent(), request.getContent());
+  }
+
+  @Test
+  public void contentOfDirectBuffersIsNotDecoded() throws Exception {
+    ByteBuf content = PooledByteBufAllocator.DEFAULT.directBuffer().writeBytes(BINARY);
+    FullHttpRequest req = request(content);
+    try {
+      Request request = new RequestImpl(context(), req);
+      assertArrayEquals(BINARY, request.getContent());
+
+      ByteBuf view = request.getContentByteBuf();
+      assertTrue(view.isReadOnly());
+      assertEquals(BINARY.length, view.readableBytes());
+
+      ByteBuffer buffer = request.getContentByteBuffer();
+      assertTrue(buffer.isReadOnly());
+      assertEquals(BINARY.length, buffer.remaining());
+
+      try (InputStream is = request.getContentStream()) {
+        byte[] bytes = new byte[BINARY.length];
+        assertEquals(BINARY.length, is.read(bytes));
+        assertArrayEquals(BINARY, bytes);
+        assertEquals(-1, is.read());
+      }
+      // the views do not consume the body.
+      assertEquals(BINARY.length, request.getLength());
+    } finally {
+      req.release();
+    }
+  }
+
+  @Test
+  public void requestWithoutBodyHasNoContent() {
+    Request request = new RequestImpl(context(), request(Unpooled.EMPTY_BUFFER));
+    assertNull(request.getContent());
+    assertEquals(0, request.getContentByteBuf().readableBytes());
+  }
+
+  @Test
+  public void deadlineCountsFromTheRequestReception() {
+    RequestImpl request = new RequestImpl(context(), request(Unpooled.EMPTY_BUFFER));
+    assertNull(request.getDeadline());
+    assertNull(request.getRemainingTime());
+
+    request.setDeadline(System.nanoTime() - Duration.ofSeconds(1).toNanos(),
+        Duration.ofSeconds(3));
+    Duration remaining = request.getRemainingTime();
+    assertTrue(remaining.compareTo(Duration.ofSeconds(2)) <= 0);
+    assertTrue(remaining.compareTo(Duration.ofSeconds(1)) > 0);
+    assertTrue(request.getDeadline().isAfter(Instant.now().plusSeconds(1)));
+  }
+
+  private static FullHttpRequest request(ByteBuf content) {
+    FullHttpRequest request = new DefaultFullHttpRequest(
+        HttpVersion.HTTP_1_1, HttpMethod.POST, "/", content);
+    request.headers().set(HttpHeaderNames.HOST, "localhost");
+    return request;
+  }
+
+  private static ChannelHandlerContext context() {
+    return new EmbeddedChannel(new ChannelInboundHandlerAdapter()).pipeline().firstContext();
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.core.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResponseImplTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void charSequenceContentIsEncodedAsUtf8() {
+    Response response = Response.ok().content(new StringBuilder("héllo")).build();
+    assertEquals(6, response.getLength());
+    ByteBuf content = response.getContentByteBuf(ByteBufAllocator.DEFAULT);
+    try {
+      assertEquals("héllo", content.toString(StandardCharsets.UTF_8));
+    } finally {
+      content.release();
+    }
+    assertArrayEquals("héllo".getBytes(StandardCharsets.UTF_8), response.getContent());
+  }
+
+  @Test
+  public void byteBufContentIsTransferred() {
+    ByteBuf buffer = Unpooled.copiedBuffer("buffer", StandardCharsets.US_ASCII);
+    Response response = Response.ok().content(buffer).build();
+    assertEquals(6, response.getLength());
+    assertArrayEquals("buffer".getBytes(StandardCharsets.US_ASCII), response.getContent());
+    assertSame(buffer, response.getContentByteBuf(ByteBufAllocator.DEFAULT));
+    assertEquals(6, buffer.readableBytes());
+    buffer.release();
+  }
+
+  @Test
+  public void byteBufferContentIsNotConsumed() {
+    ByteBuffer buffer = ByteBuffer.wrap("nio".getBytes(StandardCharsets.US_ASCII));
+    Response response = Response.ok().content(buffer).build();
+    assertArrayEquals("nio".getBytes(StandardCharsets.US_ASCII), response.getContent());
+    assertEquals(3, response.getContentByteBuf(ByteBufAllocator.DEFAULT).readableBytes());
+    assertEquals(3, buffer.remaining());
+  }
+
+  @Test
+  public void fileContentIsAFileRegion() throws Exception {
+    Path file = folder.newFile("content.bin").toPath();
+    Files.write(file, new byte[1024]);
+    Response response = Response.ok().content(file).build();
+    try {
+      assertEquals(1024, response.getLength());
+      assertEquals(1024, response.getFileRegion().count());
+      assertNull(response.getContent());
+    } finally {
+      response.getFileRegion().release();
+    }
+  }
+
+  @Test
+  public void streamContentIsProducedInChunks() throws Exception {
+    byte[] bytes = new byte[10];
+    Response response = Response.ok()
+        .content(() -> new ByteArrayInputStream(bytes))
+        .chunked(4)
+        .build();
+    assertTrue(response.isChunked());
+    assertNull(response.getContent());
+
+    try (BodyProducer producer = response.getBodyProducer()) {
+      assertEquals(4, readableBytes(producer));
+      assertEquals(4, readableBytes(producer));
+      assertEquals(2, readableBytes(producer));
+      assertNull(producer.produce(ByteBufAllocator.DEFAULT));
+    }
+  }
+
+  @Test
+  public void iteratorContentIsProducedInChunks() throws Exception {
+    ByteBuf first = Unpooled.copiedBuffer("first", StandardCharsets.US_ASCII);
+    ByteBuf second = Unpooled.copiedBuffer("second", StandardCharsets.US_ASCII);
+    Response response = Response.ok().content(Arrays.asList(first, second).iterator()).build();
+    assertTrue(response.isChunked());
+
+    BodyProducer producer = response.getBodyProducer();
+    assertSame(first, producer.produce(ByteBufAllocator.DEFAULT));
+    assertSame(second, producer.produce(ByteBufAllocator.DEFAULT));
+    assertNull(producer.produce(ByteBufAllocator.DEFAULT));
+    first.release();
+    second.release();
+  }
+
+  @Test
+  public void ndjsonElementsAreBatched() throws Exception {
+    AtomicBoolean closed = new AtomicBoolean();
+    Response response = Response.ok()
+        .ndjson(Stream.of(1, 2, 3).onClose(() -> closed.set(true)),
+            ElementEncoder.text(i -> "{\"id\":" + i + "}"))
+        .chunked(16)
+        .build();
+    assertEquals(MediaType.NDJSON, response.getMediaType());
+
+    try (BodyProducer producer = response.getBodyProducer()) {
+      assertEquals("{\"id\":1}\n{\"id\":2}\n", text(producer));
+      assertEquals("{\"id\":3}\n", text(producer));
+      assertNull(producer.produce(ByteBufAllocator.DEFAULT));
+    }
+    assertTrue(closed.get());
+  }
+
+  @Test
+  public void jsonArrayElementsAreDelimited() throws Exception {
+    Response response = Response.ok()
+        .jsonArray(Arrays.asList("a", "b").iterator(), ElementEncoder.text(s -> '"' + s + '"'))
+        .build();
+    assertEquals(MediaType.JSON, response.getMediaType());
+    assertEquals("[\"a\",\"b\"]", text(response.getBodyProducer()));
+
+    response = Response.ok()
+        .jsonArray(Collections.emptyIterator(), ElementEncoder.text(String::valueOf))
+        .build();
+    assertEquals("[]", text(response.getBodyProducer()));
+  }
+
+  private static String text(BodyProducer producer) throws Exception {
+    ByteBuf chunk = producer.produce(ByteBufAllocator.DEFAULT);
+    try {
+      return chunk.toString(StandardCharsets.UTF_8);
+    } finally {
+      chunk.release();
+    }
+  }
+
+  private static int readableBytes(BodyProducer producer) throws Exception {
+    ByteBuf chunk = producer.produce(ByteBufAllocator.DEFAULT);
+    try {
+      return chunk.readableBytes();
+    } finally {
+      chunk.release();
+    }
+  }
+}
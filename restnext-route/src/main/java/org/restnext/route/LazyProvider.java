@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.route;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.restnext.core.http.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A route provider compiled or linked only when it is first applied.
+ *
+ * <p>Concurrent first requests are guarded per provider, so the provider is linked only once and
+ * the other requests wait for it. A link failure is retried after an exponential backoff,
+ * meanwhile the previous provider of the route is applied if there is one, otherwise each request
+ * fails with its own exception.
+ *
+ * @param <T> the provider result type, a response or a request body consumer
+ */
+final class LazyProvider<T> implements Function<Request, T> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LazyProvider.class);
+
+  static final Duration MIN_RETRY_DELAY = Duration.ofSeconds(1);
+  static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(1);
+
+  private final String provider;
+  private final Linker<T> linker;
+
+  private volatile Function<Request, T> delegate;
+  // the previous provider of the route, applied until this one is linked.
+  private volatile Function<Request, T> fallback;
+  private volatile Exception failure;
+  // guarded by this.
+  private long retryDelay;
+  private long retryAt;
+
+  LazyProvider(final String provider, final Linker<T> linker) {
+    this(provider, linker, null);
+  }
+
+  LazyProvider(final String provider, final Linker<T> linker, final Function<Request, T> fallback) {
+    this.provider = Objects.requireNonNull(provider, "provider");
+    this.linker = Objects.requireNonNull(linker, "linker");
+    this.fallback = fallback;
+  }
+
+  @Override
+  public T apply(final Request request) {
+    return resolve().apply(request);
+  }
+
+  /**
+   * Link the provider, if not linked yet.
+   *
+   * @return the linked provider, or the previous provider of the route while the link fails
+   */
+  Function<Request, T> resolve() {
+    Function<Request, T> resolved = delegate;
+    if (resolved == null) {
+      synchronized (this) {
+        resolved = delegate;
+        if (resolved == null) {
+          resolved = link();
+        }
+      }
+    }
+    return resolved;
+  }
+
+  boolean isResolved() {
+    return delegate != null || failure != null;
+  }
+
+  String getProvider() {
+    return provider;
+  }
+
+  // private methods
+
+  // must be called holding the lock.
+  private Function<Request, T> link() {
+    if (failure == null || System.nanoTime() - retryAt >= 0) {
+      try {
+        final Function<Request, T> linked = Objects.requireNonNull(linker.link(),
+            "linked provider");
+        delegate = linked;
+        // the previous provider, and its class loader, are not needed anymore.
+        fallback = null;
+        failure = null;
+        return linked;
+      } catch (Exception e) {
+        failure = e;
+        retryDelay = retryDelay == 0 ? MIN_RETRY_DELAY.toNanos()
+            : Math.min(retryDelay * 2, MAX_RETRY_DELAY.toNanos());
+        retryAt = System.nanoTime() + retryDelay;
+        LOGGER.error("Could not link the route provider {}, retrying in {} ms", provider,
+            TimeUnit.NANOSECONDS.toMillis(retryDelay), e);
+      }
+    }
+    final Function<Request, T> previous = fallback;
+    if (previous != null) {
+      return previous;
+    }
+    // a new exception for each request, a shared one would pile up their suppressed exceptions.
+    throw new IllegalStateException("Could not link the route provider " + provider, failure);
+  }
+
+  /**
+   * Compiles or links the provider.
+   */
+  @FunctionalInterface
+  interface Linker<T> {
+
+    Function<Request, T> link() throws Exception;
+  }
+}
@@ -19,14 +19,19 @@ package org.restnext.route;
 import static org.restnext.util.UriUtils.isPathParamUri;
 import static org.restnext.util.UriUtils.normalize;
 
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 
+import org.restnext.core.http.BodyConsumer;
 import org.restnext.core.http.MediaType;
 import org.restnext.core.http.Request;
 import org.restnext.core.http.Response;
@@ -45,24 +50,19 @@ public enum Route {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(Route.class);
 
-  private final Map<String, Route.Mapping> registry = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+  // copy-on-write registry, so lookups never see a partially applied update.
+  private volatile Map<String, Route.Mapping> registry = newRegistry();
 
   /**
    * Register a route mapping.
    *
    * @param routeMapping the route mapping to be registered
    */
-  public final void register(final Route.Mapping routeMapping) {
+  public final synchronized void register(final Route.Mapping routeMapping) {
     Objects.requireNonNull(routeMapping, "routeMapping");
-
-    final String uri = routeMapping.getUri();
-    final Route.Mapping routeMappingRegistered = registry.get(uri);
-
-    if (routeMappingRegistered == null || !routeMappingRegistered.isEnable()) {
-      registry.put(uri, routeMapping);
-      LOGGER.debug("The route uri '{}' was registered", uri);
-    } else {
-      LOGGER.warn("The route uri '{}' is already registered", uri);
+    final Map<String, Route.Mapping> copy = newRegistry(registry);
+    if (register(copy, routeMapping)) {
+      registry = copy;
     }
   }
 
@@ -75,13 +75,64 @@ public enum Route {
    *
    * @param uri the uri to be unregistered
    */
-  public void unregister(final String uri) {
+  public synchronized void unregister(final String uri) {
     if (getRouteMapping(Objects.requireNonNull(uri, "uri")) != null) {
-      registry.remove(uri);
+      final Map<String, Route.Mapping> copy = newRegistry(registry);
+      copy.remove(uri);
+      registry = copy;
       LOGGER.debug("The route uri {} was unregistered", uri);
     }
   }
 
+  /**
+   * Atomically unregister and register a set of route mappings, so a concurrent lookup sees
+   * either the previous or the updated registry, never a missing route in between.
+   *
+   * <p>A mapping is only unregistered if it is still the one registered for its uri.
+   *
+   * @param unregister the route mappings to be unregistered
+   * @param register   the route mappings to be registered
+   */
+  public synchronized void update(final Collection<Route.Mapping> unregister,
+                                  final Collection<Route.Mapping> register) {
+    Objects.requireNonNull(unregister, "unregister");
+    Objects.requireNonNull(register, "register");
+    final Map<String, Route.Mapping> copy = newRegistry(registry);
+    for (Route.Mapping mapping : unregister) {
+      if (copy.remove(mapping.getUri(), mapping)) {
+        LOGGER.debug("The route uri {} was unregistered", mapping.getUri());
+      }
+    }
+    for (Route.Mapping mapping : register) {
+      register(copy, mapping);
+    }
+    registry = copy;
+  }
+
+  private static boolean register(final Map<String, Route.Mapping> registry,
+                                  final Route.Mapping routeMapping) {
+    final String uri = routeMapping.getUri();
+    final Route.Mapping routeMappingRegistered = registry.get(uri);
+
+    if (routeMappingRegistered == null || !routeMappingRegistered.isEnable()) {
+      registry.put(uri, routeMapping);
+      LOGGER.debug("The route uri '{}' was registered", uri);
+      return true;
+    }
+    LOGGER.warn("The route uri '{}' is already registered", uri);
+    return false;
+  }
+
+  private static Map<String, Route.Mapping> newRegistry() {
+    return new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+  }
+
+  private static Map<String, Route.Mapping> newRegistry(Map<String, Route.Mapping> registry) {
+    final Map<String, Route.Mapping> copy = newRegistry();
+    copy.putAll(registry);
+    return copy;
+  }
+
   /**
    * Get a route mapping from provided uri.
    *
@@ -107,6 +158,13 @@ public enum Route {
     private final List<MediaType> medias;
     private final List<Request.Method> methods;
     private final Function<Request, Response> routeProvider;
+    private final Function<Request, CompletionStage<Response>> asyncProvider;
+    private final Function<Request, BodyConsumer> streamProvider;
+    private final Body body;
+    private final long maxContentLength;
+    private final String executor;
+    private final boolean inline;
+    private final Duration timeout;
 
     private Mapping(final Route.Mapping.Builder builder) {
       this.uri = builder.uri;
@@ -114,6 +172,13 @@ public enum Route {
       this.medias = builder.medias;
       this.methods = builder.methods;
       this.routeProvider = builder.provider;
+      this.asyncProvider = builder.asyncProvider;
+      this.streamProvider = builder.streamProvider;
+      this.body = builder.body;
+      this.maxContentLength = builder.maxContentLength;
+      this.executor = builder.executor;
+      this.inline = builder.inline;
+      this.timeout = builder.timeout;
       this.urlMatcher = builder.urlMatcher;
     }
 
@@ -123,6 +188,35 @@ public enum Route {
       return new Route.Mapping.Builder(uri, provider);
     }
 
+    /**
+     * Create a streaming route mapping builder, whose provider receives the request head as soon
+     * as it arrives and returns the consumer of the request body chunks. The body of a streaming
+     * route is never buffered.
+     *
+     * @param uri      the uri
+     * @param provider the body consumer provider function
+     * @return the route mapping builder
+     */
+    public static Builder stream(final String uri,
+                                 final Function<Request, BodyConsumer> provider) {
+      return new Route.Mapping.Builder(uri, null, null,
+          Objects.requireNonNull(provider, "provider"));
+    }
+
+    /**
+     * Create an asynchronous route mapping builder, whose provider returns the response stage
+     * without waiting for it, the response is written when the stage completes.
+     *
+     * @param uri      the uri
+     * @param provider the response stage provider function
+     * @return the route mapping builder
+     */
+    public static Builder async(final String uri,
+                                final Function<Request, CompletionStage<Response>> provider) {
+      return new Route.Mapping.Builder(uri, null,
+          Objects.requireNonNull(provider, "provider"), null);
+    }
+
     public String getUri() {
       return uri;
     }
@@ -143,6 +237,56 @@ public enum Route {
       return methods;
     }
 
+    public boolean isStreaming() {
+      return streamProvider != null;
+    }
+
+    public boolean isAsync() {
+      return asyncProvider != null;
+    }
+
+    public Body getBody() {
+      return body;
+    }
+
+    /**
+     * The maximum request body size in bytes of this route.
+     *
+     * @return the maximum request body size or -1 to use the server default
+     */
+    public long getMaxContentLength() {
+      return maxContentLength;
+    }
+
+    /**
+     * The name of the server provider executor running this route provider.
+     *
+     * @return the provider executor name or {@code null} to use the server default
+     */
+    public String getExecutor() {
+      return executor;
+    }
+
+    /**
+     * Whether this route provider never blocks, so it runs on the channel thread without any
+     * handoff to a provider executor.
+     *
+     * @return true if the provider runs inline, otherwise false
+     */
+    public boolean isInline() {
+      return inline;
+    }
+
+    /**
+     * The time the server waits for the route response, since the request was received.
+     *
+     * @return the timeout, {@link Duration#ZERO} for none or {@code null} to use the server
+     *         default
+     */
+    public Duration getTimeout() {
+      return timeout;
+    }
+
     // convenient methods
 
     public Response writeResponse(final Request request) {
@@ -155,6 +299,47 @@ public enum Route {
       return routeProvider;
     }
 
+    public Function<Request, CompletionStage<Response>> getAsyncProvider() {
+      return asyncProvider;
+    }
+
+    public Function<Request, BodyConsumer> getStreamProvider() {
+      return streamProvider;
+    }
+
+    // inner classes
+
+    /**
+     * How the route receives the request body.
+     */
+    public enum Body {
+
+      /**
+       * The body is buffered and the route provider receives the whole request.
+       */
+      AGGREGATE,
+
+      /**
+       * The body is never buffered, the route body consumer receives its chunks as they arrive.
+       */
+      STREAM,
+
+      /**
+       * The route does not accept any request body.
+       */
+      REJECT;
+
+      /**
+       * Parse the body mode name, case insensitive.
+       *
+       * @param name the body mode name
+       * @return the body mode or {@code null} if the name is {@code null}
+       */
+      public static Body of(final String name) {
+        return name == null ? null : Body.valueOf(name.trim().toUpperCase(Locale.ROOT));
+      }
+    }
+
     // inner builder class
 
     public static final class Builder {
@@ -163,11 +348,18 @@ public enum Route {
       private final String uri;
       private final UrlMatcher urlMatcher;
       private final Function<Request, Response> provider;
+      private final Function<Request, CompletionStage<Response>> asyncProvider;
+      private final Function<Request, BodyConsumer> streamProvider;
 
       // optional params - initialized to default values.
       private boolean enable = true;
       private List<MediaType> medias = Collections.emptyList();
       private List<Request.Method> methods = Collections.emptyList();
+      private Body body;
+      private long maxContentLength = -1;
+      private String executor;
+      private boolean inline;
+      private Duration timeout;
 
       /**
        * Constructor with uri and provided function.
@@ -176,8 +368,17 @@ public enum Route {
        * @param provider the provider function
        */
       public Builder(final String uri, final Function<Request, Response> provider) {
+        this(uri, Objects.requireNonNull(provider, "provider"), null, null);
+      }
+
+      private Builder(final String uri, final Function<Request, Response> provider,
+                      final Function<Request, CompletionStage<Response>> asyncProvider,
+                      final Function<Request, BodyConsumer> streamProvider) {
         this.uri = normalize(Objects.requireNonNull(uri, "uri"));
-        this.provider = Objects.requireNonNull(provider, "provider");
+        this.provider = provider;
+        this.asyncProvider = asyncProvider;
+        this.streamProvider = streamProvider;
+        this.body = streamProvider == null ? Body.AGGREGATE : Body.STREAM;
         this.urlMatcher = isPathParamUri(this.uri)
             ? new UrlPattern(this.uri)
             : new UrlRegex(this.uri);
@@ -223,7 +424,83 @@ public enum Route {
         return this;
       }
 
+      /**
+       * Set how the route receives the request body, a route created with
+       * {@link Mapping#stream(String, Function)} always streams it.
+       *
+       * @param body the body mode
+       * @return the route mapping builder
+       */
+      public Builder body(Body body) {
+        if (body != null) {
+          if ((body == Body.STREAM) != (streamProvider != null)) {
+            throw new IllegalArgumentException("The body mode " + body
+                + " is not supported by the provider of the route " + uri);
+          }
+          this.body = body;
+        }
+        return this;
+      }
+
+      /**
+       * Set the route maximum request body size, enforced while the body arrives.
+       *
+       * @param maxContentLength the maximum body size in bytes or -1 to use the server default
+       * @return the route mapping builder
+       */
+      public Builder maxContentLength(long maxContentLength) {
+        if (maxContentLength < -1) {
+          throw new IllegalArgumentException("maxContentLength: " + maxContentLength);
+        }
+        this.maxContentLength = maxContentLength;
+        return this;
+      }
+
+      /**
+       * Set the name of the server provider executor running the route provider, isolating it
+       * from the routes run by the other executors.
+       *
+       * @param executor the provider executor name or {@code null} to use the server default
+       * @return the route mapping builder
+       */
+      public Builder executor(String executor) {
+        this.executor = executor == null || executor.trim().isEmpty() ? null : executor.trim();
+        return this;
+      }
+
+      /**
+       * Run the route provider on the channel thread, without any handoff to a provider
+       * executor, for the providers that never block.
+       *
+       * @param inline true to run the provider inline, otherwise false
+       * @return the route mapping builder
+       */
+      public Builder inline(boolean inline) {
+        this.inline = inline;
+        return this;
+      }
+
+      /**
+       * Set the time the server waits for the route response, since the request was received,
+       * answering {@code 504 Gateway Timeout} and cancelling the provider once it expired.
+       *
+       * @param timeout the timeout, {@link Duration#ZERO} for none or {@code null} to use the
+       *                server default
+       * @return the route mapping builder
+       */
+      public Builder timeout(Duration timeout) {
+        if (timeout != null && timeout.isNegative()) {
+          throw new IllegalArgumentException("timeout: " + timeout);
+        }
+        this.timeout = timeout;
+        return this;
+      }
+
       public Route.Mapping build() {
+        if (inline && executor != null) {
+          throw new IllegalArgumentException("The route " + uri
+              + " can not run inline and on the provider executor " + executor);
+        }
         return new Route.Mapping(this);
       }
     }
@@ -19,28 +19,46 @@ package org.restnext.route;
 import static org.restnext.util.FileUtils.deepListChildren;
 import static org.restnext.util.FileUtils.listChildren;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import javax.xml.bind.JAXBException;
 
-import org.restnext.core.classpath.ClasspathRegister;
+import org.restnext.core.classpath.JarClassLoaders;
+import org.restnext.core.http.BodyConsumer;
 import org.restnext.core.http.MediaType;
 import org.restnext.core.http.Request;
 import org.restnext.core.http.Response;
 import org.restnext.core.jaxb.Jaxb;
 import org.restnext.route.jaxb.Routes;
+import org.restnext.util.DirectoryWatcher;
 import org.restnext.util.SystemPropertyUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,19 +70,26 @@ import pl.joegreen.lambdaFromString.TypeReference;
 /**
  * Created by thiago on 10/13/16.
  */
-public final class RouteScanner {
+public final class RouteScanner implements Closeable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RouteScanner.class);
 
   public static final Path DEFAULT_ROUTE_DIR = SystemPropertyUtils.getPath(
       "user.dir", "route");
 
+  public static final Duration DEFAULT_QUIET_PERIOD = Duration.ofMillis(500);
+
   private final Route route;
   private final Jaxb routesJaxb;
   private final Path routeDirectory;
-  private final Map<Path, Map<Path, Set<Route.Mapping>>> routeJarFilesMap = new HashMap<>();
+  private final Duration quietPeriod;
+  private final boolean lazy;
+  private final RouteWatcher watcher;
+  private final JarClassLoaders classLoaders = new JarClassLoaders(
+      RouteScanner.class.getClassLoader());
+  private final Map<Path, RouteJar> routeJarFilesMap = new HashMap<>();
 
-  private LambdaFactory lambdaFactory;
+  private Thread prewarmThread;
 
   // constructors
 
@@ -79,138 +104,594 @@ public final class RouteScanner {
    * @param routeDirectory the route directory path
    */
   public RouteScanner(final Route route, final Path routeDirectory) {
+    this(route, routeDirectory, DEFAULT_QUIET_PERIOD);
+  }
+
+  /**
+   * Constructor with route, route directory path and the quiet period used to coalesce the
+   * file system events of the same jar file before rescanning it.
+   *
+   * @param route          the route
+   * @param routeDirectory the route directory path
+   * @param quietPeriod    the quiet period
+   */
+  public RouteScanner(final Route route, final Path routeDirectory, final Duration quietPeriod) {
+    this(route, routeDirectory, quietPeriod, false);
+  }
+
+  /**
+   * Constructor with route, route directory path, quiet period and the lazy mode.
+   *
+   * <p>In lazy mode the route providers are registered unresolved and only compiled on their
+   * first request, so a huge route set does not delay the server startup. The provider errors
+   * are then only reported on the first request of the route.
+   *
+   * @param route          the route
+   * @param routeDirectory the route directory path
+   * @param quietPeriod    the quiet period
+   * @param lazy           true to compile the providers on their first request
+   */
+  public RouteScanner(final Route route, final Path routeDirectory, final Duration quietPeriod,
+                      final boolean lazy) {
+    this.lazy = lazy;
     this.route = Objects.requireNonNull(route, "route");
     this.routeDirectory = Objects.requireNonNull(routeDirectory, "routeDirectory");
+    this.quietPeriod = Objects.requireNonNull(quietPeriod, "quietPeriod");
     this.routesJaxb = new Jaxb("routes.xsd", Routes.class);
-    // start task for watching dir for changes.
-    new Thread(new RouteWatcher(this), "route-dir-watcher").start();
+    this.watcher = new RouteWatcher(this);
+    // register the dir in the shared watcher for changes.
+    try {
+      DirectoryWatcher.INSTANCE.register(routeDirectory, "*.jar", quietPeriod, watcher);
+    } catch (IOException e) {
+      LOGGER.error("Could not watch route directory for changes", e);
+    }
   }
 
   // methods
 
-  private void createLambda(final Set<Path> jars) {
-    String classpath = SystemPropertyUtils.get("java.class.path");
-    StringJoiner compilationClassPathJoiner = new StringJoiner(":")
-        .add(classpath);
+  public void scan() {
+    listChildren(routeDirectory, "*.jar").forEach(this::scan);
+  }
+
+  /**
+   * Scan the jar file, recompiling only the route entries changed since the last scan and
+   * atomically replacing them in the route registry.
+   *
+   * @param jar the jar file
+   */
+  synchronized void scan(final Path jar) {
+    final Path jarFileName = jar.getFileName();
+    final RouteJar previous = routeJarFilesMap.getOrDefault(jarFileName, RouteJar.EMPTY);
 
-    jars.forEach(jar -> {
-      ClasspathRegister.addPath(jar);
-      compilationClassPathJoiner.add(jar.toAbsolutePath().toString());
-    });
+    final String fingerprint;
+    try {
+      fingerprint = fingerprint(jar);
+    } catch (IOException e) {
+      LOGGER.error("Could not read the jar file {}", jar, e);
+      return;
+    }
 
-    this.lambdaFactory = LambdaFactory.get(LambdaFactoryConfiguration.get()
-        .withCompilationClassPath(compilationClassPathJoiner.toString())
-        .withImports(Request.class)
-        .withImports(Response.class));
+    // when the classes change, every provider must be linked against a new class loader.
+    final boolean classesChanged = !fingerprint.equals(previous.fingerprint);
+    final ClassLoader classLoader = classesChanged
+        ? classLoaders.create(jar)
+        : classLoaders.get(jar);
+    final Map<String, RouteFile> reusable = classesChanged
+        ? Collections.emptyMap()
+        : previous.files;
+
+    final Map<String, RouteFile> current = lookupRouteFiles(
+        jar, reusable, mappings(previous.files), classLoader);
+    if (current == null) {
+      // keep the previous registered routes if the jar could not be read.
+      if (classesChanged) {
+        classLoaders.discard(classLoader);
+      }
+      return;
+    }
+    if (current.isEmpty()) {
+      routeJarFilesMap.remove(jarFileName);
+    } else {
+      routeJarFilesMap.put(jarFileName, new RouteJar(fingerprint, current));
+    }
+    update(previous.files, current);
 
-    jars.forEach(this::lookupRouteFiles);
+    // release the previous class loader only after its routes were replaced.
+    if (current.isEmpty()) {
+      classLoaders.remove(jar);
+      if (classesChanged) {
+        classLoaders.discard(classLoader);
+      }
+    } else if (classesChanged) {
+      classLoaders.put(jar, classLoader);
+    }
   }
 
-  public void scan() {
-    createLambda(listChildren(routeDirectory, "*.jar"));
+  /**
+   * Link in background, at low priority, every lazy route provider not requested yet.
+   */
+  public synchronized void prewarm() {
+    if (prewarmThread != null && prewarmThread.isAlive()) {
+      return;
+    }
+    final List<LazyProvider<?>> providers = new ArrayList<>();
+    routeJarFilesMap.values().forEach(routeJar -> mappings(routeJar.files).stream()
+        .map(RouteScanner::provider)
+        .filter(provider -> provider instanceof LazyProvider)
+        .<LazyProvider<?>>map(LazyProvider.class::cast)
+        .filter(provider -> !provider.isResolved())
+        .forEach(providers::add));
+    if (providers.isEmpty()) {
+      return;
+    }
+    prewarmThread = new Thread(() -> prewarm(providers), "route-prewarm");
+    prewarmThread.setDaemon(true);
+    prewarmThread.setPriority(Thread.MIN_PRIORITY);
+    prewarmThread.start();
   }
 
-  void scan(final Path jar) {
-    createLambda(Collections.singleton(jar));
+  /**
+   * Stop watching the route directory for changes and release the class loaders of its jars.
+   */
+  @Override
+  public void close() {
+    // not holding the lock, the watcher thread may be rescanning a jar.
+    DirectoryWatcher.INSTANCE.unregister(routeDirectory, watcher);
+    synchronized (this) {
+      if (prewarmThread != null) {
+        prewarmThread.interrupt();
+        prewarmThread = null;
+      }
+    }
+    classLoaders.close();
+  }
+
+  void rescan(final Path jar) {
+    scan(jar);
+  }
+
+  synchronized void resync() {
+    final Set<Path> jars = listChildren(routeDirectory, "*.jar");
+    final Set<Path> jarFileNames = new HashSet<>();
+    jars.forEach(jar -> jarFileNames.add(jar.getFileName()));
+    new ArrayList<>(routeJarFilesMap.keySet()).stream()
+        .filter(jarFileName -> !jarFileNames.contains(jarFileName))
+        .forEach(this::remove);
+    jars.forEach(this::scan);
   }
 
   void remove() {
     listChildren(routeDirectory, "*.jar").forEach(this::remove);
   }
 
+  synchronized void remove(final Path jar) {
+    final RouteJar previous = routeJarFilesMap.remove(jar.getFileName());
+    if (previous != null) {
+      update(previous.files, Collections.emptyMap());
+    }
+    classLoaders.remove(jar);
+  }
+
   // getters methods
 
-  void remove(final Path jar) {
-    routeJarFilesMap.entrySet().removeIf(jarEntry -> {
-      final boolean unregister = jarEntry.getKey().equals(jar.getFileName());
-      if (unregister) {
-        jarEntry.getValue()
-            .forEach((file, routeMappings) -> routeMappings.forEach(this.route::unregister));
-      }
-      return unregister;
-    });
+  public Path getRouteDirectory() {
+    return routeDirectory;
+  }
+
+  public Duration getQuietPeriod() {
+    return quietPeriod;
+  }
+
+  public boolean isLazy() {
+    return lazy;
+  }
+
+  /**
+   * The number of classes loaded from the scanned jar files.
+   *
+   * @return the loaded class count
+   */
+  public long getLoadedClassCount() {
+    return classLoaders.getLoadedClassCount();
+  }
+
+  /**
+   * The number of classes unloaded after their jar file was replaced or removed.
+   *
+   * @return the unloaded class count
+   */
+  public long getUnloadedClassCount() {
+    return classLoaders.getUnloadedClassCount();
   }
 
   // private methods
 
-  public Path getRouteDirectory() {
-    return routeDirectory;
+  private static void prewarm(final List<LazyProvider<?>> providers) {
+    final long start = System.nanoTime();
+    int linked = 0;
+    for (LazyProvider<?> provider : providers) {
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+      try {
+        provider.resolve();
+        linked++;
+      } catch (RuntimeException e) {
+        LOGGER.warn("Could not prewarm the route provider {}", provider.getProvider(), e);
+      }
+    }
+    LOGGER.debug("Route prewarm: {} providers linked in {} ms", linked,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
   }
 
-  private void lookupRouteFiles(final Path jar) {
+  private void update(final Map<String, RouteFile> previous,
+                      final Map<String, RouteFile> current) {
+    final Set<Route.Mapping> previousMappings = mappings(previous);
+    final Set<Route.Mapping> currentMappings = mappings(current);
+
+    final Set<Route.Mapping> unregister = new HashSet<>(previousMappings);
+    unregister.removeAll(currentMappings);
+    final Set<Route.Mapping> register = new HashSet<>(currentMappings);
+    register.removeAll(previousMappings);
+
+    if (!unregister.isEmpty() || !register.isEmpty()) {
+      this.route.update(unregister, register);
+    }
+    LOGGER.debug("Route reload: {} unregistered, {} registered, {} unchanged",
+        unregister.size(), register.size(), currentMappings.size() - register.size());
+  }
+
+  private static Set<Route.Mapping> mappings(final Map<String, RouteFile> routeFiles) {
+    final Set<Route.Mapping> mappings = new HashSet<>();
+    routeFiles.values().forEach(routeFile -> routeFile.entries.values()
+        .forEach(entry -> mappings.add(entry.mapping)));
+    return mappings;
+  }
+
+  private Map<String, RouteFile> lookupRouteFiles(final Path jar,
+                                                  final Map<String, RouteFile> previous,
+                                                  final Set<Route.Mapping> previousMappings,
+                                                  final ClassLoader classLoader) {
     try (FileSystem fs = FileSystems.newFileSystem(jar, (ClassLoader) null)) {
+      // the build time route index has precedence over the route files.
+      final Path indexFile = fs.getPath("/" + RouteIndex.LOCATION);
+      if (Files.exists(indexFile)) {
+        final String key = indexFile.toString();
+        final byte[] bytes = Files.readAllBytes(indexFile);
+        final String digest = digest(bytes);
+        final RouteFile previousIndexFile = previous.get(key);
+        if (previousIndexFile != null && digest.equals(previousIndexFile.digest)) {
+          return Collections.singletonMap(key, previousIndexFile);
+        }
+        return Collections.singletonMap(key, new RouteFile(
+            digest, readIndex(indexFile, bytes, previousMappings, classLoader)));
+      }
+
       final Path routeDirectory = fs.getPath("/META-INF/route/");
-      if (Files.exists(routeDirectory)) {
-        Set<Path> routeFiles = deepListChildren(routeDirectory, "*.xml");
-        routeJarFilesMap.put(jar.getFileName(), readAll(routeFiles));
+      if (!Files.exists(routeDirectory)) {
+        return Collections.emptyMap();
       }
+
+      // the previous entries by uri, to reuse the unchanged already compiled providers.
+      final Map<String, RouteEntry> previousEntries = new HashMap<>();
+      previous.values().forEach(routeFile -> previousEntries.putAll(routeFile.entries));
+
+      final ProviderCompiler compiler = new ProviderCompiler(jar, classLoader);
+      final Map<String, RouteFile> routeFiles = new HashMap<>();
+      for (Path routeFile : deepListChildren(routeDirectory, "*.xml")) {
+        final String key = routeFile.toString();
+        final byte[] bytes = Files.readAllBytes(routeFile);
+        final String digest = digest(bytes);
+        final RouteFile previousRouteFile = previous.get(key);
+        if (previousRouteFile != null && digest.equals(previousRouteFile.digest)) {
+          routeFiles.put(key, previousRouteFile);
+        } else {
+          routeFiles.put(key, read(routeFile, bytes, digest, previousRouteFile, previousEntries,
+              previousMappings, compiler));
+        }
+      }
+      return routeFiles;
     } catch (IOException e) {
       LOGGER.error(
           "Could not constructs a new fileSystem to access the contents of the file {} as a file "
               + "system.", jar, e);
+      return null;
     }
   }
 
-  private Map<Path, Set<Route.Mapping>> readAll(final Set<Path> routeFiles) {
-    final Map<Path, Set<Route.Mapping>> routeFileMappings = new HashMap<>(routeFiles.size());
-    routeFiles.forEach(r -> routeFileMappings.put(r, read(r)));
-    return Collections.unmodifiableMap(new HashMap<>(routeFileMappings));
+  /**
+   * Read the route file. A route that could not be built keeps its previous entry and the route
+   * file is then stored without its digest, so it is read again by the next scan.
+   */
+  private RouteFile read(final Path routeFile, final byte[] bytes, final String digest,
+                         final RouteFile previousRouteFile,
+                         final Map<String, RouteEntry> previousEntries,
+                         final Set<Route.Mapping> previousMappings,
+                         final ProviderCompiler compiler) {
+    final Routes routes;
+    try (InputStream is = new ByteArrayInputStream(bytes)) {
+      // deserialize the input stream
+      routes = routesJaxb.unmarshal(is, Routes.class);
+    } catch (IOException | JAXBException e) {
+      LOGGER.error("Could not read the route file '{}'", routeFile, e);
+      return new RouteFile(null, previousRouteFile == null
+          ? Collections.emptyMap()
+          : previousRouteFile.entries);
+    }
+
+    boolean failed = false;
+    final Map<String, RouteEntry> entries = new HashMap<>();
+    // iterates over the entries
+    for (Routes.Route route : routes.getRoute()) {
+      final String uri = route.getPath();
+      final String signature = signature(route);
+
+      // reuse the unchanged entry and its already compiled provider.
+      final RouteEntry previousEntry = previousEntries.get(uri);
+      if (previousEntry != null && previousEntry.signature.equals(signature)) {
+        entries.put(uri, previousEntry);
+        continue;
+      }
+
+      // checks if already has registered a mapping for the uri by other jar or manually.
+      // To avoid creating unnecessary mapping objects.
+      if (isRegisteredByOther(uri, previousMappings)) {
+        LOGGER.warn("Ignoring the registration of the uri {} of the route file {} in the "
+                + "fileSystem {}, because it was already registered",
+            uri, routeFile, routeFile.getFileSystem());
+        continue;
+      }
+
+      try {
+        entries.put(uri, new RouteEntry(signature, mapping(uri, route, compiler,
+            previousEntry != null ? previousEntry.mapping : null)));
+      } catch (LambdaCreationException | RuntimeException e) {
+        LOGGER.error("Could not build the route '{}' of the route file '{}'", uri, routeFile, e);
+        failed = true;
+        if (previousEntry != null) {
+          entries.put(uri, previousEntry);
+        }
+      }
+    }
+    return new RouteFile(failed ? null : digest, Collections.unmodifiableMap(entries));
   }
 
-  private Set<Route.Mapping> read(final Path routeFile) {
-    Set<Route.Mapping> mappings = new HashSet<>();
-    try (InputStream is = Files.newInputStream(routeFile)) {
-      // deserialize the input stream
-      Routes routes = routesJaxb.unmarshal(is, Routes.class);
-
-      // iterates over the entries
-      for (Routes.Route route : routes.getRoute()) {
-        String uri = route.getPath();
-        Boolean enable = route.getEnable();
-
-        // parse String http method list to Request.Method array.
-        Request.Method[] methods = route.getMethods().getMethod().stream()
-            .map(Request.Method::valueOf).toArray(Request.Method[]::new);
-
-        // parse String media type list to MediaType array.
-        MediaType[] medias = route.getMedias().getMedia().stream().map(MediaType::parse)
-            .toArray(MediaType[]::new);
-
-        /*
-          https://github.com/greenjoe/lambdaFromString#code-examples:
-          The compilation process takes time (on my laptop: first call ~1s, subsequent
-          calls ~0.1s)
-          so it probably should not be used in places where performance matters.
-          The library is rather intended to be used once during the configuration reading
-          process when the application starts.
-        */
-        Function<Request, Response> provider = lambdaFactory.createLambda(
-            route.getProvider(), new TypeReference<Function<Request, Response>>() {
-            });
-
-        // checks if already has registered a mapping for the uri.
-        // To avoid creating unnecessary mapping objects.
-        Route.Mapping mapping = this.route.getRouteMapping(uri);
-        if (mapping == null || !mapping.isEnable()) {
-          // builds the mapping
-          mapping = Route.Mapping.uri(uri, provider)
-              .enable(enable)
-              .methods(methods)
-              .medias(medias)
-              .build();
-
-          // register the mapping
-          this.route.register(mapping);
-          mappings.add(mapping);
-        } else {
-          LOGGER.warn("Ignoring the registration of the uri {} of the route file {} in the "
-                  + "fileSystem {}, because it was already registered",
-              uri, routeFile, routeFile.getFileSystem());
+  private Route.Mapping mapping(final String uri, final Routes.Route route,
+                                final ProviderCompiler compiler, final Route.Mapping previous)
+      throws LambdaCreationException {
+    // parse String http method list to Request.Method array.
+    Request.Method[] methods = route.getMethods().getMethod().stream()
+        .map(Request.Method::valueOf).toArray(Request.Method[]::new);
+
+    // parse String media type list to MediaType array.
+    MediaType[] medias = route.getMedias().getMedia().stream().map(MediaType::parse)
+        .toArray(MediaType[]::new);
+
+    // builds the mapping, a streaming route provider returns the request body consumer and
+    // an async route provider returns the response completion stage. The previous provider of
+    // the same kind is applied while the changed one can not be linked.
+    final String provider = route.getProvider();
+    final Route.Mapping.Body body = Route.Mapping.Body.of(route.getBody());
+    final Route.Mapping.Builder builder;
+    if (body == Route.Mapping.Body.STREAM) {
+      builder = Route.Mapping.stream(uri, link(provider, () -> compiler.compile(provider,
+          new TypeReference<Function<Request, BodyConsumer>>() {
+          }), previous != null && previous.isStreaming() ? previous.getStreamProvider() : null));
+    } else if (Boolean.TRUE.equals(route.getAsync())) {
+      builder = Route.Mapping.async(uri, link(provider, () -> compiler.compile(provider,
+          new TypeReference<Function<Request, CompletionStage<Response>>>() {
+          }), previous != null && previous.isAsync() ? previous.getAsyncProvider() : null));
+    } else {
+      builder = Route.Mapping.uri(uri, link(provider, () -> compiler.compile(provider,
+          new TypeReference<Function<Request, Response>>() {
+          }), previous != null ? previous.getRouteProvider() : null));
+    }
+    return builder
+        .enable(route.getEnable())
+        .methods(methods)
+        .medias(medias)
+        .body(body)
+        .maxContentLength(route.getMaxContentLength() != null ? route.getMaxContentLength() : -1)
+        .executor(route.getExecutor())
+        .inline(Boolean.TRUE.equals(route.getInline()))
+        .timeout(timeout(route.getTimeout()))
+        .build();
+  }
+
+  private Map<String, RouteEntry> readIndex(final Path indexFile, final byte[] bytes,
+                                            final Set<Route.Mapping> previousMappings,
+                                            final ClassLoader classLoader) {
+    final Map<String, RouteEntry> entries = new HashMap<>();
+    for (String className : indexClassNames(bytes)) {
+      try {
+        final RouteIndex index = Class.forName(className, true, classLoader)
+            .asSubclass(RouteIndex.class).getDeclaredConstructor().newInstance();
+        for (Route.Mapping mapping : index.mappings()) {
+          final String uri = mapping.getUri();
+          if (isRegisteredByOther(uri, previousMappings)) {
+            LOGGER.warn("Ignoring the registration of the uri {} of the route index {}, because "
+                + "it was already registered", uri, className);
+            continue;
+          }
+          entries.put(uri, new RouteEntry(className, mapping));
         }
+      } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+        LOGGER.error("Could not load the route index '{}' of the file '{}'",
+            className, indexFile, e);
       }
-    } catch (IOException | JAXBException | LambdaCreationException e) {
-      LOGGER.error("Could not read the route file '{}'", routeFile, e);
     }
-    return Collections.unmodifiableSet(new HashSet<>(mappings));
+    return Collections.unmodifiableMap(entries);
+  }
+
+  /**
+   * Checks if a mapping for the uri was already registered by other jar or manually.
+   */
+  private boolean isRegisteredByOther(final String uri,
+                                      final Set<Route.Mapping> previousMappings) {
+    final Route.Mapping mapping = this.route.getRouteMapping(uri);
+    return mapping != null && mapping.isEnable() && !previousMappings.contains(mapping);
+  }
+
+  private static List<String> indexClassNames(final byte[] bytes) {
+    final List<String> classNames = new ArrayList<>();
+    for (String line : new String(bytes, StandardCharsets.UTF_8).split("\\R")) {
+      final int comment = line.indexOf('#');
+      final String className = (comment < 0 ? line : line.substring(0, comment)).trim();
+      if (!className.isEmpty()) {
+        classNames.add(className);
+      }
+    }
+    return classNames;
+  }
+
+  private <T> Function<Request, T> link(final String provider,
+                                        final LazyProvider.Linker<T> linker,
+                                        final Function<Request, T> fallback)
+      throws LambdaCreationException {
+    if (lazy) {
+      return new LazyProvider<>(provider, linker, fallback);
+    }
+    try {
+      return linker.link();
+    } catch (LambdaCreationException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Function<Request, ?> provider(final Route.Mapping mapping) {
+    if (mapping.isStreaming()) {
+      return mapping.getStreamProvider();
+    }
+    return mapping.isAsync() ? mapping.getAsyncProvider() : mapping.getRouteProvider();
+  }
+
+  private static String signature(final Routes.Route route) {
+    return new StringJoiner("|")
+        .add(route.getProvider())
+        .add(String.valueOf(route.getEnable()))
+        .add(String.valueOf(route.getMethods().getMethod()))
+        .add(String.valueOf(route.getMedias().getMedia()))
+        .add(String.valueOf(route.getMaxContentLength()))
+        .add(String.valueOf(route.getBody()))
+        .add(String.valueOf(route.getAsync()))
+        .add(String.valueOf(route.getExecutor()))
+        .add(String.valueOf(route.getInline()))
+        .add(String.valueOf(route.getTimeout()))
+        .toString();
+  }
+
+  private static Duration timeout(final javax.xml.datatype.Duration timeout) {
+    return timeout == null ? null : Duration.ofMillis(timeout.getTimeInMillis(new Date(0)));
+  }
+
+  private static String digest(final byte[] bytes) {
+    return Base64.getEncoder().encodeToString(newDigest().digest(bytes));
+  }
+
+  /**
+   * The fingerprint of every jar entry except the route files, computed from the zip central
+   * directory (name, crc and size), so the jar content does not need to be read.
+   */
+  private static String fingerprint(final Path jar) throws IOException {
+    final MessageDigest digest = newDigest();
+    try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+      zipFile.stream()
+          .filter(entry -> !entry.getName().startsWith("META-INF/route/"))
+          .sorted(Comparator.comparing(ZipEntry::getName))
+          .forEach(entry -> digest.update((entry.getName() + ':' + entry.getCrc() + ':'
+              + entry.getSize()).getBytes(StandardCharsets.UTF_8)));
+    }
+    return Base64.getEncoder().encodeToString(digest.digest());
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // inner classes
+
+  private static final class RouteJar {
+
+    static final RouteJar EMPTY = new RouteJar(null, Collections.emptyMap());
+
+    private final String fingerprint;
+    private final Map<String, RouteFile> files;
+
+    RouteJar(final String fingerprint, final Map<String, RouteFile> files) {
+      this.fingerprint = fingerprint;
+      this.files = files;
+    }
+  }
+
+  private static final class RouteFile {
+
+    private final String digest;
+    private final Map<String, RouteEntry> entries;
+
+    RouteFile(final String digest, final Map<String, RouteEntry> entries) {
+      this.digest = digest;
+      this.entries = entries;
+    }
+  }
+
+  private static final class RouteEntry {
+
+    private final String signature;
+    private final Route.Mapping mapping;
+
+    RouteEntry(final String signature, final Route.Mapping mapping) {
+      this.signature = signature;
+      this.mapping = mapping;
+    }
+  }
+
+  /**
+   * Compiles the provider lambda strings of a jar against its own class loader, the lambda
+   * factory is only created if at least one provider has to be compiled.
+   */
+  private static final class ProviderCompiler {
+
+    private final Path jar;
+    private final ClassLoader classLoader;
+    private LambdaFactory lambdaFactory;
+
+    ProviderCompiler(final Path jar, final ClassLoader classLoader) {
+      this.jar = jar;
+      this.classLoader = classLoader;
+    }
+
+    // synchronized, the lazy providers are compiled by the request threads.
+    synchronized <T> Function<Request, T> compile(final String provider,
+                                                  final TypeReference<Function<Request, T>> type)
+        throws LambdaCreationException {
+      if (lambdaFactory == null) {
+        lambdaFactory = LambdaFactory.get(LambdaFactoryConfiguration.get()
+            .withParentClassLoader(classLoader)
+            .withCompilationClassPath(new StringJoiner(":")
+                .add(SystemPropertyUtils.get("java.class.path"))
+                .add(jar.toAbsolutePath().toString())
+                .toString())
+            .withImports(Request.class)
+            .withImports(Response.class)
+            .withImports(BodyConsumer.class)
+            .withImports(CompletionStage.class)
+            .withImports(CompletableFuture.class));
+      }
+      /*
+        https://github.com/greenjoe/lambdaFromString#code-examples:
+        The compilation process takes time (on my laptop: first call ~1s, subsequent
+        calls ~0.1s)
+        so it probably should not be used in places where performance matters.
+        The library is rather intended to be used once during the configuration reading
+        process when the application starts.
+      */
+      return lambdaFactory.createLambda(provider, type);
+    }
   }
 }
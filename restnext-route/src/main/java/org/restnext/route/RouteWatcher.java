@@ -16,26 +16,15 @@
 
 package org.restnext.route;
 
-import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
-import java.nio.file.StandardWatchEventKinds;
-import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
 import java.util.Objects;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.restnext.util.DirectoryWatcher;
 
 /**
  * Created by thiago on 10/13/16.
  */
-final class RouteWatcher implements Runnable {
-
-  private static final Logger LOG = LoggerFactory.getLogger(RouteWatcher.class);
+final class RouteWatcher implements DirectoryWatcher.Listener {
 
   private final RouteScanner routeScanner;
 
@@ -44,56 +33,17 @@ final class RouteWatcher implements Runnable {
   }
 
   @Override
-  public void run() {
-    watch();
+  public void onChange(final Path file) {
+    routeScanner.rescan(file);
   }
 
-  private void watch() {
-    try (FileSystem fs = FileSystems.getDefault()) {
-      try (WatchService ws = fs.newWatchService()) {
-        Path routeDirectory = routeScanner.getRouteDirectory();
-        routeDirectory.register(ws,
-            StandardWatchEventKinds.ENTRY_CREATE,
-            StandardWatchEventKinds.ENTRY_MODIFY,
-            StandardWatchEventKinds.ENTRY_DELETE);
-
-        PathMatcher jarPathMatcher = fs.getPathMatcher("glob:*.jar");
-
-        LOG.info("Watching route directory for changes - {}", routeDirectory);
-
-        while (true) {
-          WatchKey key = ws.take();
-          for (WatchEvent<?> we : key.pollEvents()) {
-            WatchEvent.Kind<?> wek = we.kind();
-            Path parent = (Path) key.watchable();
-            Path filename = (Path) we.context();
-
-            // ignore event.
-            if (StandardWatchEventKinds.OVERFLOW.equals(wek)) {
-              continue;
-            }
-
-            final Path file = parent.resolve(filename);
-            final boolean isJarFile = jarPathMatcher.matches(filename);
-
-            if (isJarFile) {
-              if (StandardWatchEventKinds.ENTRY_CREATE.equals(wek)
-                  || StandardWatchEventKinds.ENTRY_MODIFY.equals(wek)) {
-                routeScanner.scan(file);
-              } else if (StandardWatchEventKinds.ENTRY_DELETE.equals(wek)) {
-                routeScanner.remove(file);
-              }
-            }
-          }
+  @Override
+  public void onDelete(final Path file) {
+    routeScanner.remove(file);
+  }
 
-          boolean valid = key.reset();
-          if (!valid) {
-            break;
-          }
-        }
-      }
-    } catch (IOException | InterruptedException e) {
-      LOG.error("Could not watch route directory for changes", e);
-    }
+  @Override
+  public void onOverflow(final Path directory) {
+    routeScanner.resync();
   }
 }
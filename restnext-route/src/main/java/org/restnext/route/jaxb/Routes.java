@@ -8,6 +8,7 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlType;
+import javax.xml.datatype.Duration;
 
 
 /**
@@ -66,6 +67,20 @@ import javax.xml.bind.annotation.XmlType;
  *                       &lt;/complexContent&gt;
  *                     &lt;/complexType&gt;
  *                   &lt;/element&gt;
+ *                   &lt;element name="async" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/&gt;
+ *                   &lt;element name="executor" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/&gt;
+ *                   &lt;element name="inline" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/&gt;
+ *                   &lt;element name="timeout" type="{http://www.w3.org/2001/XMLSchema}duration" minOccurs="0"/&gt;
+ *                   &lt;element name="maxContentLength" type="{http://www.w3.org/2001/XMLSchema}long" minOccurs="0"/&gt;
+ *                   &lt;element name="body" minOccurs="0"&gt;
+ *                     &lt;simpleType&gt;
+ *                       &lt;restriction base="{http://www.w3.org/2001/XMLSchema}string"&gt;
+ *                         &lt;enumeration value="aggregate"/&gt;
+ *                         &lt;enumeration value="stream"/&gt;
+ *                         &lt;enumeration value="reject"/&gt;
+ *                       &lt;/restriction&gt;
+ *                     &lt;/simpleType&gt;
+ *                   &lt;/element&gt;
  *                 &lt;/all&gt;
  *               &lt;/restriction&gt;
  *             &lt;/complexContent&gt;
@@ -170,6 +185,20 @@ public class Routes {
      *             &lt;/complexContent&gt;
      *           &lt;/complexType&gt;
      *         &lt;/element&gt;
+     *         &lt;element name="async" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/&gt;
+     *         &lt;element name="executor" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/&gt;
+     *         &lt;element name="inline" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/&gt;
+     *         &lt;element name="timeout" type="{http://www.w3.org/2001/XMLSchema}duration" minOccurs="0"/&gt;
+     *         &lt;element name="maxContentLength" type="{http://www.w3.org/2001/XMLSchema}long" minOccurs="0"/&gt;
+     *         &lt;element name="body" minOccurs="0"&gt;
+     *           &lt;simpleType&gt;
+     *             &lt;restriction base="{http://www.w3.org/2001/XMLSchema}string"&gt;
+     *               &lt;enumeration value="aggregate"/&gt;
+     *               &lt;enumeration value="stream"/&gt;
+     *               &lt;enumeration value="reject"/&gt;
+     *             &lt;/restriction&gt;
+     *           &lt;/simpleType&gt;
+     *         &lt;/element&gt;
      *       &lt;/all&gt;
      *     &lt;/restriction&gt;
      *   &lt;/complexContent&gt;
@@ -194,6 +223,18 @@ public class Routes {
         protected Routes.Route.Methods methods;
         @XmlElement(namespace = "http://www.restnext.org/routes")
         protected Routes.Route.Medias medias;
+        @XmlElement(namespace = "http://www.restnext.org/routes", defaultValue = "false")
+        protected Boolean async;
+        @XmlElement(namespace = "http://www.restnext.org/routes")
+        protected String executor;
+        @XmlElement(namespace = "http://www.restnext.org/routes", defaultValue = "false")
+        protected Boolean inline;
+        @XmlElement(namespace = "http://www.restnext.org/routes")
+        protected Duration timeout;
+        @XmlElement(namespace = "http://www.restnext.org/routes")
+        protected Long maxContentLength;
+        @XmlElement(namespace = "http://www.restnext.org/routes", defaultValue = "aggregate")
+        protected String body;
 
         /**
          * Gets the value of the path property.
@@ -315,6 +356,150 @@ public class Routes {
             this.medias = value;
         }
 
+        /**
+         * Gets the value of the async property.
+         * 
+         * @return
+         *     possible object is
+         *     {@link Boolean }
+         *     
+         */
+        public Boolean getAsync() {
+            return async;
+        }
+
+        /**
+         * Sets the value of the async property.
+         * 
+         * @param value
+         *     allowed object is
+         *     {@link Boolean }
+         *     
+         */
+        public void setAsync(Boolean value) {
+            this.async = value;
+        }
+
+        /**
+         * Gets the value of the executor property.
+         * 
+         * @return
+         *     possible object is
+         *     {@link String }
+         *     
+         */
+        public String getExecutor() {
+            return executor;
+        }
+
+        /**
+         * Sets the value of the executor property.
+         * 
+         * @param value
+         *     allowed object is
+         *     {@link String }
+         *     
+         */
+        public void setExecutor(String value) {
+            this.executor = value;
+        }
+
+        /**
+         * Gets the value of the inline property.
+         * 
+         * @return
+         *     possible object is
+         *     {@link Boolean }
+         *     
+         */
+        public Boolean getInline() {
+            return inline;
+        }
+
+        /**
+         * Sets the value of the inline property.
+         * 
+         * @param value
+         *     allowed object is
+         *     {@link Boolean }
+         *     
+         */
+        public void setInline(Boolean value) {
+            this.inline = value;
+        }
+
+        /**
+         * Gets the value of the timeout property.
+         * 
+         * @return
+         *     possible object is
+         *     {@link Duration }
+         *     
+         */
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        /**
+         * Sets the value of the timeout property.
+         * 
+         * @param value
+         *     allowed object is
+         *     {@link Duration }
+         *     
+         */
+        public void setTimeout(Duration value) {
+            this.timeout = value;
+        }
+
+        /**
+         * Gets the value of the maxContentLength property.
+         * 
+         * @return
+         *     possible object is
+         *     {@link Long }
+         *     
+         */
+        public Long getMaxContentLength() {
+            return maxContentLength;
+        }
+
+        /**
+         * Sets the value of the maxContentLength property.
+         * 
+         * @param value
+         *     allowed object is
+         *     {@link Long }
+         *     
+         */
+        public void setMaxContentLength(Long value) {
+            this.maxContentLength = value;
+        }
+
+        /**
+         * Gets the value of the body property.
+         * 
+         * @return
+         *     possible object is
+         *     {@link String }
+         *     
+         */
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * Sets the value of the body property.
+         * 
+         * @param value
+         *     allowed object is
+         *     {@link String }
+         *     
+         */
+        public void setBody(String value) {
+            this.body = value;
+        }
+
 
         /**
          * <p>Java class for anonymous complex type.
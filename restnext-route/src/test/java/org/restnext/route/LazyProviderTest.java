@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+import org.restnext.core.http.Request;
+import org.restnext.core.http.Response;
+
+public class LazyProviderTest {
+
+  @Test
+  public void concurrentFirstRequestsLinkOnce() throws Exception {
+    final AtomicInteger links = new AtomicInteger();
+    final CountDownLatch linking = new CountDownLatch(1);
+    final Function<Request, Response> linked = request -> Response.ok().build();
+    final LazyProvider<Response> provider = new LazyProvider<>("Provider::ok", () -> {
+      links.incrementAndGet();
+      linking.await();
+      return linked;
+    });
+    assertFalse(provider.isResolved());
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<Function<Request, Response>>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(provider::resolve));
+      }
+      linking.countDown();
+      for (Future<Function<Request, Response>> future : futures) {
+        assertSame(linked, future.get(30, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, links.get());
+    assertTrue(provider.isResolved());
+  }
+
+  @Test
+  public void linkFailureIsRetriedAfterABackoff() throws InterruptedException {
+    final AtomicInteger links = new AtomicInteger();
+    final Function<Request, Response> linked = request -> Response.ok().build();
+    final LazyProvider<Response> provider = new LazyProvider<>("Provider::missing", () -> {
+      if (links.incrementAndGet() == 1) {
+        throw new ClassNotFoundException("Provider");
+      }
+      return linked;
+    });
+    final IllegalStateException first = linkFailure(provider);
+    final IllegalStateException second = linkFailure(provider);
+    // a fresh exception for each request, with the same cause.
+    assertNotSame(first, second);
+    assertSame(first.getCause(), second.getCause());
+    assertEquals(1, links.get());
+    assertTrue(provider.isResolved());
+
+    Thread.sleep(LazyProvider.MIN_RETRY_DELAY.toMillis() + 100);
+    assertSame(linked, provider.resolve());
+    assertEquals(2, links.get());
+  }
+
+  @Test
+  public void previousProviderIsAppliedWhileTheLinkFails() {
+    final Function<Request, Response> previous = request -> Response.ok().build();
+    final LazyProvider<Response> provider = new LazyProvider<>("Provider::missing", () -> {
+      throw new ClassNotFoundException("Provider");
+    }, previous);
+    assertSame(previous, provider.resolve());
+    assertSame(previous, provider.resolve());
+  }
+
+  private static IllegalStateException linkFailure(LazyProvider<?> provider) {
+    try {
+      provider.resolve();
+    } catch (IllegalStateException e) {
+      assertTrue(e.getCause() instanceof ClassNotFoundException);
+      return e;
+    }
+    throw new AssertionError("The link failure must be thrown");
+  }
+}
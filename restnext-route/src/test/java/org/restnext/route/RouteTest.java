@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Test;
+import org.restnext.core.http.Response;
+
+public class RouteTest {
+
+  @After
+  public void tearDown() {
+    Arrays.asList("/update/a", "/update/b", "/update/c").forEach(Route.INSTANCE::unregister);
+  }
+
+  @Test
+  public void updateReplacesOnlyTheProvidedMappings() {
+    Route.Mapping a = Route.Mapping.uri("/update/a", r -> Response.ok().build()).build();
+    Route.Mapping b = Route.Mapping.uri("/update/b", r -> Response.ok().build()).build();
+    Route.INSTANCE.update(Collections.emptySet(), Arrays.asList(a, b));
+    assertSame(a, Route.INSTANCE.getRouteMapping("/update/a"));
+    assertSame(b, Route.INSTANCE.getRouteMapping("/update/b"));
+
+    Route.Mapping newB = Route.Mapping.uri("/update/b", r -> Response.ok().build()).build();
+    Route.Mapping c = Route.Mapping.uri("/update/c", r -> Response.ok().build()).build();
+    Route.INSTANCE.update(Collections.singleton(b), Arrays.asList(newB, c));
+    assertSame(a, Route.INSTANCE.getRouteMapping("/update/a"));
+    assertSame(newB, Route.INSTANCE.getRouteMapping("/update/b"));
+    assertSame(c, Route.INSTANCE.getRouteMapping("/update/c"));
+  }
+
+  @Test
+  public void updateDoesNotUnregisterMappingsOwnedByOthers() {
+    Route.Mapping a = Route.Mapping.uri("/update/a", r -> Response.ok().build()).build();
+    Route.Mapping other = Route.Mapping.uri("/update/a", r -> Response.ok().build()).build();
+    Route.INSTANCE.register(a);
+
+    Route.INSTANCE.update(Collections.singleton(other), Collections.emptySet());
+    assertSame(a, Route.INSTANCE.getRouteMapping("/update/a"));
+
+    Route.INSTANCE.update(Collections.singleton(a), Collections.emptySet());
+    assertNull(Route.INSTANCE.getRouteMapping("/update/a"));
+  }
+
+  @Test
+  public void executorIsOptional() {
+    Route.Mapping mapping = Route.Mapping.uri("/update/a", r -> Response.ok().build())
+        .executor(" reports ").build();
+    assertEquals("reports", mapping.getExecutor());
+    assertFalse(mapping.isInline());
+
+    mapping = Route.Mapping.uri("/update/a", r -> Response.ok().build())
+        .executor("").inline(true).build();
+    assertNull(mapping.getExecutor());
+    assertTrue(mapping.isInline());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void inlineRouteCanNotNameAnExecutor() {
+    Route.Mapping.uri("/update/a", r -> Response.ok().build())
+        .executor("reports").inline(true).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void timeoutCanNotBeNegative() {
+    Route.Mapping.uri("/update/a", r -> Response.ok().build()).timeout(Duration.ofSeconds(-1));
+  }
+}
@@ -197,9 +197,51 @@ public class RoutesTest {
         + "ICAgICAgICAgICAgICAgICAgPC94czpkb2N1bWVudGF0aW9uPgogICAgICAgICAgICAgICAgICAgICAg"
         + "PC94czphbm5vdGF0aW9uPgogICAgICAgICAgICAgICAgICAgIDwveHM6ZWxlbWVudD4KICAgICAgICAg"
         + "ICAgICAgICAgPC94czpzZXF1ZW5jZT4KICAgICAgICAgICAgICAgIDwveHM6Y29tcGxleFR5cGU+CiAg"
-        + "ICAgICAgICAgICAgPC94czplbGVtZW50PgoKICAgICAgICAgICAgPC94czphbGw+CiAgICAgICAgICA8"
-        + "L3hzOmNvbXBsZXhUeXBlPgogICAgICAgIDwveHM6ZWxlbWVudD4KICAgICAgPC94czpzZXF1ZW5jZT4K"
-        + "ICAgIDwveHM6Y29tcGxleFR5cGU+CiAgPC94czplbGVtZW50PgoKPC94czpzY2hlbWE+");
+        + "ICAgICAgICAgICAgPC94czplbGVtZW50PgoKICAgICAgICAgICAgICA8eHM6ZWxlbWVudCBuYW1lPSJh"
+        + "c3luYyIgdHlwZT0ieHM6Ym9vbGVhbiIgbWluT2NjdXJzPSIwIiBkZWZhdWx0PSJmYWxzZSI+CiAgICAg"
+        + "ICAgICAgICAgICA8eHM6YW5ub3RhdGlvbj4KICAgICAgICAgICAgICAgICAgPHhzOmRvY3VtZW50YXRp"
+        + "b24gc291cmNlPSJkZXNjcmlwdGlvbiI+CiAgICAgICAgICAgICAgICAgICAgVGhpcyBlbGVtZW50IGRl"
+        + "ZmluZXMgaWYgdGhlIHJvdXRlIHByb3ZpZGVyIHJldHVybnMgYSByZXNwb25zZSBjb21wbGV0aW9uIHN0"
+        + "YWdlLgogICAgICAgICAgICAgICAgICA8L3hzOmRvY3VtZW50YXRpb24+CiAgICAgICAgICAgICAgICA8"
+        + "L3hzOmFubm90YXRpb24+CiAgICAgICAgICAgICAgPC94czplbGVtZW50PgoKICAgICAgICAgICAgICA8"
+        + "eHM6ZWxlbWVudCBuYW1lPSJleGVjdXRvciIgdHlwZT0ieHM6c3RyaW5nIiBtaW5PY2N1cnM9IjAiPgog"
+        + "ICAgICAgICAgICAgICAgPHhzOmFubm90YXRpb24+CiAgICAgICAgICAgICAgICAgIDx4czpkb2N1bWVu"
+        + "dGF0aW9uIHNvdXJjZT0iZGVzY3JpcHRpb24iPgogICAgICAgICAgICAgICAgICAgIFRoaXMgZWxlbWVu"
+        + "dCBkZWZpbmVzIHRoZSBuYW1lIG9mIHRoZSBzZXJ2ZXIgZXhlY3V0b3IgcnVubmluZyB0aGUgcm91dGUg"
+        + "cHJvdmlkZXIuCiAgICAgICAgICAgICAgICAgIDwveHM6ZG9jdW1lbnRhdGlvbj4KICAgICAgICAgICAg"
+        + "ICAgIDwveHM6YW5ub3RhdGlvbj4KICAgICAgICAgICAgICA8L3hzOmVsZW1lbnQ+CgogICAgICAgICAg"
+        + "ICAgIDx4czplbGVtZW50IG5hbWU9ImlubGluZSIgdHlwZT0ieHM6Ym9vbGVhbiIgbWluT2NjdXJzPSIw"
+        + "IiBkZWZhdWx0PSJmYWxzZSI+CiAgICAgICAgICAgICAgICA8eHM6YW5ub3RhdGlvbj4KICAgICAgICAg"
+        + "ICAgICAgICAgPHhzOmRvY3VtZW50YXRpb24gc291cmNlPSJkZXNjcmlwdGlvbiI+CiAgICAgICAgICAg"
+        + "ICAgICAgICAgVGhpcyBlbGVtZW50IGRlZmluZXMgaWYgdGhlIHJvdXRlIHByb3ZpZGVyIG5ldmVyIGJs"
+        + "b2NrcyBhbmQgcnVucyBvbiB0aGUgY2hhbm5lbCB0aHJlYWQuCiAgICAgICAgICAgICAgICAgIDwveHM6"
+        + "ZG9jdW1lbnRhdGlvbj4KICAgICAgICAgICAgICAgIDwveHM6YW5ub3RhdGlvbj4KICAgICAgICAgICAg"
+        + "ICA8L3hzOmVsZW1lbnQ+CgogICAgICAgICAgICAgIDx4czplbGVtZW50IG5hbWU9InRpbWVvdXQiIHR5"
+        + "cGU9InhzOmR1cmF0aW9uIiBtaW5PY2N1cnM9IjAiPgogICAgICAgICAgICAgICAgPHhzOmFubm90YXRp"
+        + "b24+CiAgICAgICAgICAgICAgICAgIDx4czpkb2N1bWVudGF0aW9uIHNvdXJjZT0iZGVzY3JpcHRpb24i"
+        + "PgogICAgICAgICAgICAgICAgICAgIFRoaXMgZWxlbWVudCBkZWZpbmVzIHRoZSB0aW1lIHRoZSBzZXJ2"
+        + "ZXIgd2FpdHMgZm9yIHRoZSByb3V0ZSByZXNwb25zZSwgUFQwUyBmb3Igbm9uZS4KICAgICAgICAgICAg"
+        + "ICAgICAgPC94czpkb2N1bWVudGF0aW9uPgogICAgICAgICAgICAgICAgPC94czphbm5vdGF0aW9uPgog"
+        + "ICAgICAgICAgICAgIDwveHM6ZWxlbWVudD4KCiAgICAgICAgICAgICAgPHhzOmVsZW1lbnQgbmFtZT0i"
+        + "bWF4Q29udGVudExlbmd0aCIgdHlwZT0ieHM6bG9uZyIgbWluT2NjdXJzPSIwIj4KICAgICAgICAgICAg"
+        + "ICAgIDx4czphbm5vdGF0aW9uPgogICAgICAgICAgICAgICAgICA8eHM6ZG9jdW1lbnRhdGlvbiBzb3Vy"
+        + "Y2U9ImRlc2NyaXB0aW9uIj4KICAgICAgICAgICAgICAgICAgICBUaGlzIGVsZW1lbnQgZGVmaW5lcyB0"
+        + "aGUgcm91dGUgbWF4aW11bSByZXF1ZXN0IGJvZHkgc2l6ZSBpbiBieXRlcy4KICAgICAgICAgICAgICAg"
+        + "ICAgPC94czpkb2N1bWVudGF0aW9uPgogICAgICAgICAgICAgICAgPC94czphbm5vdGF0aW9uPgogICAg"
+        + "ICAgICAgICAgIDwveHM6ZWxlbWVudD4KCiAgICAgICAgICAgICAgPHhzOmVsZW1lbnQgbmFtZT0iYm9k"
+        + "eSIgbWluT2NjdXJzPSIwIiBkZWZhdWx0PSJhZ2dyZWdhdGUiPgogICAgICAgICAgICAgICAgPHhzOmFu"
+        + "bm90YXRpb24+CiAgICAgICAgICAgICAgICAgIDx4czpkb2N1bWVudGF0aW9uIHNvdXJjZT0iZGVzY3Jp"
+        + "cHRpb24iPgogICAgICAgICAgICAgICAgICAgIFRoaXMgZWxlbWVudCBkZWZpbmVzIGhvdyB0aGUgcm91"
+        + "dGUgcmVjZWl2ZXMgdGhlIHJlcXVlc3QgYm9keS4KICAgICAgICAgICAgICAgICAgPC94czpkb2N1bWVu"
+        + "dGF0aW9uPgogICAgICAgICAgICAgICAgPC94czphbm5vdGF0aW9uPgogICAgICAgICAgICAgICAgPHhz"
+        + "OnNpbXBsZVR5cGU+CiAgICAgICAgICAgICAgICAgIDx4czpyZXN0cmljdGlvbiBiYXNlPSJ4czpzdHJp"
+        + "bmciPgogICAgICAgICAgICAgICAgICAgIDx4czplbnVtZXJhdGlvbiB2YWx1ZT0iYWdncmVnYXRlIi8+"
+        + "CiAgICAgICAgICAgICAgICAgICAgPHhzOmVudW1lcmF0aW9uIHZhbHVlPSJzdHJlYW0iLz4KICAgICAg"
+        + "ICAgICAgICAgICAgICA8eHM6ZW51bWVyYXRpb24gdmFsdWU9InJlamVjdCIvPgogICAgICAgICAgICAg"
+        + "ICAgICA8L3hzOnJlc3RyaWN0aW9uPgogICAgICAgICAgICAgICAgPC94czpzaW1wbGVUeXBlPgogICAg"
+        + "ICAgICAgICAgIDwveHM6ZWxlbWVudD4KCiAgICAgICAgICAgIDwveHM6YWxsPgogICAgICAgICAgPC94"
+        + "czpjb21wbGV4VHlwZT4KICAgICAgICA8L3hzOmVsZW1lbnQ+CiAgICAgIDwveHM6c2VxdWVuY2U+CiAg"
+        + "ICA8L3hzOmNvbXBsZXhUeXBlPgogIDwveHM6ZWxlbWVudD4KCjwveHM6c2NoZW1hPg==");
     checkFile(routesXml, ""
         + "PD94bWwgdmVyc2lvbj0iMS4wIiBlbmNvZGluZz0iVVRGLTgiIHN0YW5kYWxvbmU9InllcyI/Pjxyb3V0"
         + "ZXMgeG1sbnM9Imh0dHA6Ly93d3cucmVzdG5leHQub3JnL3JvdXRlcyI+PHJvdXRlPjxwYXRoPi90ZXN0"
@@ -19,6 +19,7 @@ package org.restnext.security;
 import static org.restnext.util.UriUtils.isPathParamUri;
 import static org.restnext.util.UriUtils.normalize;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -41,8 +42,8 @@ public enum Security {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(Security.class);
 
-  private final Map<String, Security.Mapping> registry =
-      new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+  // copy-on-write registry, so checks never see a partially applied update.
+  private volatile Map<String, Security.Mapping> registry = newRegistry();
 
   /**
    * Check the request authorization.
@@ -78,17 +79,11 @@ public enum Security {
    *
    * @param securityMapping the security mapping
    */
-  public final void register(final Security.Mapping securityMapping) {
+  public final synchronized void register(final Security.Mapping securityMapping) {
     Objects.requireNonNull(securityMapping, "securityMapping");
-
-    final String uri = securityMapping.getUri();
-    final Security.Mapping securityMappingRegistered = registry.get(uri);
-
-    if (securityMappingRegistered == null || !securityMappingRegistered.isEnable()) {
-      registry.put(uri, securityMapping);
-      LOGGER.debug("The security uri '{}' was registered.", uri);
-    } else {
-      LOGGER.warn("The security uri '{}' is already registered.", uri);
+    final Map<String, Security.Mapping> copy = newRegistry(registry);
+    if (register(copy, securityMapping)) {
+      registry = copy;
     }
   }
 
@@ -103,13 +98,65 @@ public enum Security {
    *
    * @param uri the uri
    */
-  public void unregister(final String uri) {
+  public synchronized void unregister(final String uri) {
     if (getSecurityMapping(Objects.requireNonNull(uri, "uri")) != null) {
-      registry.remove(uri);
+      final Map<String, Security.Mapping> copy = newRegistry(registry);
+      copy.remove(uri);
+      registry = copy;
       LOGGER.debug("The security uri {} was unregistered", uri);
     }
   }
 
+  /**
+   * Atomically unregister and register a set of security mappings, so a concurrent check sees
+   * either the previous or the updated registry, never an unprotected uri in between.
+   *
+   * <p>A mapping is only unregistered if it is still the one registered for its uri.
+   *
+   * @param unregister the security mappings to be unregistered
+   * @param register   the security mappings to be registered
+   */
+  public synchronized void update(final Collection<Security.Mapping> unregister,
+                                  final Collection<Security.Mapping> register) {
+    Objects.requireNonNull(unregister, "unregister");
+    Objects.requireNonNull(register, "register");
+    final Map<String, Security.Mapping> copy = newRegistry(registry);
+    for (Security.Mapping mapping : unregister) {
+      if (copy.remove(mapping.getUri(), mapping)) {
+        LOGGER.debug("The security uri {} was unregistered", mapping.getUri());
+      }
+    }
+    for (Security.Mapping mapping : register) {
+      register(copy, mapping);
+    }
+    registry = copy;
+  }
+
+  private static boolean register(final Map<String, Security.Mapping> registry,
+                                  final Security.Mapping securityMapping) {
+    final String uri = securityMapping.getUri();
+    final Security.Mapping securityMappingRegistered = registry.get(uri);
+
+    if (securityMappingRegistered == null || !securityMappingRegistered.isEnable()) {
+      registry.put(uri, securityMapping);
+      LOGGER.debug("The security uri '{}' was registered.", uri);
+      return true;
+    }
+    LOGGER.warn("The security uri '{}' is already registered.", uri);
+    return false;
+  }
+
+  private static Map<String, Security.Mapping> newRegistry() {
+    return new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+  }
+
+  private static Map<String, Security.Mapping> newRegistry(
+      final Map<String, Security.Mapping> registry) {
+    final Map<String, Security.Mapping> copy = newRegistry();
+    copy.putAll(registry);
+    return copy;
+  }
+
   // inner mapping class
 
   public static final class Mapping {
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.security;
+
+import java.util.List;
+
+/**
+ * A precompiled index of security mappings, generated at build time from the
+ * {@code org.restnext.annotation.Secured} annotated methods and listed in the
+ * {@value #LOCATION} file of the jar.
+ *
+ * <p>When a scanned jar has an index, its security XML files are ignored.
+ */
+public interface SecurityIndex {
+
+  String LOCATION = "META-INF/services/org.restnext.security.SecurityIndex";
+
+  /**
+   * The security mappings of the index.
+   *
+   * @return the security mappings
+   */
+  List<Security.Mapping> mappings();
+}
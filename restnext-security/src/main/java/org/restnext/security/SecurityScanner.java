@@ -18,27 +18,35 @@ package org.restnext.security;
 
 import static org.restnext.util.FileUtils.deepListChildren;
 import static org.restnext.util.FileUtils.listChildren;
+import static org.restnext.util.UriUtils.normalize;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.StringJoiner;
 import java.util.function.Function;
+import java.util.zip.ZipError;
 import javax.xml.bind.JAXBException;
 
-import org.restnext.core.classpath.ClasspathRegister;
+import org.restnext.core.classpath.JarClassLoaders;
 import org.restnext.core.http.Request;
 import org.restnext.core.jaxb.Jaxb;
 import org.restnext.security.jaxb.Securities;
+import org.restnext.util.DirectoryWatcher;
 import org.restnext.util.SystemPropertyUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,19 +58,24 @@ import pl.joegreen.lambdaFromString.TypeReference;
 /**
  * Created by thiago on 10/11/16.
  */
-public final class SecurityScanner {
+public final class SecurityScanner implements Closeable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SecurityScanner.class);
 
   public static final Path DEFAULT_SECURITY_DIR = SystemPropertyUtils.getPath(
       "user.dir", "security");
 
+  public static final Duration DEFAULT_QUIET_PERIOD = Duration.ofMillis(500);
+
   private final Security security;
   private final Jaxb securityJaxb;
   private final Path securityDirectory;
-  private final Map<Path, Map<Path, Set<Security.Mapping>>> securityJarFilesMap = new HashMap<>();
-
-  private LambdaFactory lambdaFactory;
+  private final Duration quietPeriod;
+  private final SecurityWatcher watcher;
+  private final Map<Path, Map<String, Set<Security.Mapping>>> securityJarFilesMap =
+      new HashMap<>();
+  private final JarClassLoaders classLoaders = new JarClassLoaders(
+      SecurityScanner.class.getClassLoader());
 
   // constructors
 
@@ -77,38 +90,96 @@ public final class SecurityScanner {
    * @param securityDirectory the security directory path
    */
   public SecurityScanner(final Security security, final Path securityDirectory) {
+    this(security, securityDirectory, DEFAULT_QUIET_PERIOD);
+  }
+
+  /**
+   * Constructor with security, security directory path and the quiet period used to coalesce
+   * the file system events of the same jar file before rescanning it.
+   *
+   * @param security          the security
+   * @param securityDirectory the security directory path
+   * @param quietPeriod       the quiet period
+   */
+  public SecurityScanner(final Security security, final Path securityDirectory,
+                         final Duration quietPeriod) {
     this.security = Objects.requireNonNull(security, "security");
     this.securityDirectory = Objects.requireNonNull(securityDirectory, "securityDirectory");
+    this.quietPeriod = Objects.requireNonNull(quietPeriod, "quietPeriod");
     this.securityJaxb = new Jaxb("security.xsd", Securities.class);
-    // start task for watching dir for changes.
-    new Thread(new SecurityWatcher(this), "security-dir-watcher").start();
+    this.watcher = new SecurityWatcher(this);
+    // register the dir in the shared watcher for changes.
+    try {
+      DirectoryWatcher.INSTANCE.register(securityDirectory, "*.jar", quietPeriod, watcher);
+    } catch (IOException e) {
+      LOGGER.error("Could not watch security directory for changes", e);
+    }
   }
 
   // methods
 
-  private void createLambda(final Set<Path> jars) {
-    final String classpath = SystemPropertyUtils.get("java.class.path");
-    final StringJoiner compilationClassPathJoiner = new StringJoiner(":")
-        .add(classpath);
+  public void scan() {
+    listChildren(securityDirectory, "*.jar").forEach(this::scan);
+  }
 
-    jars.forEach(jar -> {
-      ClasspathRegister.addPath(jar);
-      compilationClassPathJoiner.add(jar.toAbsolutePath().toString());
-    });
+  /**
+   * Scan the jar file, building its security mappings before atomically replacing the previous
+   * ones, so a protected uri is never left without its mapping. A security file or a provider
+   * that could not be read keeps its previous mappings.
+   *
+   * @param jar the jar file
+   */
+  synchronized void scan(final Path jar) {
+    final Path jarFileName = jar.getFileName();
+    final Map<String, Set<Security.Mapping>> previous =
+        securityJarFilesMap.getOrDefault(jarFileName, Collections.emptyMap());
 
-    this.lambdaFactory = LambdaFactory.get(LambdaFactoryConfiguration.get()
-        .withCompilationClassPath(compilationClassPathJoiner.toString())
-        .withImports(Request.class));
+    // each jar gets its own class loader, released when the jar is replaced or removed.
+    final ClassLoader classLoader = classLoaders.create(jar);
+    final Map<String, Set<Security.Mapping>> current =
+        lookupSecurityFiles(jar, previous, classLoader);
+    if (current == null) {
+      // keep the previous registered mappings if the jar could not be read.
+      classLoaders.discard(classLoader);
+      return;
+    }
+    if (current.isEmpty()) {
+      securityJarFilesMap.remove(jarFileName);
+    } else {
+      securityJarFilesMap.put(jarFileName, current);
+    }
+    this.security.update(mappings(previous), mappings(current));
 
-    jars.forEach(this::lookupSecurityFiles);
+    // release the previous class loader only after its mappings were replaced.
+    if (current.isEmpty()) {
+      classLoaders.remove(jar);
+      classLoaders.discard(classLoader);
+    } else {
+      classLoaders.put(jar, classLoader);
+    }
   }
 
-  public void scan() {
-    createLambda(listChildren(securityDirectory, "*.jar"));
+  /**
+   * Stop watching the security directory for changes and release the class loaders of its jars.
+   */
+  @Override
+  public void close() {
+    DirectoryWatcher.INSTANCE.unregister(securityDirectory, watcher);
+    classLoaders.close();
   }
 
-  void scan(final Path jar) {
-    createLambda(Collections.singleton(jar));
+  void rescan(final Path jar) {
+    scan(jar);
+  }
+
+  synchronized void resync() {
+    final Set<Path> jars = listChildren(securityDirectory, "*.jar");
+    final Set<Path> jarFileNames = new HashSet<>();
+    jars.forEach(jar -> jarFileNames.add(jar.getFileName()));
+    new ArrayList<>(securityJarFilesMap.keySet()).stream()
+        .filter(jarFileName -> !jarFileNames.contains(jarFileName))
+        .forEach(this::remove);
+    jars.forEach(this::scan);
   }
 
   void remove() {
@@ -117,16 +188,13 @@ public final class SecurityScanner {
 
   // getters methods
 
-  void remove(final Path jar) {
-    securityJarFilesMap.entrySet().removeIf(jarEntry -> {
-      final boolean unregister = jarEntry.getKey().equals(jar.getFileName());
-      if (unregister) {
-        jarEntry.getValue()
-            .forEach(
-                (file, securityMappings) -> securityMappings.forEach(this.security::unregister));
-      }
-      return unregister;
-    });
+  synchronized void remove(final Path jar) {
+    final Map<String, Set<Security.Mapping>> previous =
+        securityJarFilesMap.remove(jar.getFileName());
+    if (previous != null) {
+      this.security.update(mappings(previous), Collections.emptySet());
+    }
+    classLoaders.remove(jar);
   }
 
   // private methods
@@ -135,69 +203,183 @@ public final class SecurityScanner {
     return securityDirectory;
   }
 
-  private void lookupSecurityFiles(final Path jar) {
+  Duration getQuietPeriod() {
+    return quietPeriod;
+  }
+
+  /**
+   * The number of classes loaded from the scanned jar files.
+   *
+   * @return the loaded class count
+   */
+  public long getLoadedClassCount() {
+    return classLoaders.getLoadedClassCount();
+  }
+
+  /**
+   * The number of classes unloaded after their jar file was replaced or removed.
+   *
+   * @return the unloaded class count
+   */
+  public long getUnloadedClassCount() {
+    return classLoaders.getUnloadedClassCount();
+  }
+
+  private static Set<Security.Mapping> mappings(
+      final Map<String, Set<Security.Mapping>> securityFiles) {
+    final Set<Security.Mapping> mappings = new HashSet<>();
+    securityFiles.values().forEach(mappings::addAll);
+    return mappings;
+  }
+
+  private Map<String, Set<Security.Mapping>> lookupSecurityFiles(
+      final Path jar, final Map<String, Set<Security.Mapping>> previous,
+      final ClassLoader classLoader) {
+    final Set<Security.Mapping> previousMappings = mappings(previous);
     try (FileSystem fs = FileSystems.newFileSystem(jar, (ClassLoader) null)) {
+      // the build time security index has precedence over the security files.
+      final Path indexFile = fs.getPath("/" + SecurityIndex.LOCATION);
+      if (Files.exists(indexFile)) {
+        final String key = indexFile.toString();
+        return Collections.singletonMap(key, readIndex(indexFile,
+            previous.getOrDefault(key, Collections.emptySet()), previousMappings, classLoader));
+      }
       final Path securityDirectory = fs.getPath("/META-INF/security/");
-      if (Files.exists(securityDirectory)) {
-        Set<Path> securityFiles = deepListChildren(securityDirectory, "*.xml");
-        securityJarFilesMap.put(jar.getFileName(), readAll(securityFiles));
+      if (!Files.exists(securityDirectory)) {
+        return Collections.emptyMap();
       }
-    } catch (IOException e) {
+      // the previous mappings by uri, kept for the providers which could not be compiled.
+      final Map<String, Security.Mapping> previousByUri = new HashMap<>();
+      previousMappings.forEach(mapping -> previousByUri.put(mapping.getUri(), mapping));
+
+      final LambdaFactory lambdaFactory = newLambdaFactory(jar, classLoader);
+      final Map<String, Set<Security.Mapping>> securityFiles = new HashMap<>();
+      for (Path securityFile : deepListChildren(securityDirectory, "*.xml")) {
+        final String key = securityFile.toString();
+        securityFiles.put(key, read(securityFile,
+            previous.getOrDefault(key, Collections.emptySet()), previousByUri, previousMappings,
+            lambdaFactory));
+      }
+      return Collections.unmodifiableMap(securityFiles);
+    } catch (IOException | ZipError e) {
+      // the zip file system of jdk 8 fails with an error on a corrupt jar.
       LOGGER.error("Could not constructs a new fileSystem to access the contents of the file {} "
           + "as a file system.", jar, e);
+      return null;
     }
   }
 
-  private Map<Path, Set<Security.Mapping>> readAll(final Set<Path> securityFiles) {
-    final Map<Path, Set<Security.Mapping>> securityFileMappings =
-        new HashMap<>(securityFiles.size());
-    securityFiles.forEach(s -> securityFileMappings.put(s, read(s)));
-    return Collections.unmodifiableMap(new HashMap<>(securityFileMappings));
+  private static LambdaFactory newLambdaFactory(final Path jar, final ClassLoader classLoader) {
+    return LambdaFactory.get(LambdaFactoryConfiguration.get()
+        .withParentClassLoader(classLoader)
+        .withCompilationClassPath(new StringJoiner(":")
+            .add(SystemPropertyUtils.get("java.class.path"))
+            .add(jar.toAbsolutePath().toString())
+            .toString())
+        .withImports(Request.class));
   }
 
-  private Set<Security.Mapping> read(final Path securityFile) {
-    Set<Security.Mapping> mappings = new HashSet<>();
+  private Set<Security.Mapping> readIndex(final Path indexFile,
+                                          final Set<Security.Mapping> previousIndexMappings,
+                                          final Set<Security.Mapping> previousMappings,
+                                          final ClassLoader classLoader) {
+    final Set<Security.Mapping> mappings = new HashSet<>();
+    try {
+      for (String className : indexClassNames(Files.readAllBytes(indexFile))) {
+        final SecurityIndex index = Class.forName(className, true, classLoader)
+            .asSubclass(SecurityIndex.class).getDeclaredConstructor().newInstance();
+        for (Security.Mapping mapping : index.mappings()) {
+          if (isRegisteredByOther(mapping.getUri(), previousMappings)) {
+            LOGGER.warn("Ignoring the registration of the uri {} of the security index {}, "
+                + "because it was already registered", mapping.getUri(), className);
+            continue;
+          }
+          mappings.add(mapping);
+        }
+      }
+    } catch (IOException | ReflectiveOperationException | LinkageError | RuntimeException e) {
+      // a partial index would leave some uris unprotected, the previous one is kept.
+      LOGGER.error("Could not load the security index file '{}'", indexFile, e);
+      return previousIndexMappings;
+    }
+    return Collections.unmodifiableSet(mappings);
+  }
+
+  /**
+   * Checks if a mapping for the uri was already registered by other jar or manually.
+   */
+  private boolean isRegisteredByOther(final String uri,
+                                      final Set<Security.Mapping> previousMappings) {
+    final Security.Mapping mapping = this.security.getSecurityMapping(uri);
+    return mapping != null && mapping.isEnable() && !previousMappings.contains(mapping);
+  }
+
+  private static List<String> indexClassNames(final byte[] bytes) {
+    final List<String> classNames = new ArrayList<>();
+    for (String line : new String(bytes, StandardCharsets.UTF_8).split("\\R")) {
+      final int comment = line.indexOf('#');
+      final String className = (comment < 0 ? line : line.substring(0, comment)).trim();
+      if (!className.isEmpty()) {
+        classNames.add(className);
+      }
+    }
+    return classNames;
+  }
+
+  private Set<Security.Mapping> read(final Path securityFile,
+                                     final Set<Security.Mapping> previousFileMappings,
+                                     final Map<String, Security.Mapping> previousByUri,
+                                     final Set<Security.Mapping> previousMappings,
+                                     final LambdaFactory lambdaFactory) {
+    final Securities securities;
     try (InputStream is = Files.newInputStream(securityFile)) {
       // deserialize the input stream
-      Securities securities = securityJaxb.unmarshal(is, Securities.class);
-
-      // iterates over the entries
-      for (Securities.Security security : securities.getSecurity()) {
-        String uri = security.getPath();
-        Boolean enable = security.getEnable();
-
-        /*
-          https://github.com/greenjoe/lambdaFromString#code-examples:
-          The compilation process takes time (on my laptop: first call ~1s, subsequent calls ~0.1s)
-          so it probably should not be used in places where performance matters.
-          The library is rather intended to be used once during the configuration reading process
-          when the application starts.
-        */
+      securities = securityJaxb.unmarshal(is, Securities.class);
+    } catch (IOException | JAXBException e) {
+      LOGGER.error("Could not read the security file '{}'", securityFile, e);
+      return previousFileMappings;
+    }
+
+    Set<Security.Mapping> mappings = new HashSet<>();
+    // iterates over the entries
+    for (Securities.Security security : securities.getSecurity()) {
+      String uri = security.getPath();
+      Boolean enable = security.getEnable();
+
+      // checks if already has registered a mapping for the uri.
+      // To avoid creating unnecessary mapping objects.
+      if (isRegisteredByOther(uri, previousMappings)) {
+        LOGGER.warn("Ignoring the registration of the uri {} of the security file {} in the "
+                + "fileSystem {}, because it was already registered",
+            uri, securityFile, securityFile.getFileSystem());
+        continue;
+      }
+
+      /*
+        https://github.com/greenjoe/lambdaFromString#code-examples:
+        The compilation process takes time (on my laptop: first call ~1s, subsequent calls ~0.1s)
+        so it probably should not be used in places where performance matters.
+        The library is rather intended to be used once during the configuration reading process
+        when the application starts.
+      */
+      try {
         Function<Request, Boolean> provider = lambdaFactory.createLambda(
             security.getProvider(), new TypeReference<Function<Request, Boolean>>() {
             });
-
-        // checks if already has registered a mapping for the uri.
-        // To avoid creating unnecessary mapping objects.
-        Security.Mapping mapping = this.security.getSecurityMapping(uri);
-        if (mapping == null || !mapping.isEnable()) {
-          // builds the mapping
-          mapping = Security.Mapping.uri(uri, provider)
-              .enable(enable)
-              .build();
-
-          // register the mapping
-          this.security.register(mapping);
-          mappings.add(mapping);
-        } else {
-          LOGGER.warn("Ignoring the registration of the uri {} of the security file {} in the "
-                  + "fileSystem {}, because it was already registered",
-              uri, securityFile, securityFile.getFileSystem());
+        // builds the mapping
+        mappings.add(Security.Mapping.uri(uri, provider)
+            .enable(enable)
+            .build());
+      } catch (LambdaCreationException | RuntimeException e) {
+        LOGGER.error("Could not build the security of the uri '{}' of the security file '{}'",
+            uri, securityFile, e);
+        // the uri stays protected by its previous mapping.
+        final Security.Mapping previousMapping = previousByUri.get(normalize(uri));
+        if (previousMapping != null) {
+          mappings.add(previousMapping);
         }
       }
-    } catch (IOException | JAXBException | LambdaCreationException e) {
-      LOGGER.error("Could not read the security file '{}'", securityFile, e);
     }
-    return Collections.unmodifiableSet(new HashSet<>(mappings));
+    return Collections.unmodifiableSet(mappings);
   }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.security;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.restnext.core.http.Request;
+
+public class SecurityScannerTest {
+
+  private static final Request SECRET = request("/secret");
+  private static final String PROVIDERS = SecurityScannerTest.class.getName() + "::";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path jar;
+  private SecurityScanner scanner;
+
+  @Before
+  public void setUp() throws IOException {
+    Path directory = folder.newFolder("security").toPath();
+    jar = directory.resolve("security.jar");
+    writeJar(PROVIDERS + "deny");
+    // a long quiet period, the test rescans the jar itself.
+    scanner = new SecurityScanner(Security.INSTANCE, directory, Duration.ofMinutes(10));
+    scanner.scan();
+  }
+
+  @After
+  public void tearDown() {
+    scanner.close();
+    Security.INSTANCE.unregister("/secret");
+  }
+
+  @Test
+  public void protectedUriStaysProtectedWhileItsJarIsReloaded() throws Exception {
+    assertFalse(Security.checkAuthorization(SECRET));
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicBoolean authorized = new AtomicBoolean();
+    Thread checker = new Thread(() -> {
+      while (running.get()) {
+        if (Security.checkAuthorization(SECRET)) {
+          authorized.set(true);
+        }
+      }
+    });
+    checker.start();
+    try {
+      for (String provider : new String[] {"denyAll", "deny", "denyAll"}) {
+        Security.Mapping previous = Security.INSTANCE.getSecurityMapping("/secret");
+        writeJar(PROVIDERS + provider);
+        scanner.rescan(jar);
+        assertNotSame(previous, Security.INSTANCE.getSecurityMapping("/secret"));
+      }
+    } finally {
+      running.set(false);
+      checker.join();
+    }
+    assertFalse(authorized.get());
+  }
+
+  @Test
+  public void previousMappingIsKeptWhenTheReloadedJarFails() throws IOException {
+    Security.Mapping previous = Security.INSTANCE.getSecurityMapping("/secret");
+    assertNotNull(previous);
+
+    writeJar(PROVIDERS + "missing");
+    scanner.rescan(jar);
+    assertSame(previous, Security.INSTANCE.getSecurityMapping("/secret"));
+    assertFalse(Security.checkAuthorization(SECRET));
+
+    // a jar which can not be opened at all.
+    Files.write(jar, "not a jar".getBytes(StandardCharsets.UTF_8));
+    scanner.rescan(jar);
+    assertSame(previous, Security.INSTANCE.getSecurityMapping("/secret"));
+  }
+
+  public static Boolean deny(Request request) {
+    return false;
+  }
+
+  public static Boolean denyAll(Request request) {
+    return false;
+  }
+
+  // the jar is replaced at once, as a deployment tool would do.
+  private void writeJar(String provider) throws IOException {
+    Path tmp = folder.newFile().toPath();
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(tmp))) {
+      out.putNextEntry(new ZipEntry("META-INF/security/security.xml"));
+      write(out, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+          + "<securities xmlns=\"http://www.restnext.org/securities\"><security>"
+          + "<path>/secret</path><provider>" + provider + "</provider>"
+          + "</security></securities>");
+      out.closeEntry();
+    }
+    Files.move(tmp, jar, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static void write(OutputStream out, String content) throws IOException {
+    out.write(content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static Request request(String uri) {
+    return (Request) Proxy.newProxyInstance(Request.class.getClassLoader(),
+        new Class<?>[] {Request.class}, (proxy, method, args) -> {
+          if ("getUri".equals(method.getName())) {
+            return URI.create(uri);
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A server wide budget of the request body bytes buffered by the aggregated routes, shared by
+ * every channel.
+ *
+ * <p>Each request reserves its body bytes, the content length or else the route maximum content
+ * length, when its head arrives and before its body is read, and releases them once it was
+ * handled. When the budget can not hold a request, the request is either shed with {@code 503
+ * Service Unavailable} or its channel is paused until enough bytes are released. The paused
+ * requests are admitted strictly in arrival order, so a large request is not starved by the
+ * smaller ones, and a request larger than the whole budget is admitted only when nothing else is
+ * buffered.
+ */
+public final class BodyBudget {
+
+  private final long maxBytes;
+  private final Policy policy;
+  private final AtomicLong usedBytes = new AtomicLong();
+  private final AtomicLong pauseCount = new AtomicLong();
+  private final AtomicLong shedCount = new AtomicLong();
+  // guarded by this.
+  private final Queue<Waiter> waiters = new ArrayDeque<>();
+
+  /**
+   * Create the budget.
+   *
+   * @param maxBytes the maximum buffered request body bytes
+   * @param policy   what to do when the budget is exhausted
+   */
+  public BodyBudget(final long maxBytes, final Policy policy) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes: " + maxBytes);
+    }
+    if (policy == null) {
+      throw new IllegalArgumentException("policy");
+    }
+    this.maxBytes = maxBytes;
+    this.policy = policy;
+  }
+
+  /**
+   * Reserve the body bytes of a request. If the budget can not hold them, with the shed policy
+   * nothing is reserved, with the pause policy the request waits and the callback is run once
+   * its bytes were reserved.
+   *
+   * @param bytes      the body bytes
+   * @param onReserved the callback of a waiting request, run by the releasing thread
+   * @return true if reserved right away, otherwise false
+   */
+  synchronized boolean reserve(final long bytes, final Runnable onReserved) {
+    if (waiters.isEmpty() && fits(bytes)) {
+      usedBytes.addAndGet(bytes);
+      return true;
+    }
+    if (policy == Policy.SHED) {
+      shedCount.incrementAndGet();
+    } else {
+      waiters.offer(new Waiter(bytes, onReserved));
+      pauseCount.incrementAndGet();
+    }
+    return false;
+  }
+
+  /**
+   * Give up waiting, because the channel of the request was closed.
+   *
+   * @param onReserved the callback of the waiting request
+   */
+  synchronized void cancel(final Runnable onReserved) {
+    final Iterator<Waiter> iterator = waiters.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().onReserved == onReserved) {
+        iterator.remove();
+        break;
+      }
+    }
+    admitWaiters();
+  }
+
+  /**
+   * Release the bytes of a handled or discarded request, admitting the waiting requests.
+   *
+   * @param bytes the released bytes
+   */
+  void release(final long bytes) {
+    if (bytes > 0) {
+      usedBytes.addAndGet(-bytes);
+      synchronized (this) {
+        admitWaiters();
+      }
+    }
+  }
+
+  private void admitWaiters() {
+    Waiter waiter;
+    while ((waiter = waiters.peek()) != null && fits(waiter.bytes)) {
+      waiters.poll();
+      usedBytes.addAndGet(waiter.bytes);
+      waiter.onReserved.run();
+    }
+  }
+
+  private boolean fits(final long bytes) {
+    final long used = usedBytes.get();
+    return used == 0 || used + bytes <= maxBytes;
+  }
+
+  // getters methods
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public Policy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * The request body bytes currently reserved.
+   *
+   * @return the used bytes
+   */
+  public long getUsedBytes() {
+    return usedBytes.get();
+  }
+
+  /**
+   * The requests whose channel is currently paused, waiting for the budget.
+   *
+   * @return the paused request count
+   */
+  public synchronized int getPausedCount() {
+    return waiters.size();
+  }
+
+  /**
+   * The number of requests paused since the server started.
+   *
+   * @return the pause count
+   */
+  public long getPauseCount() {
+    return pauseCount.get();
+  }
+
+  /**
+   * The number of requests shed since the server started.
+   *
+   * @return the shed count
+   */
+  public long getShedCount() {
+    return shedCount.get();
+  }
+
+  // inner classes
+
+  /**
+   * What to do when the budget is exhausted.
+   */
+  public enum Policy {
+
+    /**
+     * Stop reading from the channel until enough bytes are released.
+     */
+    PAUSE,
+
+    /**
+     * Reject the request with {@code 503 Service Unavailable}.
+     */
+    SHED
+  }
+
+  private static final class Waiter {
+
+    private final long bytes;
+    private final Runnable onReserved;
+
+    Waiter(final long bytes, final Runnable onReserved) {
+      this.bytes = bytes;
+      this.onReserved = onReserved;
+    }
+  }
+}
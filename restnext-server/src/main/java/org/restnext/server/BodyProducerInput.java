@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import org.restnext.core.http.BodyProducer;
+
+/**
+ * Pulls the chunks of a body producer, only when the chunked write handler can write them.
+ */
+final class BodyProducerInput implements ChunkedInput<ByteBuf> {
+
+  private final BodyProducer producer;
+  private final ByteBufAllocator allocator;
+  // the chunk produced ahead, to know the end of the input before it is read.
+  private ByteBuf next;
+  private boolean endOfInput;
+  private long progress;
+
+  BodyProducerInput(BodyProducer producer, ByteBufAllocator allocator) {
+    this.producer = producer;
+    this.allocator = allocator;
+  }
+
+  @Override
+  public boolean isEndOfInput() throws Exception {
+    if (next == null && !endOfInput) {
+      next = producer.produce(allocator);
+      endOfInput = next == null;
+    }
+    return endOfInput;
+  }
+
+  @Override
+  public void close() throws Exception {
+    if (next != null) {
+      next.release();
+      next = null;
+    }
+    endOfInput = true;
+    producer.close();
+  }
+
+  @Deprecated
+  @Override
+  public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+    return readChunk(ctx.alloc());
+  }
+
+  @Override
+  public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+    if (isEndOfInput()) {
+      return null;
+    }
+    final ByteBuf chunk = next;
+    next = null;
+    progress += chunk.readableBytes();
+    return chunk;
+  }
+
+  @Override
+  public long length() {
+    return -1;
+  }
+
+  @Override
+  public long progress() {
+    return progress;
+  }
+}
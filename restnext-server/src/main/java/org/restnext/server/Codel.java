@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A controlled delay (CoDel) policy of a request queue, shedding the requests which waited too
+ * long in the queue with {@code 503 Service Unavailable}, without calling their route provider.
+ *
+ * <p>A short burst is absorbed by the queue, only a standing queue is an overload: when even the
+ * shortest queue delay of an interval is above the target, every request of the next interval
+ * waiting longer than the target is shed. Their clients have likely given up already, and the
+ * requests behind them are served sooner instead.
+ *
+ * <p>The queue delay of every request is counted by a histogram.
+ */
+public final class Codel {
+
+  static final Duration DEFAULT_TARGET = Duration.ofMillis(5);
+  static final Duration DEFAULT_INTERVAL = Duration.ofMillis(100);
+
+  private final long targetNanos;
+  private final long intervalNanos;
+  private final LatencyHistogram queueDelay = new LatencyHistogram();
+  private final AtomicLong shedCount = new AtomicLong();
+  // guarded by this.
+  private long intervalEnd;
+  private long minDelay;
+  private volatile boolean overloaded;
+
+  /**
+   * Create the policy with a five millis target and a hundred millis interval.
+   */
+  public Codel() {
+    this(DEFAULT_TARGET, DEFAULT_INTERVAL);
+  }
+
+  /**
+   * Create the policy.
+   *
+   * @param target   the acceptable queue delay
+   * @param interval the interval of the queue delay checks, about the worst request latency
+   */
+  public Codel(final Duration target, final Duration interval) {
+    if (target == null || target.isNegative()) {
+      throw new IllegalArgumentException("target: " + target);
+    }
+    if (interval == null || interval.isNegative() || interval.isZero()) {
+      throw new IllegalArgumentException("interval: " + interval);
+    }
+    this.targetNanos = target.toNanos();
+    this.intervalNanos = interval.toNanos();
+    this.intervalEnd = System.nanoTime() + intervalNanos;
+  }
+
+  /**
+   * Count the queue delay of a request leaving the queue, deciding whether it is shed.
+   *
+   * @param delayNanos the time the request waited in the queue
+   * @return true if the request must be shed, otherwise false
+   */
+  boolean shed(final long delayNanos) {
+    queueDelay.record(delayNanos);
+    final long now = System.nanoTime();
+    synchronized (this) {
+      if (now - intervalEnd >= 0) {
+        // an idle interval says nothing about the queue, it is not standing anymore.
+        overloaded = now - intervalEnd < intervalNanos && minDelay > targetNanos;
+        minDelay = delayNanos;
+        intervalEnd = now + intervalNanos;
+      } else {
+        minDelay = Math.min(minDelay, delayNanos);
+      }
+    }
+    if (overloaded && delayNanos > targetNanos) {
+      shedCount.incrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  // getters methods
+
+  public Duration getTarget() {
+    return Duration.ofNanos(targetNanos);
+  }
+
+  public Duration getInterval() {
+    return Duration.ofNanos(intervalNanos);
+  }
+
+  /**
+   * Whether the queue is standing above the target delay, so the late requests are shed.
+   *
+   * @return true if overloaded, otherwise false
+   */
+  public boolean isOverloaded() {
+    return overloaded;
+  }
+
+  /**
+   * The number of requests shed since this policy was created.
+   *
+   * @return the shed request count
+   */
+  public long getShedCount() {
+    return shedCount.get();
+  }
+
+  /**
+   * The histogram of the queue delay of the requests, shed or not.
+   *
+   * @return the queue delay histogram
+   */
+  public LatencyHistogram getQueueDelay() {
+    return queueDelay;
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An adaptive limit of the requests handled at once, admitting the requests before their route
+ * provider runs and rejecting the others with {@code 503 Service Unavailable} right away.
+ *
+ * <p>The limit follows the observed latency, updated once per window of at least 100 millis and
+ * 10 requests, as a gradient between the no load latency and the average latency of the window:
+ * while the latency is stable the limit grows by about its square root, once the requests queue
+ * up somewhere and the latency grows the limit shrinks in proportion. A window with a failed
+ * request shrinks the limit by ten percent. So an overloaded server keeps serving the requests
+ * it can handle at a good latency, instead of accepting them all until every one of them is
+ * late.
+ */
+public final class ConcurrencyLimiter {
+
+  static final int DEFAULT_INITIAL_LIMIT = 20;
+  static final int DEFAULT_MIN_LIMIT = 4;
+  static final int DEFAULT_MAX_LIMIT = 1000;
+
+  // the latency growth tolerated before shrinking the limit.
+  private static final double TOLERANCE = 1.5;
+  // the weight of the new limit, smoothing the limit changes.
+  private static final double SMOOTHING = 0.2;
+  // the multiplicative decrease of a window with a failed request.
+  private static final double BACKOFF = 0.9;
+  private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final int WINDOW_SAMPLES = 10;
+  // the number of windows a higher latency takes to become the no load latency.
+  private static final int DRIFT_WINDOWS = 600;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final Duration retryAfter;
+  private final AtomicInteger inflightCount = new AtomicInteger();
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private volatile int limit;
+  // guarded by this.
+  private double estimatedLimit;
+  private double noLoadLatency;
+  private long windowStart = System.nanoTime();
+  private long windowLatency;
+  private int windowSamples;
+  private int windowInflight;
+  private boolean windowFailed;
+
+  /**
+   * Create the limiter with the default limits: starting at 20, between 4 and 1000.
+   */
+  public ConcurrencyLimiter() {
+    this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+  }
+
+  /**
+   * Create the limiter.
+   *
+   * @param initialLimit the limit until enough latency was observed
+   * @param minLimit     the minimum limit
+   * @param maxLimit     the maximum limit
+   */
+  public ConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit) {
+    this(initialLimit, minLimit, maxLimit, ProviderExecutor.DEFAULT_RETRY_AFTER);
+  }
+
+  /**
+   * Create the limiter.
+   *
+   * @param initialLimit the limit until enough latency was observed
+   * @param minLimit     the minimum limit
+   * @param maxLimit     the maximum limit
+   * @param retryAfter   the delay the clients of the rejected requests are told to wait
+   */
+  public ConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit,
+                            final Duration retryAfter) {
+    if (minLimit <= 0) {
+      throw new IllegalArgumentException("minLimit: " + minLimit);
+    }
+    if (maxLimit < minLimit) {
+      throw new IllegalArgumentException("maxLimit: " + maxLimit);
+    }
+    if (initialLimit < minLimit || initialLimit > maxLimit) {
+      throw new IllegalArgumentException("initialLimit: " + initialLimit);
+    }
+    if (retryAfter == null || retryAfter.isNegative()) {
+      throw new IllegalArgumentException("retryAfter: " + retryAfter);
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.retryAfter = retryAfter;
+    this.limit = initialLimit;
+    this.estimatedLimit = initialLimit;
+  }
+
+  /**
+   * Admit a request, if less than the limit of requests are being handled.
+   *
+   * @return true if admitted, otherwise false and the request must be rejected
+   */
+  boolean tryAcquire() {
+    for (;;) {
+      final int inflight = inflightCount.get();
+      if (inflight >= limit) {
+        rejectedCount.incrementAndGet();
+        return false;
+      }
+      if (inflightCount.compareAndSet(inflight, inflight + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Complete an admitted request, adapting the limit to its latency.
+   *
+   * @param latencyNanos the request latency
+   * @param failed       true if the request failed
+   */
+  void release(final long latencyNanos, final boolean failed) {
+    final int inflight = inflightCount.getAndDecrement();
+    synchronized (this) {
+      windowFailed |= failed;
+      windowLatency += Math.max(1, latencyNanos);
+      windowSamples++;
+      windowInflight = Math.max(windowInflight, inflight);
+      final long now = System.nanoTime();
+      if (windowSamples < WINDOW_SAMPLES || now - windowStart < WINDOW_NANOS) {
+        return;
+      }
+      update((double) windowLatency / windowSamples);
+      windowStart = now;
+      windowLatency = 0;
+      windowSamples = 0;
+      windowInflight = 0;
+      windowFailed = false;
+    }
+  }
+
+  /**
+   * Give back the admission of a request never handled.
+   */
+  void cancel() {
+    inflightCount.decrementAndGet();
+  }
+
+  // getters methods
+
+  public int getMinLimit() {
+    return minLimit;
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+
+  /**
+   * The current limit of the requests handled at once.
+   *
+   * @return the concurrency limit
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * The number of admitted requests being handled.
+   *
+   * @return the inflight request count
+   */
+  public int getInflightCount() {
+    return inflightCount.get();
+  }
+
+  /**
+   * The number of requests rejected because the limit was reached, since this limiter was
+   * created.
+   *
+   * @return the rejected request count
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /**
+   * The no load latency of the admitted requests, the reference of the limit gradient.
+   *
+   * @return the no load latency
+   */
+  public synchronized Duration getLatency() {
+    return Duration.ofNanos((long) noLoadLatency);
+  }
+
+  // private methods
+
+  private void update(final double latency) {
+    // a lower latency is the new no load latency right away, a higher one only if it lasts.
+    if (noLoadLatency == 0 || latency < noLoadLatency) {
+      noLoadLatency = latency;
+    } else {
+      noLoadLatency += (latency - noLoadLatency) / DRIFT_WINDOWS;
+    }
+    final double newLimit;
+    if (windowFailed) {
+      newLimit = estimatedLimit * BACKOFF;
+    } else if (windowInflight < estimatedLimit / 2) {
+      // the limit is not the bottleneck, the latency says nothing about it.
+      return;
+    } else {
+      final double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * noLoadLatency / latency));
+      newLimit = estimatedLimit * (1 - SMOOTHING)
+          + (estimatedLimit * gradient + Math.sqrt(estimatedLimit)) * SMOOTHING;
+    }
+    estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    limit = (int) estimatedLimit;
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Closes the connections stuck in a phase of the request exchange for too long, silently, without
+ * any error response:
+ *
+ * <ul>
+ * <li>the header timeout bounds the time to receive a whole request head since its first
+ * bytes, so a client sending its head byte by byte can not hold the connection;</li>
+ * <li>the body timeout bounds the time without any body bytes while receiving a request
+ * body;</li>
+ * <li>the keep alive timeout bounds the time without any request once every response was
+ * written;</li>
+ * <li>the write timeout bounds the time without any write progress while response bytes are
+ * waiting for the client to read them.</li>
+ * </ul>
+ *
+ * <p>The read timeouts only count while the server wants to read, the time a request body is
+ * paused by the server, for the body budget or a slow streaming route, is not a client stall.
+ * Nothing is bounded while the request is handled, that is the request deadline job.
+ *
+ * <p>It sits right after the http codec, seeing the decoded requests and the responses to encode,
+ * of a connection or of an http/2 stream.
+ */
+final class ConnectionTimeoutHandler extends IdleStateHandler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionTimeoutHandler.class);
+
+  private final long headerTimeoutNanos;
+  private final long bodyTimeoutNanos;
+  private final long keepAliveTimeoutNanos;
+
+  // a request body is being received.
+  private boolean receiving;
+  // the requests whose response was not written yet.
+  private int inflight;
+  // a message was decoded by the current read loop.
+  private boolean decoded;
+  // the server asked for a read not satisfied yet.
+  private boolean readPending;
+  // the last read, read request or written response.
+  private long activityNanos = System.nanoTime();
+  // closes the connection if the request head started is not whole in time.
+  private ScheduledFuture<?> headerTimeout;
+
+  ConnectionTimeoutHandler(Duration headerTimeout, Duration bodyTimeout,
+                           Duration keepAliveTimeout, Duration writeTimeout) {
+    super(true, readerIdleNanos(bodyTimeout, keepAliveTimeout), writeTimeout.toNanos(), 0,
+        TimeUnit.NANOSECONDS);
+    this.headerTimeoutNanos = headerTimeout.toNanos();
+    this.bodyTimeoutNanos = bodyTimeout.toNanos();
+    this.keepAliveTimeoutNanos = keepAliveTimeout.toNanos();
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    decoded = true;
+    if (msg instanceof HttpRequest) {
+      cancelHeaderTimeout();
+      receiving = true;
+      inflight++;
+    }
+    if (msg instanceof LastHttpContent) {
+      receiving = false;
+    }
+    super.channelRead(ctx, msg);
+  }
+
+  @Override
+  public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+    activityNanos = System.nanoTime();
+    readPending = false;
+    // bytes read without any message decoded, a request head still buffered by the codec.
+    if (!decoded && !receiving && headerTimeout == null && headerTimeoutNanos > 0) {
+      headerTimeout = ctx.executor().schedule(() -> close(ctx, "header"),
+          headerTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+    decoded = false;
+    super.channelReadComplete(ctx);
+  }
+
+  @Override
+  public void read(ChannelHandlerContext ctx) throws Exception {
+    if (!readPending) {
+      // the stall counts from now, not from when the server paused the reads.
+      readPending = true;
+      activityNanos = System.nanoTime();
+    }
+    super.read(ctx);
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    final boolean interim = msg instanceof HttpResponse
+        && ((HttpResponse) msg).status().codeClass() == HttpStatusClass.INFORMATIONAL;
+    if (msg instanceof LastHttpContent && !interim) {
+      promise = promise.unvoid();
+      promise.addListener(future -> {
+        if (--inflight <= 0) {
+          inflight = 0;
+          // the keep alive idle time counts from the last response.
+          activityNanos = System.nanoTime();
+        }
+      });
+    }
+    super.write(ctx, msg, promise);
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    cancelHeaderTimeout();
+    super.channelInactive(ctx);
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+    // replaced by the http/2 handlers.
+    cancelHeaderTimeout();
+    super.handlerRemoved(ctx);
+  }
+
+  @Override
+  protected void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) {
+    switch (evt.state()) {
+      case READER_IDLE:
+        readerIdle(ctx);
+        break;
+      case WRITER_IDLE:
+        final ChannelOutboundBuffer buffer = ctx.channel().unsafe().outboundBuffer();
+        if (buffer != null && buffer.totalPendingWriteBytes() > 0) {
+          close(ctx, "write");
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  // private methods
+
+  private void readerIdle(ChannelHandlerContext ctx) {
+    if (!readPending) {
+      return;
+    }
+    final long timeoutNanos;
+    if (receiving) {
+      timeoutNanos = bodyTimeoutNanos;
+    } else if (inflight == 0 && headerTimeout == null) {
+      timeoutNanos = keepAliveTimeoutNanos;
+    } else {
+      return;
+    }
+    if (timeoutNanos > 0 && System.nanoTime() - activityNanos >= timeoutNanos) {
+      close(ctx, receiving ? "body" : "keep alive");
+    }
+  }
+
+  private void cancelHeaderTimeout() {
+    if (headerTimeout != null) {
+      headerTimeout.cancel(false);
+      headerTimeout = null;
+    }
+  }
+
+  private void close(ChannelHandlerContext ctx, String timeout) {
+    LOGGER.debug("Closing the connection {} on {} timeout", ctx.channel(), timeout);
+    ctx.close();
+  }
+
+  /**
+   * The reader idle check period, a quarter of the shortest enabled read timeout, so a stalled
+   * connection is closed at most a quarter late.
+   */
+  private static long readerIdleNanos(Duration bodyTimeout, Duration keepAliveTimeout) {
+    final long shortest = bodyTimeout.isZero() || keepAliveTimeout.isZero()
+        ? Math.max(bodyTimeout.toNanos(), keepAliveTimeout.toNanos())
+        : Math.min(bodyTimeout.toNanos(), keepAliveTimeout.toNanos());
+    return shortest / 4;
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Reads a file region in chunks, for the connections that can not transfer it with zero copy,
+ * such as the encrypted ones.
+ */
+final class FileRegionInput implements ChunkedInput<ByteBuf> {
+
+  private final FileRegion region;
+  private final int chunkSize;
+  private long offset;
+
+  FileRegionInput(FileRegion region, int chunkSize) {
+    this.region = region;
+    this.chunkSize = chunkSize;
+  }
+
+  @Override
+  public boolean isEndOfInput() {
+    return offset >= region.count();
+  }
+
+  @Override
+  public void close() {
+    region.release();
+  }
+
+  @Deprecated
+  @Override
+  public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+    return readChunk(ctx.alloc());
+  }
+
+  @Override
+  public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+    if (isEndOfInput()) {
+      return null;
+    }
+    final int size = (int) Math.min(chunkSize, region.count() - offset);
+    final ByteBuf chunk = allocator.buffer(size);
+    try {
+      final BufferChannel target = new BufferChannel(chunk);
+      while (chunk.isWritable()) {
+        if (region.transferTo(target, offset) <= 0) {
+          throw new IOException("Unexpected end of the file region");
+        }
+        offset = region.transferred();
+      }
+      return chunk;
+    } catch (Exception e) {
+      chunk.release();
+      throw e;
+    }
+  }
+
+  @Override
+  public long length() {
+    return region.count();
+  }
+
+  @Override
+  public long progress() {
+    return offset;
+  }
+
+  /**
+   * A channel writing into a buffer, never beyond its capacity.
+   */
+  private static final class BufferChannel implements WritableByteChannel {
+
+    private final ByteBuf buffer;
+
+    BufferChannel(ByteBuf buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+      final int length = Math.min(src.remaining(), buffer.writableBytes());
+      final ByteBuffer slice = src.duplicate();
+      slice.limit(slice.position() + length);
+      buffer.writeBytes(slice);
+      src.position(src.position() + length);
+      return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
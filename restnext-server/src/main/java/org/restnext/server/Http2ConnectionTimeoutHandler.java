@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameStreamException;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Closes the http/2 connections idle or not reading their responses for too long, with a
+ * {@code GOAWAY} frame:
+ *
+ * <ul>
+ * <li>the keep alive timeout bounds the time without any frame while no stream is open;</li>
+ * <li>the write timeout bounds the time without any write progress while frames are waiting for
+ * the client to read them.</li>
+ * </ul>
+ *
+ * <p>The request body of each stream is bounded by the {@link ConnectionTimeoutHandler} of the
+ * stream. It sits between the http/2 frame codec and the stream multiplexer, also closing the
+ * connection on the errors not bound to a stream.
+ */
+final class Http2ConnectionTimeoutHandler extends IdleStateHandler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(
+      Http2ConnectionTimeoutHandler.class);
+
+  private final Http2FrameCodec codec;
+
+  Http2ConnectionTimeoutHandler(Http2FrameCodec codec, Duration keepAliveTimeout,
+                                Duration writeTimeout) {
+    super(true, 0, writeTimeout.toNanos(), keepAliveTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    this.codec = codec;
+  }
+
+  @Override
+  protected void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) {
+    switch (evt.state()) {
+      case ALL_IDLE:
+        if (codec.connection().numActiveStreams() == 0) {
+          close(ctx, "keep alive");
+        }
+        break;
+      case WRITER_IDLE:
+        final ChannelOutboundBuffer buffer = ctx.channel().unsafe().outboundBuffer();
+        if (buffer != null && buffer.totalPendingWriteBytes() > 0) {
+          // the open streams can not complete anyway.
+          codec.gracefulShutdownTimeoutMillis(0);
+          close(ctx, "write");
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+    if (cause instanceof Http2FrameStreamException) {
+      // the error of a stream, handled by the stream pipeline.
+      super.exceptionCaught(ctx, cause);
+      return;
+    }
+    LOGGER.debug("Closing the http/2 connection {} on error", ctx.channel(), cause);
+    ctx.close();
+  }
+
+  private void close(ChannelHandlerContext ctx, String timeout) {
+    LOGGER.debug("Closing the http/2 connection {} on {} timeout", ctx.channel(), timeout);
+    // through the frame codec, telling the client with a goaway frame.
+    ctx.close();
+  }
+}
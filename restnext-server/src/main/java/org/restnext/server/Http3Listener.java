@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.incubator.codec.http3.Http3;
+import io.netty.incubator.codec.http3.Http3FrameToHttpObjectCodec;
+import io.netty.incubator.codec.http3.Http3ServerConnectionHandler;
+import io.netty.incubator.codec.quic.InsecureQuicTokenHandler;
+import io.netty.incubator.codec.quic.Quic;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.incubator.codec.quic.QuicSslContext;
+import io.netty.incubator.codec.quic.QuicSslContextBuilder;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The http/3 listener of the server, the only class using the optional QUIC codec, so it is
+ * only loaded once HTTP/3 is enabled.
+ */
+final class Http3Listener {
+
+  private final QuicSslContext sslCtx;
+  private final String altSvc;
+  private final Duration idleTimeout;
+  private final long maxConcurrentStreams;
+  private final long initialWindowSize;
+  private final long connectionWindowSize;
+  // the pipeline of each request stream, whose request is handled as an http/1.1 exchange.
+  private final ChannelInitializer<QuicStreamChannel> requestStreamInitializer;
+
+  /**
+   * Creates a new instance with provided parameters.
+   *
+   * @param certificate          the certificate the QUIC connections are encrypted with
+   * @param port                 the udp port the listener is bound to
+   * @param idleTimeout          the time an idle connection is kept
+   * @param maxConcurrentStreams the request streams a client can open on a connection
+   * @param initialWindowSize    the stream flow control window
+   * @param connectionWindowSize the connection flow control window
+   * @param httpHandlers         adds the http/1.1 handlers after the http codec of a stream
+   * @throws IllegalStateException if QUIC is not available on this platform
+   */
+  Http3Listener(ServerCertificate certificate, int port, Duration idleTimeout,
+                long maxConcurrentStreams, long initialWindowSize, long connectionWindowSize,
+                Consumer<ChannelPipeline> httpHandlers) {
+    if (!Quic.isAvailable()) {
+      throw new IllegalStateException("HTTP/3 is not available on this platform",
+          Quic.unavailabilityCause());
+    }
+    this.sslCtx = QuicSslContextBuilder.forServer(
+        certificate.getPrivateKey().toFile(),
+        null,
+        certificate.getCertificate().toFile()
+    ).applicationProtocols(Http3.supportedApplicationProtocols()).build();
+    // an ephemeral port is not known before the bind, so it is not advertised.
+    this.altSvc = port > 0 ? "h3=\":" + port + "\"; ma=86400" : null;
+    this.idleTimeout = idleTimeout;
+    this.maxConcurrentStreams = maxConcurrentStreams;
+    this.initialWindowSize = initialWindowSize;
+    this.connectionWindowSize = connectionWindowSize;
+    this.requestStreamInitializer = new ChannelInitializer<QuicStreamChannel>() {
+      @Override
+      protected void initChannel(QuicStreamChannel ch) {
+        ch.pipeline().addLast("http", new Http3FrameToHttpObjectCodec(true));
+        httpHandlers.accept(ch.pipeline());
+      }
+    };
+  }
+
+  /**
+   * The {@code Alt-Svc} header value advertising the http/3 listener to the clients, which
+   * switch to it for their next requests.
+   *
+   * @return the header value, or null if not advertised
+   */
+  String getAltSvc() {
+    return altSvc;
+  }
+
+  /**
+   * Create the quic codec of the http/3 listener, bound on an udp channel. Each request stream
+   * of a quic connection gets its own http/1.1 handlers.
+   *
+   * @return the quic server codec
+   */
+  ChannelHandler newQuicServerCodec() {
+    return Http3.newQuicServerCodecBuilder()
+        .sslContext(sslCtx)
+        // validates the client address with a retry, not protected against forged tokens.
+        .tokenHandler(InsecureQuicTokenHandler.INSTANCE)
+        .maxIdleTimeout(idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+        .initialMaxData(connectionWindowSize)
+        .initialMaxStreamDataBidirectionalRemote(initialWindowSize)
+        .initialMaxStreamsBidirectional(maxConcurrentStreams)
+        .handler(new ChannelInitializer<QuicChannel>() {
+          @Override
+          protected void initChannel(QuicChannel ch) {
+            ch.pipeline().addLast(new Http3ServerConnectionHandler(requestStreamInitializer));
+          }
+        })
+        .build();
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of durations, counted in power of two microsecond buckets: the bucket
+ * {@code i} counts the durations up to {@code 2^i} microseconds, above the previous bucket bound.
+ * The last bucket counts every longer duration.
+ */
+public final class LatencyHistogram {
+
+  private static final int BUCKET_COUNT = 32;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+  /**
+   * Count a duration.
+   *
+   * @param nanos the duration in nanoseconds
+   */
+  void record(final long nanos) {
+    final long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+    final int bucket = micros <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+    counts.incrementAndGet(Math.min(bucket, BUCKET_COUNT - 1));
+  }
+
+  // getters methods
+
+  /**
+   * The number of counted durations.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * The counts of each bucket, from the shortest to the longest durations.
+   *
+   * @return a snapshot of the bucket counts
+   */
+  public long[] getCounts() {
+    final long[] snapshot = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshot[i] = counts.get(i);
+    }
+    return snapshot;
+  }
+
+  /**
+   * The upper bound of a bucket.
+   *
+   * @param bucket the bucket index
+   * @return the longest duration counted by the bucket
+   */
+  public Duration getBound(final int bucket) {
+    if (bucket < 0 || bucket >= BUCKET_COUNT) {
+      throw new IndexOutOfBoundsException("bucket: " + bucket);
+    }
+    return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(1L << bucket));
+  }
+
+  /**
+   * The upper bound of the bucket holding the percentile of the counted durations.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the percentile duration or {@link Duration#ZERO} if nothing was counted
+   */
+  public Duration getPercentile(final double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile: " + percentile);
+    }
+    final long[] snapshot = getCounts();
+    long count = 0;
+    for (long bucketCount : snapshot) {
+      count += bucketCount;
+    }
+    if (count == 0) {
+      return Duration.ZERO;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return getBound(i);
+      }
+    }
+    return getBound(BUCKET_COUNT - 1);
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the blocking route providers out of the event loops, at most a maximum number of them at
+ * once, queueing the others in arrival order. When the queue is full the providers are rejected,
+ * and their requests answered with {@code 503 Service Unavailable} and a {@code Retry-After}.
+ *
+ * <p>Named provider executors are bulkheads, isolating the routes of each one from the slow
+ * routes of the others. With a {@link Codel} policy the providers waiting too long in the queue
+ * are shed, answered with {@code 503 Service Unavailable} without being called.
+ *
+ * <p>With virtual threads, available from Java 21, each provider runs on its own virtual thread,
+ * so blocking providers scale to many concurrent requests without sizing a thread pool. The
+ * responses are still written by the channel event loop.
+ */
+public final class ProviderExecutor implements Executor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProviderExecutor.class);
+
+  static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+
+  private final Executor executor;
+  private final int maxConcurrency;
+  private final int maxQueued;
+  private final Duration retryAfter;
+  private final Codel codel;
+  private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queuedCount = new AtomicInteger();
+  private final AtomicInteger activeCount = new AtomicInteger();
+  private final AtomicLong completedCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  /**
+   * Create the provider executor, with an unbounded queue.
+   *
+   * @param executor       the executor running the providers
+   * @param maxConcurrency the maximum number of providers running at once
+   */
+  public ProviderExecutor(final Executor executor, final int maxConcurrency) {
+    this(executor, maxConcurrency, Integer.MAX_VALUE, DEFAULT_RETRY_AFTER);
+  }
+
+  /**
+   * Create the provider executor.
+   *
+   * @param executor       the executor running the providers
+   * @param maxConcurrency the maximum number of providers running at once
+   * @param maxQueued      the maximum number of providers waiting, the others are rejected
+   * @param retryAfter     the delay the clients of the rejected requests are told to wait
+   */
+  public ProviderExecutor(final Executor executor, final int maxConcurrency,
+                          final int maxQueued, final Duration retryAfter) {
+    this(executor, maxConcurrency, maxQueued, retryAfter, null);
+  }
+
+  /**
+   * Create the provider executor.
+   *
+   * @param executor       the executor running the providers
+   * @param maxConcurrency the maximum number of providers running at once
+   * @param maxQueued      the maximum number of providers waiting, the others are rejected
+   * @param retryAfter     the delay the clients of the rejected requests are told to wait
+   * @param codel          the policy shedding the providers waiting too long, or {@code null}
+   */
+  public ProviderExecutor(final Executor executor, final int maxConcurrency,
+                          final int maxQueued, final Duration retryAfter, final Codel codel) {
+    if (executor == null) {
+      throw new IllegalArgumentException("executor");
+    }
+    if (maxConcurrency <= 0) {
+      throw new IllegalArgumentException("maxConcurrency: " + maxConcurrency);
+    }
+    if (maxQueued < 0) {
+      throw new IllegalArgumentException("maxQueued: " + maxQueued);
+    }
+    if (retryAfter == null || retryAfter.isNegative()) {
+      throw new IllegalArgumentException("retryAfter: " + retryAfter);
+    }
+    this.executor = executor;
+    this.maxConcurrency = maxConcurrency;
+    this.maxQueued = maxQueued;
+    this.retryAfter = retryAfter;
+    this.codel = codel;
+  }
+
+  /**
+   * Create a provider executor running the providers on a fixed number of platform threads.
+   *
+   * @param name       the thread name prefix
+   * @param threads    the number of threads, the maximum number of providers running at once
+   * @param maxQueued  the maximum number of providers waiting, the others are rejected
+   * @param retryAfter the delay the clients of the rejected requests are told to wait
+   * @return the provider executor
+   */
+  public static ProviderExecutor fixedThreads(final String name, final int threads,
+                                              final int maxQueued, final Duration retryAfter) {
+    return fixedThreads(name, threads, maxQueued, retryAfter, null);
+  }
+
+  /**
+   * Create a provider executor running the providers on a fixed number of platform threads.
+   *
+   * @param name       the thread name prefix
+   * @param threads    the number of threads, the maximum number of providers running at once
+   * @param maxQueued  the maximum number of providers waiting, the others are rejected
+   * @param retryAfter the delay the clients of the rejected requests are told to wait
+   * @param codel      the policy shedding the providers waiting too long, or {@code null}
+   * @return the provider executor
+   */
+  public static ProviderExecutor fixedThreads(final String name, final int threads,
+                                              final int maxQueued, final Duration retryAfter,
+                                              final Codel codel) {
+    final AtomicInteger threadCount = new AtomicInteger();
+    return new ProviderExecutor(Executors.newFixedThreadPool(threads, runnable -> {
+      final Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }), threads, maxQueued, retryAfter, codel);
+  }
+
+  /**
+   * Create a provider executor running each provider on a new virtual thread, or on a cached
+   * platform thread when the runtime does not support virtual threads.
+   *
+   * @param maxConcurrency the maximum number of providers running at once
+   * @return the provider executor
+   */
+  public static ProviderExecutor virtualThreads(final int maxConcurrency) {
+    return new ProviderExecutor(newVirtualThreadPerTaskExecutor(), maxConcurrency);
+  }
+
+  /**
+   * Run the provider, or queue it if the maximum number of providers are already running.
+   *
+   * <p>A queued provider rejected later by the underlying executor is never run, it is completed
+   * exceptionally if it is a {@link CompletableFuture}.
+   *
+   * @param command the provider
+   * @throws RejectedExecutionException if the queue is full
+   */
+  @Override
+  public void execute(final Runnable command) {
+    final int freeCount = Math.max(0, maxConcurrency - activeCount.get());
+    if (queuedCount.incrementAndGet() > (long) maxQueued + freeCount) {
+      queuedCount.decrementAndGet();
+      rejectedCount.incrementAndGet();
+      throw new RejectedExecutionException("The provider executor queue is full");
+    }
+    queue.offer(command);
+    drain();
+  }
+
+  // getters methods
+
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  public int getMaxQueued() {
+    return maxQueued;
+  }
+
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+
+  /**
+   * The policy shedding the providers waiting too long in the queue, exposing the queue delay
+   * histogram.
+   *
+   * @return the codel policy or {@code null} if not enabled
+   */
+  public Codel getCodel() {
+    return codel;
+  }
+
+  /**
+   * The number of providers running.
+   *
+   * @return the active provider count
+   */
+  public int getActiveCount() {
+    return activeCount.get();
+  }
+
+  /**
+   * The number of providers waiting for a running one to complete.
+   *
+   * @return the queued provider count
+   */
+  public int getQueuedCount() {
+    return queuedCount.get();
+  }
+
+  /**
+   * The number of providers completed since this executor was created.
+   *
+   * @return the completed provider count
+   */
+  public long getCompletedCount() {
+    return completedCount.get();
+  }
+
+  /**
+   * The number of providers rejected because the queue was full or by the underlying executor,
+   * since this executor was created.
+   *
+   * @return the rejected provider count
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  // private methods
+
+  private void drain() {
+    while (!queue.isEmpty()) {
+      final int active = activeCount.get();
+      if (active >= maxConcurrency) {
+        // the next completion drains the queue.
+        return;
+      }
+      if (!activeCount.compareAndSet(active, active + 1)) {
+        continue;
+      }
+      final Runnable command = queue.poll();
+      if (command == null) {
+        activeCount.decrementAndGet();
+        continue;
+      }
+      queuedCount.decrementAndGet();
+      try {
+        executor.execute(() -> run(command));
+      } catch (RuntimeException e) {
+        // the command may be queued by another caller, it is failed instead of the caller.
+        activeCount.decrementAndGet();
+        rejectedCount.incrementAndGet();
+        reject(command, e);
+      }
+    }
+  }
+
+  private static void reject(final Runnable command, final RuntimeException cause) {
+    if (command instanceof CompletableFuture) {
+      ((CompletableFuture<?>) command).completeExceptionally(cause);
+    } else {
+      LOGGER.error("The executor rejected a queued route provider, it will not run", cause);
+    }
+  }
+
+  private void run(final Runnable command) {
+    try {
+      command.run();
+    } finally {
+      completedCount.incrementAndGet();
+      activeCount.decrementAndGet();
+      drain();
+    }
+  }
+
+  private static Executor newVirtualThreadPerTaskExecutor() {
+    try {
+      // resolved by reflection, the library still targets Java 8.
+      final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (Executor) method.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      LOGGER.warn("Virtual threads are not supported by this runtime, the route providers run "
+          + "on cached platform threads instead");
+      return Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "route-provider");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.restnext.core.http.Response.Status.METHOD_NOT_ALLOWED;
+import static org.restnext.core.http.Response.Status.NOT_FOUND;
+import static org.restnext.core.http.Response.Status.UNAUTHORIZED;
+import static org.restnext.core.http.Response.Status.UNSUPPORTED_MEDIA_TYPE;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import java.net.URI;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.restnext.core.http.MediaType;
+import org.restnext.core.http.Request;
+import org.restnext.core.http.Response;
+import org.restnext.core.url.UrlMatch;
+import org.restnext.route.Route;
+import org.restnext.security.Security;
+
+/**
+ * The route mapping resolved from a request head, before its body is received.
+ *
+ * <p>The heads of a channel are queued in the request order, since the request handler may run
+ * in another thread and still be handling a previous pipelined request.
+ */
+final class RequestHead {
+
+  private static final AttributeKey<Deque<RequestHead>> KEY = AttributeKey.valueOf(
+      RequestHead.class, "requestHeads");
+
+  private final Route.Mapping routeMapping;
+  private final long maxContentLength;
+  // the body bytes reserved from the budget, released once the request was handled.
+  private final AtomicLong bodyBytes = new AtomicLong();
+  private volatile BodyBudget budget;
+  // when the request was fully received and queued for the request handler, zero if unknown.
+  private volatile long receivedNanos;
+
+  private RequestHead(final Route.Mapping routeMapping, final long maxContentLength) {
+    this.routeMapping = routeMapping;
+    this.maxContentLength = maxContentLength;
+  }
+
+  /**
+   * Whether a security provider must authorize the request, the provider may block.
+   *
+   * @param request the request
+   * @return true if an enabled security mapping matches the request uri
+   */
+  static boolean isSecured(final Request request) {
+    final Security.Mapping mapping = Security.INSTANCE.getSecurityMapping(
+        request.getUri().toString());
+    return mapping != null && mapping.isEnable();
+  }
+
+  /**
+   * Check the security constraint of the request, calling its security provider.
+   *
+   * @param request     the request
+   * @param debugErrors true to describe the request in the error
+   * @throws ServerException if the request is not authorized
+   */
+  static void authorize(final Request request, final boolean debugErrors) {
+    // Check security constraint for the request,
+    // otherwise return 401 - Unauthorized  response.
+    if (!Security.checkAuthorization(request)) {
+      throw error(UNAUTHORIZED, debugErrors, () -> String.format(
+          "Access denied for the uri %s", request.getBaseUri().resolve(
+              request.getUri().toString())));
+    }
+  }
+
+  /**
+   * Resolve the enabled route mapping of the request, checking its security, http method and
+   * media type constraints.
+   *
+   * @param request          the request
+   * @param maxContentLength the server maximum content length
+   * @param debugErrors      true to describe the request in the errors, otherwise the
+   *                         preallocated status errors are thrown
+   * @return the request head
+   * @throws ServerException if the request is rejected
+   */
+  static RequestHead resolve(final Request request, final long maxContentLength,
+                             final boolean debugErrors) {
+    authorize(request, debugErrors);
+    return resolveRoute(request, maxContentLength, debugErrors);
+  }
+
+  /**
+   * Resolve the enabled route mapping of an already authorized request, checking its http method
+   * and media type constraints.
+   *
+   * @param request          the request
+   * @param maxContentLength the server maximum content length
+   * @param debugErrors      true to describe the request in the errors
+   * @return the request head
+   * @throws ServerException if the request is rejected
+   */
+  static RequestHead resolveRoute(final Request request, final long maxContentLength,
+                                  final boolean debugErrors) {
+    final String uri = request.getUri().toString();
+    final List<MediaType> medias = request.getMediaType();
+    final Request.Method method = request.getMethod();
+    // only built to describe an error.
+    final Supplier<URI> fullRequestUri = () -> request.getBaseUri().resolve(uri);
+
+    // Get registered route mapping for the request uri, otherwise return 404 - Not Found  response.
+    Route.Mapping routeMapping = Optional.ofNullable(Route.INSTANCE.getRouteMapping(uri))
+        .filter(Route.Mapping::isEnable)
+        .filter(mapping -> mapping.getRouteProvider() != null || mapping.isAsync()
+            || mapping.isStreaming())
+        .orElseThrow(() -> error(NOT_FOUND, debugErrors, () -> String.format(
+            "Route mapping not found for the method %s and uri %s", method,
+            fullRequestUri.get())));
+
+    // Check if the registered route mapping methods contains the request method,
+    // otherwise return 405 - Method Not Allowed response.
+    Optional.ofNullable(routeMapping.getMethods())
+        .filter(methods -> methods.contains(method) || methods.isEmpty())
+        .orElseThrow(() -> error(METHOD_NOT_ALLOWED, debugErrors, () -> String.format(
+            "Method %s not allowed for the request uri %s", method, fullRequestUri.get())));
+
+    // Check if the registered route mapping medias contains the request media,
+    // otherwise return 415 Unsupported Media Type response.
+    Optional.ofNullable(routeMapping.getMedias())
+        .filter(routeMedias -> anyMatchMediaType(routeMedias, medias))
+        .orElseThrow(() -> error(UNSUPPORTED_MEDIA_TYPE, debugErrors, () -> String.format(
+            "Unsupported %s media type(s) for the request uri %s", medias,
+            fullRequestUri.get())));
+
+    return new RequestHead(routeMapping, maxContentLength(routeMapping, maxContentLength));
+  }
+
+  static void offer(final Channel channel, final RequestHead head) {
+    Deque<RequestHead> heads = channel.attr(KEY).get();
+    if (heads == null) {
+      heads = new ConcurrentLinkedDeque<>();
+      Deque<RequestHead> previous = channel.attr(KEY).setIfAbsent(heads);
+      if (previous != null) {
+        heads = previous;
+      }
+    }
+    heads.offerLast(head);
+  }
+
+  /**
+   * The head of the request being received, only called from the channel event loop.
+   *
+   * @param channel the channel
+   * @return the request head or {@code null}
+   */
+  static RequestHead current(final Channel channel) {
+    Deque<RequestHead> heads = channel.attr(KEY).get();
+    return heads == null ? null : heads.peekLast();
+  }
+
+  /**
+   * The head of the oldest request not handled yet.
+   *
+   * @param channel the channel
+   * @return the request head or {@code null}
+   */
+  static RequestHead poll(final Channel channel) {
+    Deque<RequestHead> heads = channel.attr(KEY).get();
+    return heads == null ? null : heads.pollFirst();
+  }
+
+  /**
+   * Release the body bytes of every request head of the channel, which was closed.
+   *
+   * @param channel the channel
+   */
+  static void releaseAll(final Channel channel) {
+    RequestHead head;
+    while ((head = poll(channel)) != null) {
+      head.release();
+    }
+  }
+
+  /**
+   * Attach the body bytes reserved by this request from the budget.
+   *
+   * @param budget the body budget
+   * @param bytes  the reserved bytes
+   */
+  void reserved(final BodyBudget budget, final long bytes) {
+    this.budget = budget;
+    bodyBytes.addAndGet(bytes);
+  }
+
+  /**
+   * Release the reserved bytes not used by the received body, once it was fully received.
+   *
+   * @param receivedBytes the received body bytes
+   */
+  void releaseUnused(final long receivedBytes) {
+    final BodyBudget budget = this.budget;
+    final long unused = bodyBytes.get() - receivedBytes;
+    if (budget != null && unused > 0) {
+      bodyBytes.addAndGet(-unused);
+      budget.release(unused);
+    }
+  }
+
+  /**
+   * Release the body bytes reserved by this request, only once.
+   */
+  void release() {
+    final BodyBudget budget = this.budget;
+    if (budget != null) {
+      budget.release(bodyBytes.getAndSet(0));
+    }
+  }
+
+  /**
+   * Mark the request as fully received, from now on waiting for the request handler.
+   */
+  void received() {
+    receivedNanos = System.nanoTime();
+  }
+
+  /**
+   * The {@link System#nanoTime()} the request was fully received.
+   *
+   * @return the received time or {@code 0} if unknown
+   */
+  long getReceivedNanos() {
+    return receivedNanos;
+  }
+
+  /**
+   * Parse the uri parameters and add it to request parameters map.
+   *
+   * @param request the request
+   */
+  void bind(final Request request) {
+    UrlMatch urlMatch = routeMapping.getUrlMatcher().match(request.getUri().toString());
+    for (Map.Entry<String, String> entry : urlMatch.parameterSet()) {
+      request.getParams().add(entry.getKey(), entry.getValue());
+    }
+  }
+
+  Route.Mapping getRouteMapping() {
+    return routeMapping;
+  }
+
+  long getMaxContentLength() {
+    return maxContentLength;
+  }
+
+  boolean isStreaming() {
+    return routeMapping.isStreaming();
+  }
+
+  /**
+   * The route maximum body size, a route that rejects the body accepts none and a streaming
+   * route without its own limit accepts any size, since its body is never buffered.
+   */
+  private static long maxContentLength(final Route.Mapping routeMapping,
+                                       final long defaultMaxContentLength) {
+    if (routeMapping.getBody() == Route.Mapping.Body.REJECT) {
+      return 0;
+    }
+    if (routeMapping.getMaxContentLength() >= 0) {
+      return routeMapping.getMaxContentLength();
+    }
+    return routeMapping.isStreaming() ? Long.MAX_VALUE : defaultMaxContentLength;
+  }
+
+  /**
+   * The error of a rejected request, described only while debugging the errors.
+   *
+   * @param status      the response status
+   * @param debugErrors true to describe the request
+   * @param message     the request description
+   * @return the error to throw
+   */
+  static ServerException error(final Response.Status status, final boolean debugErrors,
+                               final Supplier<String> message) {
+    return debugErrors ? new ServerException(message.get(), status) : ServerException.of(status);
+  }
+
+  private static boolean anyMatchMediaType(List<MediaType> routeMappingMedias,
+                                           List<MediaType> requestMedias) {
+
+    if (routeMappingMedias == null || routeMappingMedias.isEmpty() || requestMedias == null
+        || requestMedias.isEmpty() || requestMedias.contains(MediaType.WILDCARD)) {
+      return true;
+    }
+
+    boolean r = false;
+    for (MediaType e : routeMappingMedias) {
+      if (r) {
+        break;
+      }
+      for (MediaType e2 : requestMedias) {
+        r = e.isSimilar(e2) || e.isCompatible(e2);
+        if (r) {
+          break;
+        }
+      }
+    }
+    return r;
+  }
+}
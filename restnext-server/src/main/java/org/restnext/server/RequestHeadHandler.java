@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.restnext.core.http.Response.Status.BAD_REQUEST;
+import static org.restnext.core.http.Response.Status.EXPECTATION_FAILED;
+import static org.restnext.core.http.Response.Status.REQUEST_ENTITY_TOO_LARGE;
+import static org.restnext.core.http.Response.Status.SERVICE_UNAVAILABLE;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.restnext.core.http.Request;
+import org.restnext.core.http.RequestImpl;
+import org.restnext.core.http.Response;
+
+/**
+ * Resolves the route of each request as soon as its head arrives, before its body is received.
+ *
+ * <p>A request to an unknown, unauthorized or unsupported route is rejected right away and its
+ * body discarded, instead of being buffered first. The {@code Expect: 100-continue} requests are
+ * answered here, with {@code 100 Continue} only if the request is accepted, otherwise with the
+ * final error status. The body size is enforced as it arrives against the route maximum content
+ * length. The aggregated bodies reserve their bytes from the server request body budget before
+ * being read, the channel reads are paused while a request waits for the budget.
+ *
+ * <p>The security providers only see the request head, not its body nor its form parameters.
+ * Since they may block, they run on the security executor if there is one, the channel reads
+ * being paused until the request is authorized.
+ *
+ * <p>The connection is kept after the client error of a rejected request whose body can be
+ * discarded as it arrives, so a client probing unknown uris does not reconnect for each one.
+ */
+class RequestHeadHandler extends ChannelInboundHandlerAdapter {
+
+  private final long maxContentLength;
+  private final BodyBudget budget;
+  // runs the security providers out of the channel event loop, if any.
+  private final Executor securityExecutor;
+  private final boolean debugErrors;
+
+  // the head of the current request.
+  private RequestHead head;
+  // the body of the current request is discarded, because the request was rejected.
+  private boolean discarding;
+  // the body bytes the current request can still receive.
+  private long remaining;
+  // the body bytes the current request received.
+  private long received;
+
+  // the request waiting for its authorization or the body budget, and the messages read
+  // meanwhile.
+  private HttpRequest waitingRequest;
+  private Runnable onReserved;
+  private final Queue<Object> pending = new ArrayDeque<>();
+
+  RequestHeadHandler(long maxContentLength, BodyBudget budget, Executor securityExecutor,
+                     boolean debugErrors) {
+    this.maxContentLength = maxContentLength;
+    this.budget = budget;
+    this.securityExecutor = securityExecutor;
+    this.debugErrors = debugErrors;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (waitingRequest != null) {
+      pending.offer(msg);
+      return;
+    }
+
+    if (msg instanceof HttpRequest) {
+      final HttpRequest req = (HttpRequest) msg;
+      discarding = false;
+      received = 0;
+      final Request request;
+      try {
+        request = validate(ctx, req);
+      } catch (RuntimeException e) {
+        head = null;
+        reject(ctx, msg, e, isKeepAlive(req, e));
+        return;
+      }
+      if (securityExecutor != null && RequestHead.isSecured(request)) {
+        // stop reading until the security provider authorized the request.
+        waitingRequest = req;
+        ctx.channel().config().setAutoRead(false);
+        authorize(ctx, req, request);
+        return;
+      }
+      if (!accept(ctx, req, request, true)) {
+        return;
+      }
+    }
+
+    if (msg instanceof HttpContent && !admit(ctx, (HttpContent) msg)) {
+      return;
+    }
+
+    ctx.fireChannelRead(msg);
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    if (waitingRequest != null) {
+      if (onReserved != null) {
+        budget.cancel(onReserved);
+        onReserved = null;
+      }
+      ReferenceCountUtil.release(waitingRequest);
+      waitingRequest = null;
+    }
+    Object msg;
+    while ((msg = pending.poll()) != null) {
+      ReferenceCountUtil.release(msg);
+    }
+    RequestHead.releaseAll(ctx.channel());
+    super.channelInactive(ctx);
+  }
+
+  /**
+   * Enforce the route maximum content length on the body content as it arrives.
+   *
+   * @return true if the content can be passed on, false if it was discarded
+   */
+  private boolean admit(ChannelHandlerContext ctx, HttpContent msg) {
+    if (discarding) {
+      discarding = !(msg instanceof LastHttpContent);
+      ReferenceCountUtil.release(msg);
+      return false;
+    }
+    final int size = msg.content().readableBytes();
+    if (size > remaining) {
+      reject(ctx, msg, RequestHead.error(REQUEST_ENTITY_TOO_LARGE, debugErrors,
+          () -> "Request content exceeds the route maximum content length"), false);
+      return false;
+    }
+    remaining -= size;
+    received += size;
+    if (msg instanceof LastHttpContent && head != null) {
+      head.releaseUnused(received);
+    }
+    return true;
+  }
+
+  private Request validate(ChannelHandlerContext ctx, HttpRequest req) {
+    if (req.decoderResult().isFailure()) {
+      throw debugErrors
+          ? new ServerException(req.decoderResult().cause(), BAD_REQUEST)
+          : ServerException.of(BAD_REQUEST);
+    }
+    if (isUnsupportedExpectation(req)) {
+      throw RequestHead.error(EXPECTATION_FAILED, debugErrors, () -> "Unsupported expectation");
+    }
+    return new RequestImpl(ctx, req);
+  }
+
+  /**
+   * Accept the request head, resolving its route and reserving its body bytes.
+   *
+   * @return true if the request can be passed on now, false if it was rejected or waits for the
+   *     body budget
+   */
+  private boolean accept(ChannelHandlerContext ctx, HttpRequest req, Request request,
+                         boolean authorize) {
+    final boolean reserved;
+    try {
+      head = resolve(req, request, authorize);
+      reserved = reserve(ctx, req);
+    } catch (RuntimeException e) {
+      head = null;
+      reject(ctx, req, e, isKeepAlive(req, e));
+      return false;
+    }
+    RequestHead.offer(ctx.channel(), head);
+    remaining = head.getMaxContentLength();
+    if (!reserved) {
+      // stop reading until the budget can hold the request body.
+      waitingRequest = req;
+      ctx.channel().config().setAutoRead(false);
+      return false;
+    }
+    expectContinue(ctx, req);
+    return true;
+  }
+
+  private RequestHead resolve(HttpRequest req, Request request, boolean authorize) {
+    final RequestHead head = authorize
+        ? RequestHead.resolve(request, maxContentLength, debugErrors)
+        : RequestHead.resolveRoute(request, maxContentLength, debugErrors);
+
+    if (HttpUtil.getContentLength(req, -1L) > head.getMaxContentLength()) {
+      throw RequestHead.error(REQUEST_ENTITY_TOO_LARGE, debugErrors,
+          () -> "Request content length exceeds the route maximum content length");
+    }
+    return head;
+  }
+
+  /**
+   * Run the security provider of the request on the security executor, the request is accepted
+   * or rejected back on the channel event loop.
+   */
+  private void authorize(ChannelHandlerContext ctx, HttpRequest req, Request request) {
+    final SecurityCheck check = new SecurityCheck(request, debugErrors);
+    try {
+      securityExecutor.execute(check);
+    } catch (RejectedExecutionException e) {
+      check.completeExceptionally(e);
+    }
+    check.whenComplete((authorized, cause) -> {
+      try {
+        ctx.executor().execute(() -> authorized(ctx, req, request, cause));
+      } catch (RejectedExecutionException e) {
+        // the channel event loop was shut down, the request was released with the channel.
+      }
+    });
+  }
+
+  /**
+   * The security provider of the waiting request answered, resume the channel reads.
+   */
+  private void authorized(ChannelHandlerContext ctx, HttpRequest req, Request request,
+                          Throwable cause) {
+    if (waitingRequest != req) {
+      // the channel was closed meanwhile.
+      return;
+    }
+    waitingRequest = null;
+    // before the request is passed on, a streaming route or an error pauses the reads again.
+    ctx.channel().config().setAutoRead(true);
+    final boolean accepted;
+    if (cause == null) {
+      accepted = accept(ctx, req, request, false);
+    } else {
+      final Throwable failure = cause instanceof RejectedExecutionException
+          ? RequestHead.error(SERVICE_UNAVAILABLE, debugErrors, cause::getMessage)
+          : cause;
+      head = null;
+      reject(ctx, req, failure, isKeepAlive(req, failure));
+      accepted = false;
+    }
+    resume(ctx, accepted ? req : null);
+  }
+
+  /**
+   * Reserve the body bytes of an aggregated request from the budget, its content length or the
+   * maximum content length of a chunked body. A streamed body is never buffered.
+   *
+   * @return true if reserved, false if the request must wait for the budget
+   * @throws ServerException if the request is shed
+   */
+  private boolean reserve(ChannelHandlerContext ctx, HttpRequest req) {
+    if (budget == null || head.isStreaming()) {
+      return true;
+    }
+    final long bytes = HttpUtil.isTransferEncodingChunked(req)
+        ? head.getMaxContentLength()
+        : HttpUtil.getContentLength(req, 0L);
+    if (bytes <= 0) {
+      return true;
+    }
+    final RequestHead reserving = head;
+    final Runnable callback = () -> ctx.executor().execute(() -> reserved(ctx, reserving, bytes));
+    if (budget.reserve(bytes, callback)) {
+      head.reserved(budget, bytes);
+      return true;
+    }
+    if (budget.getPolicy() == BodyBudget.Policy.SHED) {
+      throw RequestHead.error(SERVICE_UNAVAILABLE, debugErrors,
+          () -> "Request content exceeds the server request body budget");
+    }
+    onReserved = callback;
+    return false;
+  }
+
+  /**
+   * The body bytes of the waiting request were reserved, resume the channel reads.
+   */
+  private void reserved(ChannelHandlerContext ctx, RequestHead reserving, long bytes) {
+    reserving.reserved(budget, bytes);
+    if (waitingRequest == null) {
+      // the channel was closed meanwhile.
+      reserving.release();
+      return;
+    }
+    final HttpRequest req = waitingRequest;
+    waitingRequest = null;
+    onReserved = null;
+    ctx.channel().config().setAutoRead(true);
+    expectContinue(ctx, req);
+    resume(ctx, req);
+  }
+
+  /**
+   * Pass on the accepted request and the messages read while it was waiting.
+   */
+  private void resume(ChannelHandlerContext ctx, HttpRequest req) {
+    // a whole http/2 request is its own body.
+    if (req != null && (!(req instanceof HttpContent) || admit(ctx, (HttpContent) req))) {
+      ctx.fireChannelRead(req);
+    }
+
+    Object msg;
+    while (waitingRequest == null && (msg = pending.poll()) != null) {
+      try {
+        channelRead(ctx, msg);
+      } catch (Exception e) {
+        ctx.fireExceptionCaught(e);
+      }
+    }
+    ctx.fireChannelReadComplete();
+  }
+
+  private static void expectContinue(ChannelHandlerContext ctx, HttpRequest req) {
+    // the request was accepted, so the client can send the body.
+    if (HttpUtil.is100ContinueExpected(req)) {
+      ctx.writeAndFlush(new DefaultFullHttpResponse(
+          req.protocolVersion(), HttpResponseStatus.CONTINUE, Unpooled.EMPTY_BUFFER));
+      HttpUtil.set100ContinueExpected(req, false);
+    }
+  }
+
+  private static boolean isUnsupportedExpectation(HttpRequest req) {
+    final String expect = req.headers().get(HttpHeaderNames.EXPECT);
+    return expect != null && req.protocolVersion().compareTo(HttpVersion.HTTP_1_1) >= 0
+        && !HttpHeaderValues.CONTINUE.contentEqualsIgnoreCase(expect);
+  }
+
+  /**
+   * Whether the connection can be kept after the error response of a rejected request head. Its
+   * body is discarded as it arrives, so only the client errors of a well framed request not
+   * waiting for a {@code 100 Continue} to send its body keep it, a too large body is not worth
+   * reading.
+   */
+  private static boolean isKeepAlive(HttpRequest req, Throwable cause) {
+    if (!(cause instanceof ServerException) || req.decoderResult().isFailure()
+        || !HttpUtil.isKeepAlive(req) || HttpUtil.is100ContinueExpected(req)) {
+      return false;
+    }
+    final Response.Status status = ((ServerException) cause).getResponseStatus();
+    return status.getFamily() == Response.Status.Family.CLIENT_ERROR
+        && status != REQUEST_ENTITY_TOO_LARGE;
+  }
+
+  private void reject(ChannelHandlerContext ctx, Object msg, Throwable cause,
+                      boolean keepAlive) {
+    discarding = !(msg instanceof LastHttpContent);
+    ReferenceCountUtil.release(msg);
+    if (keepAlive) {
+      ctx.fireUserEventTriggered(new RejectedRequest(cause));
+    } else {
+      ctx.fireExceptionCaught(cause);
+    }
+  }
+
+  /**
+   * The security check of a request head, run by the security executor. A provider executor
+   * completes it exceptionally if it can not run it.
+   */
+  private static final class SecurityCheck extends CompletableFuture<Void> implements Runnable {
+
+    private final Request request;
+    private final boolean debugErrors;
+
+    SecurityCheck(Request request, boolean debugErrors) {
+      this.request = request;
+      this.debugErrors = debugErrors;
+    }
+
+    @Override
+    public void run() {
+      try {
+        RequestHead.authorize(request, debugErrors);
+        complete(null);
+      } catch (Throwable cause) {
+        completeExceptionally(cause);
+      }
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * Aggregates the request body of the regular routes, the requests of the streaming routes are
+ * passed through with their body chunks untouched.
+ *
+ * <p>The route maximum content length is enforced by the {@link RequestHeadHandler} before the
+ * body reaches the aggregator.
+ */
+class RouteAggregator extends HttpObjectAggregator {
+
+  // the body chunks of the current request are passed through.
+  private boolean streaming;
+  // the head of the request being aggregated.
+  private RequestHead head;
+
+  RouteAggregator() {
+    super(Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (msg instanceof HttpRequest) {
+      head = RequestHead.current(ctx.channel());
+      streaming = head != null && head.isStreaming();
+    }
+    // the end of the request, a whole http/2 FullHttpRequest being its own last content, even
+    // on the streaming path: the queue delay of the request handler counts from here.
+    if (msg instanceof LastHttpContent && head != null) {
+      head.received();
+      head = null;
+    }
+    if (streaming && msg instanceof FullHttpRequest) {
+      // a whole http/2 request, its streaming route still expects a head then its body chunks.
+      final FullHttpRequest req = (FullHttpRequest) msg;
+      ctx.fireChannelRead(new DefaultHttpRequest(req.protocolVersion(), req.method(), req.uri(),
+          req.headers()));
+      final LastHttpContent body = new DefaultLastHttpContent(req.content());
+      body.trailingHeaders().set(req.trailingHeaders());
+      ctx.fireChannelRead(body);
+      return;
+    }
+    if (streaming) {
+      ctx.fireChannelRead(msg);
+      return;
+    }
+    super.channelRead(ctx, msg);
+  }
+}
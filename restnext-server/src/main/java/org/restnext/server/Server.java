@@ -16,15 +16,20 @@
 
 package org.restnext.server;
 
+import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
 import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.concurrent.Future;
 
@@ -39,7 +44,9 @@ import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.stream.Stream;
@@ -57,6 +64,8 @@ public final class Server {
   private final ServerInitializer serverInitializer;
   private EventLoopGroup bossGroup;
   private EventLoopGroup workerGroup;
+  // the listening sockets bound on the same address.
+  private int acceptors = 1;
 
   /**
    * Constructor with auto start flag and the server initializer.
@@ -86,17 +95,42 @@ public final class Server {
           ? newEpoolServerBootstrap()
           : newNioServerBootstrap();
 
-      ChannelFuture channelFuture = serverBootstrap
+      serverBootstrap
           //.handler(new LoggingHandler(LogLevel.INFO))
           .childHandler(serverInitializer)
           .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
-          .bind(bindAddress)
-          .sync();
+          .childOption(ChannelOption.TCP_NODELAY, serverInitializer.isTcpNoDelay());
+      if (serverInitializer.getBacklog() > 0) {
+        serverBootstrap.option(ChannelOption.SO_BACKLOG, serverInitializer.getBacklog());
+      }
+      if (serverInitializer.getWriteBufferWaterMark() != null) {
+        serverBootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
+            serverInitializer.getWriteBufferWaterMark());
+      }
+
+      List<Channel> channels = new ArrayList<>(acceptors);
+      for (int i = 0; i < acceptors; i++) {
+        // each socket registered on its own boss thread.
+        channels.add(serverBootstrap.bind(bindAddress).sync().channel());
+      }
 
-      LOGGER.info("Application is running at - {}://{}",
-          serverInitializer.isSslConfigured() ? "https" : "http", bindAddress);
+      LOGGER.info("Application is running at - {}://{}{}",
+          serverInitializer.isSslConfigured() ? "https" : "http", bindAddress,
+          acceptors > 1 ? " (" + acceptors + " acceptors)" : "");
+
+      if (serverInitializer.isHttp3Enabled()) {
+        InetSocketAddress http3BindAddress = serverInitializer.getHttp3BindAddress();
+        // closed along with the worker group.
+        newDatagramBootstrap()
+            .handler(serverInitializer.newQuicServerCodec())
+            .bind(http3BindAddress)
+            .sync();
+        LOGGER.info("Application is running at - https://{} (http/3)", http3BindAddress);
+      }
 
-      channelFuture.channel().closeFuture().sync();
+      for (Channel channel : channels) {
+        channel.closeFuture().sync();
+      }
 
     } catch (Exception e) {
       throw new ServerException("Could not start the server", e);
@@ -110,6 +144,9 @@ public final class Server {
   }
 
   private void stop(final boolean await) {
+    // stop watching the route and security directories of this server only, the directory
+    // watcher is shared and released by its last registration.
+    serverInitializer.closeScanners();
     if (bossGroup != null && workerGroup != null) {
       Future<?> futureWorkerShutdown = workerGroup.shutdownGracefully();
       Future<?> futureBossShutdown = bossGroup.shutdownGracefully();
@@ -143,21 +180,51 @@ public final class Server {
   }
 
   private ServerBootstrap newEpoolServerBootstrap() {
-    bossGroup = new EpollEventLoopGroup();
-    workerGroup = new EpollEventLoopGroup();
-    return new ServerBootstrap()
+    workerGroup = new EpollEventLoopGroup(serverInitializer.getWorkerThreads());
+    acceptors = serverInitializer.getAcceptors() == 0
+        ? ((MultithreadEventLoopGroup) workerGroup).executorCount()
+        : serverInitializer.getAcceptors();
+    // a boss thread per acceptor, unless told otherwise.
+    bossGroup = new EpollEventLoopGroup(serverInitializer.getBossThreads() == 0 && acceptors > 1
+        ? acceptors
+        : serverInitializer.getBossThreads());
+    ServerBootstrap serverBootstrap = new ServerBootstrap()
         .group(bossGroup, workerGroup)
         .channel(EpollServerSocketChannel.class);
+    if (acceptors > 1) {
+      serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+    }
+    if (serverInitializer.getTcpFastOpen() > 0) {
+      serverBootstrap.option(ChannelOption.TCP_FASTOPEN, serverInitializer.getTcpFastOpen());
+    }
+    if (!serverInitializer.getTcpDeferAccept().isZero()) {
+      serverBootstrap.option(EpollChannelOption.TCP_DEFER_ACCEPT,
+          (int) Math.max(1, serverInitializer.getTcpDeferAccept().getSeconds()));
+    }
+    return serverBootstrap;
   }
 
   private ServerBootstrap newNioServerBootstrap() {
-    bossGroup = new NioEventLoopGroup();
-    workerGroup = new NioEventLoopGroup();
+    if (serverInitializer.getAcceptors() != 1 || serverInitializer.getTcpFastOpen() > 0
+        || !serverInitializer.getTcpDeferAccept().isZero()) {
+      LOGGER.warn("SO_REUSEPORT, TCP_FASTOPEN and TCP_DEFER_ACCEPT need epoll, ignoring them");
+    }
+    bossGroup = new NioEventLoopGroup(serverInitializer.getBossThreads());
+    workerGroup = new NioEventLoopGroup(serverInitializer.getWorkerThreads());
     return new ServerBootstrap()
         .group(bossGroup, workerGroup)
         .channel(NioServerSocketChannel.class);
   }
 
+  /**
+   * The bootstrap of the http/3 udp listener, served by the worker group.
+   */
+  private Bootstrap newDatagramBootstrap() {
+    return new Bootstrap()
+        .group(workerGroup)
+        .channel(Epoll.isAvailable() ? EpollDatagramChannel.class : NioDatagramChannel.class);
+  }
+
   private void printBanner(Path path) {
     if (path != null && Files.exists(path)) {
       try (Stream<String> stream = Files.lines(path, StandardCharsets.UTF_8)) {
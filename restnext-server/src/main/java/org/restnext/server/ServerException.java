@@ -16,6 +16,8 @@
 
 package org.restnext.server;
 
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Optional;
 
 import org.restnext.core.http.Response;
@@ -27,6 +29,16 @@ public class ServerException extends RuntimeException {
 
   private static final long serialVersionUID = 9222578952610045310L;
 
+  // the preallocated stackless exception of each status.
+  private static final Map<Response.Status, ServerException> STATUS_EXCEPTIONS =
+      new EnumMap<>(Response.Status.class);
+
+  static {
+    for (Response.Status status : Response.Status.values()) {
+      STATUS_EXCEPTIONS.put(status, new ServerException(status, false));
+    }
+  }
+
   private final Response.Status responseStatus;
 
   public ServerException() {
@@ -42,6 +54,23 @@ public class ServerException extends RuntimeException {
     this.responseStatus = Optional.ofNullable(status).orElse(Response.Status.INTERNAL_SERVER_ERROR);
   }
 
+  private ServerException(Response.Status status, boolean writableStackTrace) {
+    super(computeExceptionMessage(status), null, false, writableStackTrace);
+    this.responseStatus = status;
+  }
+
+  /**
+   * The preallocated exception of a status, without any stack trace nor request detail, so
+   * rejecting a request costs neither a stack walk nor a message formatting.
+   *
+   * @param status the response status
+   * @return the shared stackless exception of the status
+   */
+  public static ServerException of(Response.Status status) {
+    return STATUS_EXCEPTIONS.get(Optional.ofNullable(status)
+        .orElse(Response.Status.INTERNAL_SERVER_ERROR));
+  }
+
   private static String computeExceptionMessage(Response.Status status) {
     Response.Status statusInfo = Optional.ofNullable(status)
         .orElse(Response.Status.INTERNAL_SERVER_ERROR);
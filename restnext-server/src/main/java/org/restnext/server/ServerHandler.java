@@ -17,132 +17,500 @@
 package org.restnext.server;
 
 import static org.restnext.core.http.Response.Status.BAD_REQUEST;
+import static org.restnext.core.http.Response.Status.GATEWAY_TIMEOUT;
 import static org.restnext.core.http.Response.Status.INTERNAL_SERVER_ERROR;
-import static org.restnext.core.http.Response.Status.METHOD_NOT_ALLOWED;
-import static org.restnext.core.http.Response.Status.NOT_FOUND;
-import static org.restnext.core.http.Response.Status.UNAUTHORIZED;
-import static org.restnext.core.http.Response.Status.UNSUPPORTED_MEDIA_TYPE;
+import static org.restnext.core.http.Response.Status.SERVICE_UNAVAILABLE;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.ChannelInputShutdownReadComplete;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpChunkedInput;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.stream.ChunkedStream;
+import io.netty.util.AsciiString;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
 import io.netty.util.internal.ThrowableUtil;
-import java.net.URI;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.restnext.core.http.BodyConsumer;
+import org.restnext.core.http.BodyProducer;
 import org.restnext.core.http.MediaType;
 import org.restnext.core.http.Message;
 import org.restnext.core.http.Request;
 import org.restnext.core.http.RequestImpl;
 import org.restnext.core.http.Response;
-import org.restnext.core.url.UrlMatch;
 import org.restnext.route.Route;
-import org.restnext.security.Security;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Created by thiago on 04/08/16.
  */
 @ChannelHandler.Sharable
-class ServerHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+class ServerHandler extends SimpleChannelInboundHandler<HttpObject> {
 
-  static final ServerHandler INSTANCE = new ServerHandler();
+  private static final Logger LOGGER = LoggerFactory.getLogger(ServerHandler.class);
 
-  private ServerHandler() {
+  private static final AsciiString ALT_SVC = AsciiString.cached("alt-svc");
 
+  // the body stream of the current streaming route request of the channel.
+  private static final AttributeKey<BodyStream> BODY_STREAM = AttributeKey.valueOf(
+      ServerHandler.class, "bodyStream");
+
+  // the responses of the channel pipelined requests, waiting for the previous ones.
+  private static final AttributeKey<ArrayDeque<PendingResponse>> PENDING_RESPONSES =
+      AttributeKey.valueOf(ServerHandler.class, "pendingResponses");
+
+  // the preallocated error response content of each status.
+  private static final Map<Response.Status, byte[]> ERROR_CONTENTS =
+      new EnumMap<>(Response.Status.class);
+
+  static {
+    for (Response.Status status : Response.Status.values()) {
+      ERROR_CONTENTS.put(status, leanContent(status, ServerException.of(status).getMessage())
+          .getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  // runs the blocking route providers out of the channel executor, if any.
+  private final Executor providerExecutor;
+  // the provider executors named by the route mappings.
+  private final Map<String, ProviderExecutor> providerExecutors;
+  // admits the requests of every route, if any.
+  private final ConcurrencyLimiter concurrencyLimiter;
+  // admits the requests of each route uri.
+  private final Map<String, ConcurrencyLimiter> concurrencyLimiters;
+  // sheds the requests waiting too long for this handler, if any.
+  private final Codel codel;
+  // the time the routes without their own timeout are waited for, if any.
+  private final Duration requestTimeout;
+  // describes the errors with their stack trace in the error responses.
+  private final boolean debugErrors;
+  // the Alt-Svc header advertising the http/3 listener, if any.
+  private final String altSvc;
+
+  ServerHandler(Executor providerExecutor, Map<String, ProviderExecutor> providerExecutors,
+                ConcurrencyLimiter concurrencyLimiter,
+                Map<String, ConcurrencyLimiter> concurrencyLimiters, Codel codel,
+                Duration requestTimeout, boolean debugErrors, String altSvc) {
+    this.providerExecutor = providerExecutor;
+    this.providerExecutors = providerExecutors;
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.concurrencyLimiters = concurrencyLimiters;
+    this.codel = codel;
+    this.requestTimeout = requestTimeout;
+    this.debugErrors = debugErrors;
+    this.altSvc = altSvc;
   }
 
   @Override
-  protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest req) {
-    if (req.decoderResult().isFailure()) {
-      throw new ServerException(req.decoderResult().cause(), BAD_REQUEST);
+  protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) throws Exception {
+    if (msg.decoderResult().isFailure()) {
+      throw debugErrors
+          ? new ServerException(msg.decoderResult().cause(), BAD_REQUEST)
+          : ServerException.of(BAD_REQUEST);
     }
 
-    // Handle 100 - Continue request.
-    if (HttpUtil.is100ContinueExpected(req)) {
-      ctx.write(new DefaultFullHttpResponse(req.protocolVersion(), HttpResponseStatus.CONTINUE));
+    if (msg instanceof FullHttpRequest) {
+      handle(ctx, (FullHttpRequest) msg);
+    } else if (msg instanceof HttpRequest) {
+      startBodyStream(ctx, (HttpRequest) msg);
+    } else if (msg instanceof HttpContent) {
+      consumeBodyStream(ctx, (HttpContent) msg);
     }
+  }
 
+  private void handle(ChannelHandlerContext ctx, FullHttpRequest req) {
     // Create Request from FullHttpRequest
+    final RequestImpl request = new RequestImpl(ctx, req);
+    final RequestHead head = head(ctx, request);
+    final Route.Mapping routeMapping = head.getRouteMapping();
+    final long receivedNanos = head.getReceivedNanos() != 0
+        ? head.getReceivedNanos()
+        : System.nanoTime();
+    if (codel != null && codel.shed(System.nanoTime() - receivedNanos)) {
+      // the client has likely given up already, the provider is not called.
+      head.release();
+      respond(ctx, serviceUnavailable("The queue delay is over the target",
+          ProviderExecutor.DEFAULT_RETRY_AFTER), request.isKeepAlive());
+      return;
+    }
+    final Duration timeout = routeMapping.getTimeout() != null
+        ? routeMapping.getTimeout()
+        : requestTimeout;
+    if (timeout != null && !timeout.isZero()) {
+      request.setDeadline(receivedNanos, timeout);
+      if (request.getRemainingTime().isNegative()) {
+        head.release();
+        respond(ctx, serviceUnavailable("The request deadline expired before it was handled",
+            ProviderExecutor.DEFAULT_RETRY_AFTER), request.isKeepAlive());
+        return;
+      }
+    }
+    final Permit permit = Permit.acquire(
+        concurrencyLimiters.get(routeMapping.getUri()), concurrencyLimiter);
+    if (permit.rejectedBy != null) {
+      // shed before the provider runs, the connection is kept.
+      head.release();
+      respond(ctx, serviceUnavailable("The concurrency limit is reached",
+          permit.rejectedBy.getRetryAfter()), request.isKeepAlive());
+      return;
+    }
+    if (routeMapping.isAsync()) {
+      handleAsync(ctx, req, request, head, permit, routeMapping.getAsyncProvider());
+      return;
+    }
+    final Executor executor;
+    try {
+      executor = providerExecutor(routeMapping);
+    } catch (RuntimeException e) {
+      permit.cancel();
+      head.release();
+      throw e;
+    }
+    if (executor != null) {
+      handleAsync(ctx, req, request, head, permit, r -> offload(routeMapping, r, executor));
+      return;
+    }
+    final Response response;
+    try {
+      response = routeMapping.writeResponse(request);
+    } catch (RuntimeException e) {
+      permit.release(true);
+      head.release();
+      if (isClientError(e)) {
+        // the request was fully received, the connection is kept.
+        respond(ctx, errorResponse(e), request.isKeepAlive());
+        return;
+      }
+      throw e;
+    }
+    permit.release(false);
+    try {
+      // Write the response for the request.
+      respond(ctx, Optional.ofNullable(response).orElse(Response.noContent().build()),
+          request.isKeepAlive());
+    } finally {
+      // the request body is released along with the request, after this method.
+      head.release();
+    }
+  }
+
+  /**
+   * Handle the request of an async route, or of a route run by the provider executor, its
+   * response is written once the response stage completes and the responses of the previous
+   * requests were written. Once the request deadline expires, {@code 504 Gateway Timeout} is
+   * written instead and the response stage is cancelled.
+   */
+  private void handleAsync(ChannelHandlerContext ctx, FullHttpRequest req, Request request,
+                           RequestHead head, Permit permit,
+                           Function<Request, CompletionStage<Response>> provider) {
+    final PendingResponse pending = new PendingResponse(request.isKeepAlive());
+    pendingResponses(ctx).add(pending);
+    // the request body must outlive this method, until the response stage completes.
+    req.retain();
+    CompletionStage<Response> stage;
+    try {
+      stage = Objects.requireNonNull(provider.apply(request), "response stage");
+    } catch (RuntimeException e) {
+      CompletableFuture<Response> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      stage = failed;
+    }
+    final CompletionStage<Response> responseStage = stage;
+    final Duration remainingTime = request.getRemainingTime();
+    final ScheduledFuture<?> timeout = remainingTime == null ? null : ctx.executor().schedule(
+        () -> {
+          if (pending.response == null) {
+            permit.release(true);
+            pending.response = gatewayTimeout("The route response was not ready in time");
+            cancel(responseStage);
+            writePendingResponses(ctx);
+            ctx.flush();
+          }
+        }, Math.max(0, remainingTime.toNanos()), TimeUnit.NANOSECONDS);
+    stage.whenComplete((response, cause) -> ctx.executor().execute(() -> {
+      if (timeout != null) {
+        timeout.cancel(false);
+      }
+      req.release();
+      head.release();
+      if (pending.response != null) {
+        // too late, the gateway timeout response was already written.
+        if (response != null) {
+          discard(ctx, response);
+        }
+        return;
+      }
+      permit.release(cause != null);
+      if (cause != null) {
+        // the connection is closed after a server error response, as for synchronous routes.
+        final Throwable failure = cause instanceof CompletionException
+            && cause.getCause() != null ? cause.getCause() : cause;
+        pending.response = errorResponse(failure);
+        pending.keepAlive &= isClientError(failure);
+      } else {
+        pending.response = response != null ? response : Response.noContent().build();
+      }
+      writePendingResponses(ctx);
+      ctx.flush();
+    }));
+  }
+
+  /**
+   * The executor running the route provider, or {@code null} to run it on the channel thread.
+   */
+  private Executor providerExecutor(Route.Mapping routeMapping) {
+    if (routeMapping.isInline()) {
+      return null;
+    }
+    if (routeMapping.getExecutor() != null) {
+      return Optional.ofNullable(providerExecutors.get(routeMapping.getExecutor()))
+          .orElseThrow(() -> new ServerException(String.format(
+              "Provider executor %s of the uri %s not found", routeMapping.getExecutor(),
+              routeMapping.getUri()), INTERNAL_SERVER_ERROR));
+    }
+    return providerExecutor;
+  }
+
+  /**
+   * Cancel the response stage of a timed out request, interrupting its provider if it runs on
+   * a provider executor.
+   */
+  private void cancel(CompletionStage<Response> stage) {
+    try {
+      stage.toCompletableFuture().cancel(true);
+    } catch (UnsupportedOperationException e) {
+      LOGGER.debug("Could not cancel the response stage of a timed out request", e);
+    }
+  }
+
+  private CompletionStage<Response> offload(Route.Mapping routeMapping, Request request,
+                                            Executor executor) {
+    final Duration retryAfter = executor instanceof ProviderExecutor
+        ? ((ProviderExecutor) executor).getRetryAfter()
+        : ProviderExecutor.DEFAULT_RETRY_AFTER;
+    final Codel executorCodel = executor instanceof ProviderExecutor
+        ? ((ProviderExecutor) executor).getCodel()
+        : null;
+    final long enqueuedNanos = executorCodel != null ? System.nanoTime() : 0;
+    final ProviderTask task = new ProviderTask(() -> executorCodel != null
+        && executorCodel.shed(System.nanoTime() - enqueuedNanos)
+        ? serviceUnavailable("The queue delay is over the target", retryAfter)
+        : routeMapping.writeResponse(request));
+    try {
+      executor.execute(task);
+      return task;
+    } catch (RejectedExecutionException e) {
+      // the executor is full, the client is told when to retry and the connection is kept.
+      return CompletableFuture.completedFuture(serviceUnavailable(e.getMessage(), retryAfter));
+    }
+  }
+
+  /**
+   * The lean response of a shed request, telling the client when to retry.
+   */
+  private Response serviceUnavailable(String message, Duration retryAfter) {
+    return Response
+        .status(SERVICE_UNAVAILABLE)
+        .setHeader(HttpHeaderNames.RETRY_AFTER, Math.max(1, retryAfter.getSeconds()))
+        .content(leanContent(SERVICE_UNAVAILABLE, message))
+        .type(MediaType.TEXT_UTF8)
+        .build();
+  }
+
+  /**
+   * The lean response of a timed out request.
+   */
+  private Response gatewayTimeout(String message) {
+    return Response
+        .status(GATEWAY_TIMEOUT)
+        .content(leanContent(GATEWAY_TIMEOUT, message))
+        .type(MediaType.TEXT_UTF8)
+        .build();
+  }
+
+  private static String leanContent(Response.Status status, String message) {
+    return String.join("\r\n",
+        "statusCode: " + status.getStatusCode(),
+        "statusMessage: " + status.getReasonPhrase(),
+        "statusFamily: " + status.getFamily(),
+        "errorMessage: " + message);
+  }
+
+  /**
+   * Write the response now, or once the responses of the previous requests were written.
+   */
+  private void respond(ChannelHandlerContext ctx, Response response, boolean keepAlive) {
+    final ArrayDeque<PendingResponse> pendingResponses = ctx.channel().attr(PENDING_RESPONSES)
+        .get();
+    if (pendingResponses == null || pendingResponses.isEmpty()) {
+      write(ctx, response, keepAlive);
+    } else {
+      final PendingResponse pending = new PendingResponse(keepAlive);
+      pending.response = response;
+      pendingResponses.add(pending);
+    }
+  }
+
+  private void writePendingResponses(ChannelHandlerContext ctx) {
+    final ArrayDeque<PendingResponse> pendingResponses = pendingResponses(ctx);
+    while (!pendingResponses.isEmpty() && pendingResponses.peek().response != null) {
+      final PendingResponse pending = pendingResponses.poll();
+      if (ctx.channel().isActive()) {
+        write(ctx, pending.response, pending.keepAlive);
+      } else {
+        discard(ctx, pending.response);
+      }
+    }
+  }
+
+  private ArrayDeque<PendingResponse> pendingResponses(ChannelHandlerContext ctx) {
+    ArrayDeque<PendingResponse> pendingResponses = ctx.channel().attr(PENDING_RESPONSES).get();
+    if (pendingResponses == null) {
+      pendingResponses = new ArrayDeque<>();
+      ctx.channel().attr(PENDING_RESPONSES).set(pendingResponses);
+    }
+    return pendingResponses;
+  }
+
+  /**
+   * Release the content of a response that will never be written.
+   */
+  private void discard(ChannelHandlerContext ctx, Response response) {
+    if (response.getFileRegion() != null) {
+      response.getFileRegion().release();
+    } else if (response.getBodyProducer() != null) {
+      try {
+        response.getBodyProducer().close();
+      } catch (Exception e) {
+        LOGGER.debug("Could not close the body producer of a discarded response", e);
+      }
+    } else {
+      ReferenceCountUtil.release(response.getContentByteBuf(ctx.alloc()));
+    }
+  }
+
+  private void startBodyStream(ChannelHandlerContext ctx, HttpRequest req) {
+    // Create Request from the HttpRequest head, the body chunks will follow.
     final Request request = new RequestImpl(ctx, req);
-    final String uri = request.getUri().toString();
-    final URI baseUri = request.getBaseUri();
-    final URI fullRequestUri = baseUri.resolve(uri);
-    final List<MediaType> medias = request.getMediaType();
-    final Request.Method method = request.getMethod();
-
-    // Check security constraint for the request,
-    // otherwise return 401 - Unauthorized  response.
-    if (!Security.checkAuthorization(request)) {
+    final Route.Mapping routeMapping = head(ctx, request).getRouteMapping();
+    if (!routeMapping.isStreaming()) {
       throw new ServerException(String.format(
-          "Access denied for the uri %s", fullRequestUri), UNAUTHORIZED);
+          "Route mapping of the uri %s is not a streaming route", request.getUri()),
+          INTERNAL_SERVER_ERROR);
     }
 
-    // Get registered route mapping for the request uri, otherwise return 404 - Not Found  response.
-    Route.Mapping routeMapping = Optional.ofNullable(Route.INSTANCE.getRouteMapping(uri))
-        .filter(Route.Mapping::isEnable)
-        .filter(mapping -> mapping.getRouteProvider() != null)
-        .orElseThrow(() -> new ServerException(String.format(
-            "Route mapping not found for the method %s and uri %s", method, fullRequestUri),
-            NOT_FOUND));
+    final BodyConsumer consumer = Objects.requireNonNull(
+        routeMapping.getStreamProvider().apply(request), "body consumer");
+    ctx.channel().attr(BODY_STREAM).set(new BodyStream(consumer, request.isKeepAlive()));
+
+    // backpressure, only read the next chunk after the previous one was consumed.
+    ctx.channel().config().setAutoRead(false);
+    ctx.read();
+  }
 
-    // Parse the uri parameters and add it to request parameters map.
-    UrlMatch urlMatch = routeMapping.getUrlMatcher().match(uri);
-    for (Map.Entry<String, String> entry : urlMatch.parameterSet()) {
-      request.getParams().add(entry.getKey(), entry.getValue());
+  /**
+   * The route mapping resolved by the request head handler, binding its uri parameters to the
+   * request.
+   */
+  private RequestHead head(ChannelHandlerContext ctx, Request request) {
+    RequestHead head = RequestHead.poll(ctx.channel());
+    if (head == null) {
+      head = RequestHead.resolve(request, Long.MAX_VALUE, debugErrors);
     }
+    head.bind(request);
+    return head;
+  }
 
-    // Check if the registered route mapping methods contains the request method,
-    // otherwise return 405 - Method Not Allowed response.
-    Optional.ofNullable(routeMapping.getMethods())
-        .filter(methods -> methods.contains(method) || methods.isEmpty())
-        .orElseThrow(() -> new ServerException(String.format(
-            "Method %s not allowed for the request uri %s", method, fullRequestUri),
-            METHOD_NOT_ALLOWED));
+  private void consumeBodyStream(ChannelHandlerContext ctx, HttpContent chunk)
+      throws Exception {
+    final BodyStream stream = ctx.channel().attr(BODY_STREAM).get();
+    if (stream == null) {
+      // the remaining body of a rejected request.
+      return;
+    }
 
-    // Check if the registered route mapping medias contains the request media,
-    // otherwise return 415 Unsupported Media Type response.
-    Optional.ofNullable(routeMapping.getMedias())
-        .filter(routeMedias -> anyMatchMediaType(routeMedias, medias))
-        .orElseThrow(() -> new ServerException(String.format(
-            "Unsupported %s media type(s) for the request uri %s", medias, fullRequestUri),
-            UNSUPPORTED_MEDIA_TYPE));
+    final ByteBuf content = chunk.content();
+    if (content.isReadable()) {
+      stream.consumer.onChunk(content.nioBuffer().asReadOnlyBuffer());
+    }
 
-    // Write the response for the request.
-    write(ctx, Optional.ofNullable(routeMapping.writeResponse(request))
-        .orElse(Response.noContent().build()), request.isKeepAlive());
+    if (chunk instanceof LastHttpContent) {
+      ctx.channel().attr(BODY_STREAM).set(null);
+      ctx.channel().config().setAutoRead(true);
+      respond(ctx, Optional.ofNullable(stream.consumer.onComplete())
+          .orElse(Response.noContent().build()), stream.keepAlive);
+    } else {
+      ctx.read();
+    }
   }
 
   private void write(ChannelHandlerContext ctx, Response response, boolean keepAlive) {
     HttpVersion version = fromVersion(response.getVersion());
     HttpResponseStatus status = fromStatus(response.getStatus());
-    ByteBuf content = response.hasContent()
-        ? Unpooled.wrappedBuffer(response.getContent())
-        : Unpooled.EMPTY_BUFFER;
+
+    FileRegion fileRegion = response.getFileRegion();
+    if (fileRegion != null) {
+      write(ctx, response, keepAlive, new DefaultHttpResponse(version, status), fileRegion);
+      return;
+    }
+
+    BodyProducer producer = response.getBodyProducer();
+    ByteBuf content = producer == null
+        ? response.getContentByteBuf(ctx.alloc())
+        : null;
 
     boolean chunked = response.isChunked();
 
     // create netty response
     HttpResponse resp;
-    HttpChunkedInput chunkedResp = chunked
-        ? new HttpChunkedInput(new ChunkedStream(
-            new ByteBufInputStream(content), response.getChunkSize()))
-        : null;
+    HttpChunkedInput chunkedResp = null;
+    if (producer != null) {
+      // pulled lazily by the chunked write handler, while the channel is writable.
+      chunkedResp = new HttpChunkedInput(new BodyProducerInput(producer, ctx.alloc()));
+    } else if (chunked) {
+      chunkedResp = new HttpChunkedInput(new ChunkedStream(
+          new ByteBufInputStream(content, true), response.getChunkSize()));
+    }
 
     if (chunked) {
       resp = new DefaultHttpResponse(version, status);
@@ -157,7 +525,8 @@ class ServerHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
 
     if (keepAlive) {
       if (chunked) {
-        ctx.write(chunkedResp);
+        // the head is already sent, a failed body can only be reported by closing.
+        ctx.write(chunkedResp).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
       } else {
         HttpUtil.setContentLength(resp, content.readableBytes());
         ctx.write(resp);
@@ -174,11 +543,45 @@ class ServerHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
     }
   }
 
+  /**
+   * Write a file region response, sent with zero copy by the transport ({@code sendfile} on
+   * epoll), or read in chunks when the connection is encrypted or the request is an http/2 or
+   * http/3 stream.
+   */
+  private void write(ChannelHandlerContext ctx, Response response, boolean keepAlive,
+                     HttpResponse resp, FileRegion fileRegion) {
+    createOutboutHeaders(resp, response, keepAlive);
+    HttpUtil.setContentLength(resp, fileRegion.count());
+    // the file bytes are sent as they are, never compressed.
+    if (!resp.headers().contains(HttpHeaderNames.CONTENT_ENCODING)) {
+      resp.headers().set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.IDENTITY);
+    }
+    ctx.write(resp);
+
+    ChannelFuture channelFuture;
+    if (ctx.pipeline().get(SslHandler.class) == null
+        && ctx.channel() instanceof SocketChannel) {
+      ctx.write(fileRegion);
+      channelFuture = ctx.write(LastHttpContent.EMPTY_LAST_CONTENT);
+    } else {
+      channelFuture = ctx.write(new HttpChunkedInput(
+          new FileRegionInput(fileRegion, response.getChunkSize())));
+    }
+    if (!keepAlive) {
+      ctx.flush();
+      // Close the connection after the write operation is done if necessary.
+      channelFuture.addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+
   private void createOutboutHeaders(HttpResponse resp, Response response, boolean keepAlive) {
     // Copy the outbound response headers.
     for (Map.Entry<String, List<String>> entries : response.getHeaders().entrySet()) {
       resp.headers().add(entries.getKey(), entries.getValue());
     }
+    if (altSvc != null && !resp.headers().contains(ALT_SVC)) {
+      resp.headers().set(ALT_SVC, altSvc);
+    }
     // Check and set keep alive header to decide
     // whether to close the connection or not.
     HttpUtil.setKeepAlive(resp, keepAlive);
@@ -189,36 +592,96 @@ class ServerHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
     ctx.flush();
   }
 
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    abortBodyStream(ctx, new ClosedChannelException());
+    // the responses still pending are discarded as they complete.
+    writePendingResponses(ctx);
+    super.channelInactive(ctx);
+  }
+
+  private void abortBodyStream(ChannelHandlerContext ctx, Throwable cause) {
+    final BodyStream stream = ctx.channel().attr(BODY_STREAM).getAndSet(null);
+    if (stream != null) {
+      ctx.channel().config().setAutoRead(true);
+      stream.consumer.onError(cause);
+    }
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+    abortBodyStream(ctx, cause);
     if (ctx.channel().isActive()) {
-      // Create the response status error.
-      Response.Status status = cause instanceof ServerException
-          ? ((ServerException) cause).getResponseStatus()
-          : INTERNAL_SERVER_ERROR;
-
-      // Create the response error body.
-      String newLine = "\r\n";
-      StringJoiner content = new StringJoiner(newLine);
-      content.add("statusCode: " + status.getStatusCode());
-      content.add("statusMessage: " + status.getReasonPhrase());
-      content.add("statusFamily: " + status.getFamily());
-      if (cause.getMessage() != null) {
-        content.add("errorMessage: " + cause.getMessage());
-      }
-      if (cause.getCause() != null) {
-        content.add("detailErrorMessage: " + cause.getCause().getMessage());
-      }
-      content.add("stackTraceMessage: " + ThrowableUtil.stackTraceToString(cause));
+      // no other request is read, the connection is closed once the error response is written.
+      ctx.channel().config().setAutoRead(false);
+      respond(ctx, errorResponse(cause), false);
+    } else {
+      ctx.close();
+    }
+  }
+
+  @Override
+  public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+    if (evt instanceof RejectedRequest) {
+      // the request body is discarded, the next request can follow on the connection.
+      respond(ctx, errorResponse(((RejectedRequest) evt).getCause()), true);
+      return;
+    }
+    if (evt instanceof ChannelInputShutdownReadComplete) {
+      // the end of an http/3 request stream is read outside of a read loop.
+      ctx.flush();
+    }
+    super.userEventTriggered(ctx, evt);
+  }
+
+  /**
+   * Whether the error is the client fault, so the connection of a fully received request can be
+   * kept after its error response.
+   */
+  private static boolean isClientError(Throwable cause) {
+    return cause instanceof ServerException && ((ServerException) cause).getResponseStatus()
+        .getFamily() == Response.Status.Family.CLIENT_ERROR;
+  }
+
+  private Response errorResponse(Throwable cause) {
+    // Create the response status error.
+    Response.Status status = cause instanceof ServerException
+        ? ((ServerException) cause).getResponseStatus()
+        : INTERNAL_SERVER_ERROR;
 
-      // Write the response error.
-      write(ctx, Response
+    if (!(cause instanceof ServerException)) {
+      // not a rejected request, but a failure of the route provider or of the server.
+      LOGGER.error("Unexpected error of the request", cause);
+    }
+
+    if (!debugErrors || cause == ServerException.of(status)) {
+      // the preallocated status error, the error details are only described to debug.
+      return Response
           .status(status)
-          .content(content.toString())
+          .content(ERROR_CONTENTS.get(status))
           .type(MediaType.TEXT_UTF8)
-          .build(), false);
+          .build();
     }
-    ctx.close();
+
+    // Create the response error body.
+    String newLine = "\r\n";
+    StringJoiner content = new StringJoiner(newLine);
+    content.add("statusCode: " + status.getStatusCode());
+    content.add("statusMessage: " + status.getReasonPhrase());
+    content.add("statusFamily: " + status.getFamily());
+    if (cause.getMessage() != null) {
+      content.add("errorMessage: " + cause.getMessage());
+    }
+    if (cause.getCause() != null) {
+      content.add("detailErrorMessage: " + cause.getCause().getMessage());
+    }
+    content.add("stackTraceMessage: " + ThrowableUtil.stackTraceToString(cause));
+
+    return Response
+        .status(status)
+        .content(content.toString())
+        .type(MediaType.TEXT_UTF8)
+        .build();
   }
 
   private HttpVersion fromVersion(Message.Version version) {
@@ -273,26 +736,135 @@ class ServerHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
     }
   }
 
-  private boolean anyMatchMediaType(List<MediaType> routeMappingMedias,
-                                    List<MediaType> requestMedias) {
+  /**
+   * The admission of a request by the route and server concurrency limiters.
+   */
+  private static final class Permit {
+
+    private static final Permit UNLIMITED = new Permit(null, null, null);
 
-    if (routeMappingMedias == null || routeMappingMedias.isEmpty() || requestMedias == null
-        || requestMedias.isEmpty() || requestMedias.contains(MediaType.WILDCARD)) {
-      return true;
+    private final ConcurrencyLimiter routeLimiter;
+    private final ConcurrencyLimiter serverLimiter;
+    // the limiter which rejected the request, if any.
+    private final ConcurrencyLimiter rejectedBy;
+    private final long startNanos;
+
+    private Permit(ConcurrencyLimiter routeLimiter, ConcurrencyLimiter serverLimiter,
+                   ConcurrencyLimiter rejectedBy) {
+      this.routeLimiter = routeLimiter;
+      this.serverLimiter = serverLimiter;
+      this.rejectedBy = rejectedBy;
+      this.startNanos = routeLimiter != null || serverLimiter != null ? System.nanoTime() : 0;
+    }
+
+    static Permit acquire(ConcurrencyLimiter routeLimiter, ConcurrencyLimiter serverLimiter) {
+      if (routeLimiter == null && serverLimiter == null) {
+        return UNLIMITED;
+      }
+      if (routeLimiter != null && !routeLimiter.tryAcquire()) {
+        return new Permit(null, null, routeLimiter);
+      }
+      if (serverLimiter != null && !serverLimiter.tryAcquire()) {
+        if (routeLimiter != null) {
+          routeLimiter.cancel();
+        }
+        return new Permit(null, null, serverLimiter);
+      }
+      return new Permit(routeLimiter, serverLimiter, null);
+    }
+
+    void release(boolean failed) {
+      if (routeLimiter == null && serverLimiter == null) {
+        return;
+      }
+      final long latencyNanos = System.nanoTime() - startNanos;
+      if (routeLimiter != null) {
+        routeLimiter.release(latencyNanos, failed);
+      }
+      if (serverLimiter != null) {
+        serverLimiter.release(latencyNanos, failed);
+      }
+    }
+
+    void cancel() {
+      if (routeLimiter != null) {
+        routeLimiter.cancel();
+      }
+      if (serverLimiter != null) {
+        serverLimiter.cancel();
+      }
+    }
+  }
+
+  /**
+   * A route provider run by a provider executor, interrupted if cancelled while it runs and
+   * never called if cancelled while it waits.
+   */
+  private static final class ProviderTask extends CompletableFuture<Response>
+      implements Runnable {
+
+    private final Supplier<Response> provider;
+    // the thread running the provider, guarded by this.
+    private Thread runner;
+
+    ProviderTask(Supplier<Response> provider) {
+      this.provider = provider;
     }
 
-    boolean r = false;
-    for (MediaType e : routeMappingMedias) {
-      if (r) {
-        break;
+    @Override
+    public void run() {
+      synchronized (this) {
+        if (isDone()) {
+          return;
+        }
+        runner = Thread.currentThread();
       }
-      for (MediaType e2 : requestMedias) {
-        r = e.isSimilar(e2) || e.isCompatible(e2);
-        if (r) {
-          break;
+      try {
+        complete(provider.get());
+      } catch (Throwable cause) {
+        completeExceptionally(cause);
+      } finally {
+        synchronized (this) {
+          runner = null;
         }
+        // the interrupt of a cancelled provider must not leak to the next one.
+        Thread.interrupted();
       }
     }
-    return r;
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      final boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled && mayInterruptIfRunning) {
+        synchronized (this) {
+          if (runner != null) {
+            runner.interrupt();
+          }
+        }
+      }
+      return cancelled;
+    }
+  }
+
+  private static final class PendingResponse {
+
+    private boolean keepAlive;
+    // null until the response stage completes.
+    private Response response;
+
+    PendingResponse(boolean keepAlive) {
+      this.keepAlive = keepAlive;
+    }
+  }
+
+  private static final class BodyStream {
+
+    private final BodyConsumer consumer;
+    private final boolean keepAlive;
+
+    BodyStream(BodyConsumer consumer, boolean keepAlive) {
+      this.consumer = consumer;
+      this.keepAlive = keepAlive;
+    }
   }
 }
@@ -16,25 +16,54 @@
 
 package org.restnext.server;
 
+import static org.restnext.util.UriUtils.normalize;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
 import io.netty.handler.ssl.util.SelfSignedCertificate;
 import io.netty.handler.stream.ChunkedWriteHandler;
-import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.AsciiString;
 import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import io.netty.util.concurrent.EventExecutorGroup;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.file.Path;
 import java.security.cert.CertificateException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.TimeUnit;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.function.Function;
 import javax.net.ssl.SSLException;
 
@@ -55,20 +84,92 @@ public final class ServerInitializer extends ChannelInitializer<SocketChannel> {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ServerInitializer.class);
 
-  private final Duration timeout;
+  // the names of the handlers added by the addHttpHandlers method.
+  private static final String[] HTTP_HANDLERS = {
+      "timeout", "compressor", "head", "aggregator", "streamer", "handler"};
+
+  private final Duration headerTimeout;
+  private final Duration bodyTimeout;
+  private final Duration keepAliveTimeout;
+  private final Duration writeTimeout;
   private final SslContext sslCtx;
   private final int maxContentLength;
   private final Compressor compressor;
+  private final Http2 http2;
+  private final Http3 http3;
+  // loaded only once http/3 is enabled, its codec is an optional dependency.
+  private final Http3Listener http3Listener;
   private final InetSocketAddress bindAddress;
+  private final InetSocketAddress http3BindAddress;
   private final EventExecutorGroup group;
+  private final BodyBudget bodyBudget;
+  private final ProviderExecutor providerExecutor;
+  private final Map<String, ProviderExecutor> providerExecutors;
+  private final ConcurrencyLimiter concurrencyLimiter;
+  private final Map<String, ConcurrencyLimiter> concurrencyLimiters;
+  private final Codel codel;
+  private final Duration requestTimeout;
+  private final boolean debugErrors;
+  private final int bossThreads;
+  private final int workerThreads;
+  private final int acceptors;
+  private final int backlog;
+  private final boolean tcpNoDelay;
+  private final int tcpFastOpen;
+  private final Duration tcpDeferAccept;
+  private final WriteBufferWaterMark writeBufferWaterMark;
+  private final List<Closeable> scanners;
+  private final ServerHandler handler;
+  // the pipeline of each http/2 stream, whose request is handled as an http/1.1 exchange.
+  private final ChannelInitializer<Http2StreamChannel> streamInitializer =
+      new ChannelInitializer<Http2StreamChannel>() {
+        @Override
+        protected void initChannel(Http2StreamChannel ch) {
+          ch.pipeline().addLast("http", new Http2StreamFrameToHttpObjectCodec(true));
+          // the connection timeouts are enforced by the connection, only the body one is left.
+          addHttpHandlers(ch.pipeline(), new ConnectionTimeoutHandler(
+              Duration.ZERO, bodyTimeout, Duration.ZERO, Duration.ZERO));
+        }
+      };
 
   private ServerInitializer(final Builder builder) {
     this.sslCtx = builder.sslContext;
     this.maxContentLength = builder.maxContentLength;
     this.bindAddress = builder.bindAddress;
-    this.timeout = builder.timeout;
+    this.headerTimeout = builder.headerTimeout;
+    this.bodyTimeout = builder.bodyTimeout;
+    this.keepAliveTimeout = builder.keepAliveTimeout;
+    this.writeTimeout = builder.writeTimeout;
     this.group = builder.eventExecutorGroup;
     this.compressor = builder.compressor;
+    this.http2 = builder.http2;
+    this.http3 = builder.http3;
+    this.http3BindAddress = http3 == null ? null : http3.bindAddress(bindAddress);
+    this.bodyBudget = builder.bodyBudget;
+    this.providerExecutor = builder.providerExecutor;
+    this.providerExecutors = Collections.unmodifiableMap(
+        new LinkedHashMap<>(builder.providerExecutors));
+    this.concurrencyLimiter = builder.concurrencyLimiter;
+    this.concurrencyLimiters = Collections.unmodifiableMap(
+        new LinkedHashMap<>(builder.concurrencyLimiters));
+    this.codel = builder.codel;
+    this.requestTimeout = builder.requestTimeout;
+    this.debugErrors = builder.debugErrors;
+    this.bossThreads = builder.bossThreads;
+    this.workerThreads = builder.workerThreads;
+    this.acceptors = builder.acceptors;
+    this.backlog = builder.backlog;
+    this.tcpNoDelay = builder.tcpNoDelay;
+    this.tcpFastOpen = builder.tcpFastOpen;
+    this.tcpDeferAccept = builder.tcpDeferAccept;
+    this.writeBufferWaterMark = builder.writeBufferWaterMark;
+    this.scanners = new ArrayList<>(builder.scanners);
+    this.http3Listener = http3 == null ? null : newHttp3Listener(builder.serverCertificate != null
+        ? builder.serverCertificate
+        : Builder.DEFAULT_SERVER_CERTIFICATE);
+    this.handler = new ServerHandler(providerExecutor, providerExecutors, concurrencyLimiter,
+        concurrencyLimiters, codel, requestTimeout, debugErrors,
+        http3Listener == null ? null : http3Listener.getAltSvc());
   }
 
   @Override
@@ -77,8 +178,34 @@ public final class ServerInitializer extends ChannelInitializer<SocketChannel> {
     if (isSslConfigured()) {
       pipeline.addLast("ssl", sslCtx.newHandler(ch.alloc()));
     }
-    pipeline.addLast("http", new HttpServerCodec());
-    pipeline.addLast("aggregator", new HttpObjectAggregator(maxContentLength));
+    if (http2 == null) {
+      pipeline.addLast("http", new HttpServerCodec());
+      addHttpHandlers(pipeline, newConnectionTimeoutHandler());
+    } else if (isSslConfigured()) {
+      // the protocol is negotiated by the tls handshake, http/1.1 if the client does not tell.
+      pipeline.addLast("alpn", new ProtocolNegotiationHandler());
+    } else {
+      // h2c with prior knowledge or upgraded from http/1.1, otherwise http/1.1.
+      final HttpServerCodec codec = new HttpServerCodec();
+      pipeline.addLast("h2c", new CleartextHttp2ServerUpgradeHandler(codec,
+          new HttpServerUpgradeHandler(codec, this::newUpgradeCodec, maxContentLength),
+          new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+              addHttp2Handlers(ch.pipeline());
+            }
+          }));
+      addHttpHandlers(pipeline, newConnectionTimeoutHandler());
+    }
+  }
+
+  /**
+   * Add the handlers of the http/1.1 exchanges, right after the http codec of a connection or
+   * the http/2 stream codec.
+   */
+  private void addHttpHandlers(ChannelPipeline pipeline, ConnectionTimeoutHandler timeout) {
+    pipeline.addLast("timeout", timeout);
+    // before the head handler, so the rejected requests are answered through it too.
     if (compressor != null) {
       pipeline.addLast("compressor", new CustomHttpContentCompressor(
           compressor.level,
@@ -86,16 +213,110 @@ public final class ServerInitializer extends ChannelInitializer<SocketChannel> {
           compressor.types
       ));
     }
+    // the security providers may block, so they run out of the i/o thread when possible.
+    pipeline.addLast("head", new RequestHeadHandler(maxContentLength, bodyBudget,
+        group != null ? group : providerExecutor, debugErrors));
+    pipeline.addLast("aggregator", new RouteAggregator());
     pipeline.addLast("streamer", new ChunkedWriteHandler());
-    pipeline.addLast("timeout", new ReadTimeoutHandler(timeout.getSeconds(), TimeUnit.SECONDS));
     // Tell the pipeline to run MyBusinessLogicHandler's event handler methods in a different
     // thread than an I/O thread so that the I/O thread is not blocked by a time-consuming task.
     // If your business logic is fully asynchronous or finished very quickly, you don't need to
     // specify a group.
     if (group != null) {
-      pipeline.addLast(group, "handler", ServerHandler.INSTANCE);
+      pipeline.addLast(group, "handler", handler);
     } else {
-      pipeline.addLast("handler", ServerHandler.INSTANCE);
+      pipeline.addLast("handler", handler);
+    }
+  }
+
+  private ConnectionTimeoutHandler newConnectionTimeoutHandler() {
+    return new ConnectionTimeoutHandler(headerTimeout, bodyTimeout, keepAliveTimeout,
+        writeTimeout);
+  }
+
+  /**
+   * Replace the http/1.1 handlers of a connection by the http/2 handlers, each stream of the
+   * connection getting its own http/1.1 handlers.
+   */
+  private void addHttp2Handlers(ChannelPipeline pipeline) throws Http2Exception {
+    removeHttpHandlers(pipeline);
+    final Http2FrameCodec codec = newHttp2FrameCodec();
+    pipeline.addLast("http2", codec);
+    pipeline.addLast("timeout", new Http2ConnectionTimeoutHandler(codec, keepAliveTimeout,
+        writeTimeout));
+    pipeline.addLast("multiplex", new Http2MultiplexHandler(streamInitializer));
+    increaseConnectionWindow(codec);
+  }
+
+  /**
+   * The codec of the h2c upgrade, the upgrade request being the first stream of the connection.
+   */
+  private HttpServerUpgradeHandler.UpgradeCodec newUpgradeCodec(CharSequence protocol) {
+    if (!AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+      return null;
+    }
+    final Http2FrameCodec codec = newHttp2FrameCodec();
+    return new Http2ServerUpgradeCodec(codec,
+        new ChannelInitializer<Channel>() {
+          @Override
+          protected void initChannel(Channel ch) throws Exception {
+            removeHttpHandlers(ch.pipeline());
+            increaseConnectionWindow(codec);
+          }
+        },
+        new Http2ConnectionTimeoutHandler(codec, keepAliveTimeout, writeTimeout),
+        new Http2MultiplexHandler(streamInitializer, streamInitializer));
+  }
+
+  private Http2FrameCodec newHttp2FrameCodec() {
+    return Http2FrameCodecBuilder.forServer()
+        .initialSettings(Http2Settings.defaultSettings()
+            .maxConcurrentStreams(http2.maxConcurrentStreams)
+            .initialWindowSize(http2.initialWindowSize))
+        .build();
+  }
+
+  /**
+   * Grow the connection flow control window, from the protocol default to the configured size.
+   */
+  private void increaseConnectionWindow(Http2FrameCodec codec) throws Http2Exception {
+    final Http2Connection connection = codec.connection();
+    final int delta = http2.connectionWindowSize
+        - connection.local().flowController().windowSize(connection.connectionStream());
+    if (delta > 0) {
+      connection.local().flowController().incrementWindowSize(connection.connectionStream(),
+          delta);
+    }
+  }
+
+  private Http3Listener newHttp3Listener(ServerCertificate certificate) {
+    try {
+      return new Http3Listener(certificate, http3BindAddress.getPort(), keepAliveTimeout,
+          http3.maxConcurrentStreams, http3.initialWindowSize, http3.connectionWindowSize,
+          // the idle connections are closed by quic itself, only the body timeout is left.
+          pipeline -> addHttpHandlers(pipeline, new ConnectionTimeoutHandler(
+              Duration.ZERO, bodyTimeout, Duration.ZERO, Duration.ZERO)));
+    } catch (NoClassDefFoundError e) {
+      throw new IllegalStateException(
+          "HTTP/3 needs the io.netty.incubator:netty-incubator-codec-http3 dependency", e);
+    }
+  }
+
+  /**
+   * Create the quic codec of the http/3 listener, bound on an udp channel. Each request stream
+   * of a quic connection gets its own http/1.1 handlers.
+   *
+   * @return the quic server codec
+   */
+  ChannelHandler newQuicServerCodec() {
+    return http3Listener.newQuicServerCodec();
+  }
+
+  private static void removeHttpHandlers(ChannelPipeline pipeline) {
+    for (String name : HTTP_HANDLERS) {
+      if (pipeline.get(name) != null) {
+        pipeline.remove(name);
+      }
     }
   }
 
@@ -123,6 +344,174 @@ public final class ServerInitializer extends ChannelInitializer<SocketChannel> {
     return sslCtx != null;
   }
 
+  public boolean isHttp2Enabled() {
+    return http2 != null;
+  }
+
+  public boolean isHttp3Enabled() {
+    return http3 != null;
+  }
+
+  /**
+   * The udp address of the http/3 listener.
+   *
+   * @return the http/3 bind address or {@code null} if not enabled
+   */
+  public InetSocketAddress getHttp3BindAddress() {
+    return http3BindAddress;
+  }
+
+  /**
+   * The request body budget shared by every channel, exposing its usage gauges.
+   *
+   * @return the request body budget or {@code null} if not enabled
+   */
+  public BodyBudget getBodyBudget() {
+    return bodyBudget;
+  }
+
+  /**
+   * The executor of the blocking route providers, exposing its usage gauges.
+   *
+   * @return the provider executor or {@code null} if not enabled
+   */
+  public ProviderExecutor getProviderExecutor() {
+    return providerExecutor;
+  }
+
+  /**
+   * The named provider executors, the bulkheads of the routes naming them, exposing their usage
+   * gauges.
+   *
+   * @return the named provider executors
+   */
+  public Map<String, ProviderExecutor> getProviderExecutors() {
+    return providerExecutors;
+  }
+
+  /**
+   * The concurrency limiter of every route, exposing its limit and rejections.
+   *
+   * @return the concurrency limiter or {@code null} if not enabled
+   */
+  public ConcurrencyLimiter getConcurrencyLimiter() {
+    return concurrencyLimiter;
+  }
+
+  /**
+   * The concurrency limiters of each route uri, exposing their limit and rejections.
+   *
+   * @return the route concurrency limiters
+   */
+  public Map<String, ConcurrencyLimiter> getConcurrencyLimiters() {
+    return concurrencyLimiters;
+  }
+
+  /**
+   * The policy shedding the requests waiting too long for the request handler, exposing the
+   * queue delay histogram.
+   *
+   * @return the codel policy or {@code null} if not enabled
+   */
+  public Codel getCodel() {
+    return codel;
+  }
+
+  /**
+   * The time the server waits for the response of the routes without their own timeout.
+   *
+   * @return the request timeout or {@code null} if none
+   */
+  public Duration getRequestTimeout() {
+    return requestTimeout;
+  }
+
+  public boolean isDebugErrors() {
+    return debugErrors;
+  }
+
+  /**
+   * The threads of the event loop group accepting the connections.
+   *
+   * @return the boss thread count or {@code 0} for the netty default
+   */
+  public int getBossThreads() {
+    return bossThreads;
+  }
+
+  /**
+   * The threads of the event loop group serving the connections.
+   *
+   * @return the worker thread count or {@code 0} for the netty default
+   */
+  public int getWorkerThreads() {
+    return workerThreads;
+  }
+
+  /**
+   * The listening sockets bound with {@code SO_REUSEPORT} on epoll.
+   *
+   * @return the acceptor count, {@code 1} for a single socket or {@code 0} for one per worker
+   *         thread
+   */
+  public int getAcceptors() {
+    return acceptors;
+  }
+
+  /**
+   * The pending connections queue of the listening sockets.
+   *
+   * @return the backlog or {@code 0} for the system default
+   */
+  public int getBacklog() {
+    return backlog;
+  }
+
+  public boolean isTcpNoDelay() {
+    return tcpNoDelay;
+  }
+
+  /**
+   * The pending TCP Fast Open requests queue of the listening sockets, on epoll.
+   *
+   * @return the queue length or {@code 0} if not enabled
+   */
+  public int getTcpFastOpen() {
+    return tcpFastOpen;
+  }
+
+  /**
+   * The time a connection is left in the kernel until its first bytes, on epoll.
+   *
+   * @return the defer accept timeout or {@link Duration#ZERO} if not enabled
+   */
+  public Duration getTcpDeferAccept() {
+    return tcpDeferAccept;
+  }
+
+  /**
+   * The write buffer water marks of the connections, which stop being writable above the high
+   * one until under the low one.
+   *
+   * @return the write buffer water marks or {@code null} for the netty default
+   */
+  public WriteBufferWaterMark getWriteBufferWaterMark() {
+    return writeBufferWaterMark;
+  }
+
+  /**
+   * Stop watching the route and security directories scanned by this server.
+   */
+  void closeScanners() {
+    for (Closeable scanner : scanners) {
+      try {
+        scanner.close();
+      } catch (IOException e) {
+        LOGGER.warn("Could not close the scanner {}", scanner, e);
+      }
+    }
+  }
+
   private static final class Compressor {
 
     static final int DEFAULT_COMPRESSION_LEVEL = 6;
@@ -156,19 +545,149 @@ public final class ServerInitializer extends ChannelInitializer<SocketChannel> {
     }
   }
 
+  private static final class Http2 {
+
+    static final long DEFAULT_MAX_CONCURRENT_STREAMS = 100;
+    static final int DEFAULT_INITIAL_WINDOW_SIZE = Http2CodecUtil.DEFAULT_WINDOW_SIZE;
+    static final int DEFAULT_CONNECTION_WINDOW_SIZE = 1024 * 1024; // 1mb
+
+    private final long maxConcurrentStreams;
+    private final int initialWindowSize;
+    private final int connectionWindowSize;
+
+    /**
+     * Creates a new instance with provided parameters.
+     *
+     * @param maxConcurrentStreams the streams a client can open at once on a connection
+     * @param initialWindowSize    the request body bytes a client can send on a stream before
+     *                             the server read them
+     * @param connectionWindowSize the request body bytes a client can send on all the streams
+     *                             of a connection before the server read them
+     */
+    Http2(long maxConcurrentStreams, int initialWindowSize, int connectionWindowSize) {
+      if (maxConcurrentStreams <= 0) {
+        throw new IllegalArgumentException("maxConcurrentStreams: " + maxConcurrentStreams);
+      }
+      if (initialWindowSize <= 0) {
+        throw new IllegalArgumentException("initialWindowSize: " + initialWindowSize);
+      }
+      if (connectionWindowSize < Http2CodecUtil.DEFAULT_WINDOW_SIZE) {
+        throw new IllegalArgumentException("connectionWindowSize: " + connectionWindowSize);
+      }
+      this.maxConcurrentStreams = maxConcurrentStreams;
+      this.initialWindowSize = initialWindowSize;
+      this.connectionWindowSize = connectionWindowSize;
+    }
+  }
+
+  private static final class Http3 {
+
+    // the udp port of the tcp listener.
+    static final int SAME_PORT = -1;
+    static final long DEFAULT_MAX_CONCURRENT_STREAMS = Http2.DEFAULT_MAX_CONCURRENT_STREAMS;
+    static final long DEFAULT_INITIAL_WINDOW_SIZE = Http2.DEFAULT_INITIAL_WINDOW_SIZE;
+    static final long DEFAULT_CONNECTION_WINDOW_SIZE = Http2.DEFAULT_CONNECTION_WINDOW_SIZE;
+
+    private final int port;
+    private final long maxConcurrentStreams;
+    private final long initialWindowSize;
+    private final long connectionWindowSize;
+
+    /**
+     * Creates a new instance with provided parameters.
+     *
+     * @param port                 the udp port or {@link #SAME_PORT} for the tcp listener one
+     * @param maxConcurrentStreams the request streams a client can open on a connection
+     * @param initialWindowSize    the request body bytes a client can send on a stream before
+     *                             the server read them
+     * @param connectionWindowSize the request body bytes a client can send on all the streams
+     *                             of a connection before the server read them
+     */
+    Http3(int port, long maxConcurrentStreams, long initialWindowSize,
+          long connectionWindowSize) {
+      if (port != SAME_PORT && (port < 0 || port > 0xFFFF)) {
+        throw new IllegalArgumentException("port: " + port);
+      }
+      if (maxConcurrentStreams <= 0) {
+        throw new IllegalArgumentException("maxConcurrentStreams: " + maxConcurrentStreams);
+      }
+      if (initialWindowSize <= 0) {
+        throw new IllegalArgumentException("initialWindowSize: " + initialWindowSize);
+      }
+      if (connectionWindowSize < initialWindowSize) {
+        throw new IllegalArgumentException("connectionWindowSize: " + connectionWindowSize);
+      }
+      this.port = port;
+      this.maxConcurrentStreams = maxConcurrentStreams;
+      this.initialWindowSize = initialWindowSize;
+      this.connectionWindowSize = connectionWindowSize;
+    }
+
+    InetSocketAddress bindAddress(InetSocketAddress tcpBindAddress) {
+      return new InetSocketAddress(tcpBindAddress.getAddress(),
+          port == SAME_PORT ? tcpBindAddress.getPort() : port);
+    }
+  }
+
+  /**
+   * Configures the pipeline with the protocol negotiated by the tls handshake.
+   */
+  private final class ProtocolNegotiationHandler extends ApplicationProtocolNegotiationHandler {
+
+    ProtocolNegotiationHandler() {
+      super(ApplicationProtocolNames.HTTP_1_1);
+    }
+
+    @Override
+    protected void configurePipeline(ChannelHandlerContext ctx, String protocol)
+        throws Exception {
+      if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+        addHttp2Handlers(ctx.pipeline());
+      } else if (ApplicationProtocolNames.HTTP_1_1.equals(protocol)) {
+        ctx.pipeline().addLast("http", new HttpServerCodec());
+        addHttpHandlers(ctx.pipeline(), newConnectionTimeoutHandler());
+      } else {
+        throw new IllegalStateException("Unsupported protocol: " + protocol);
+      }
+    }
+  }
+
   public static final class Builder {
 
     static final ServerCertificate DEFAULT_SERVER_CERTIFICATE =
         new ServerSelfSignedCertificate();
 
     private SslContext sslContext;
+    private ServerCertificate serverCertificate;
     private Compressor compressor;
+    private Http2 http2;
+    private Http3 http3;
     private InetSocketAddress bindAddress;
     private EventExecutorGroup eventExecutorGroup;
+    private BodyBudget bodyBudget;
+    private ProviderExecutor providerExecutor;
+    private final Map<String, ProviderExecutor> providerExecutors = new LinkedHashMap<>();
+    private ConcurrencyLimiter concurrencyLimiter;
+    private final Map<String, ConcurrencyLimiter> concurrencyLimiters = new LinkedHashMap<>();
+    private Codel codel;
+    private Duration requestTimeout;
+    private boolean debugErrors;
+    private int bossThreads;
+    private int workerThreads;
+    private int backlog;
+    private int tcpFastOpen;
+    private WriteBufferWaterMark writeBufferWaterMark;
+    private final List<Closeable> scanners = new ArrayList<>();
 
     // default
     private int maxContentLength = 64 * 1024;
-    private Duration timeout = Duration.ofHours(1);
+    private Duration headerTimeout = Duration.ofSeconds(30);
+    private Duration bodyTimeout = Duration.ofSeconds(60);
+    private Duration keepAliveTimeout = Duration.ofSeconds(60);
+    private Duration writeTimeout = Duration.ofSeconds(60);
+    private int acceptors = 1;
+    private boolean tcpNoDelay = true;
+    private Duration tcpDeferAccept = Duration.ZERO;
 
     public Builder bindAddress(InetSocketAddress bindAddress) {
       this.bindAddress = bindAddress;
@@ -211,15 +730,304 @@ public final class ServerInitializer extends ChannelInitializer<SocketChannel> {
     }
 
     /**
-     * Timeout duration, default duration is used {@code Duration.ofSeconds(30)}.
+     * Enable HTTP/2 with at most 100 concurrent streams per connection, the default stream flow
+     * control window and a 1mb connection flow control window.
+     *
+     * @return server initializer builder
+     * @see #enableHttp2(long, int, int)
+     */
+    public Builder enableHttp2() {
+      return enableHttp2(
+          Http2.DEFAULT_MAX_CONCURRENT_STREAMS,
+          Http2.DEFAULT_INITIAL_WINDOW_SIZE,
+          Http2.DEFAULT_CONNECTION_WINDOW_SIZE
+      );
+    }
+
+    /**
+     * Enable HTTP/2, negotiated by ALPN when the server is started as https, otherwise over
+     * cleartext (h2c) with prior knowledge or upgraded from HTTP/1.1. The clients not asking for
+     * it are still served with HTTP/1.1. The requests of each stream are routed as the
+     * HTTP/1.1 ones, the route providers are the same.
+     *
+     * <p>The ALPN protocols are only added to the ssl context created by the server, an ssl
+     * context of the application must declare them itself.
+     *
+     * @param maxConcurrentStreams the streams a client can open at once on a connection
+     * @param initialWindowSize    the stream flow control window, the request body bytes a client
+     *                             can send on a stream before the server read them
+     * @param connectionWindowSize the connection flow control window, the request body bytes a
+     *                             client can send on all the streams of a connection before the
+     *                             server read them
+     * @return server initializer builder
+     */
+    public Builder enableHttp2(long maxConcurrentStreams, int initialWindowSize,
+                               int connectionWindowSize) {
+      this.http2 = new Http2(maxConcurrentStreams, initialWindowSize, connectionWindowSize);
+      return this;
+    }
+
+    /**
+     * Enable HTTP/3 on the udp port of the tcp listener, with at most 100 concurrent request
+     * streams per connection, a 64kb stream flow control window and a 1mb connection flow
+     * control window.
+     *
+     * @return server initializer builder
+     * @see #enableHttp3(int, long, long, long)
+     */
+    public Builder enableHttp3() {
+      return enableHttp3(
+          Http3.SAME_PORT,
+          Http3.DEFAULT_MAX_CONCURRENT_STREAMS,
+          Http3.DEFAULT_INITIAL_WINDOW_SIZE,
+          Http3.DEFAULT_CONNECTION_WINDOW_SIZE
+      );
+    }
+
+    /**
+     * Enable HTTP/3 over QUIC, listening on an udp port next to the tcp listener, sharing its
+     * routes and securities. The responses of the tcp listener advertise it with an {@code
+     * Alt-Svc} header, so the clients switch to it for their next requests. The requests of each
+     * stream are routed as the HTTP/1.1 ones, the route providers are the same. Idle connections
+     * are closed by QUIC at the keep alive timeout.
+     *
+     * <p>QUIC always encrypts, with the certificate of {@link #ssl(ServerCertificate)} or
+     * otherwise with the self signed one, also when the ssl context is given by the application.
+     * It needs the native QUIC library of the platform.
+     *
+     * @param port                 the udp port, {@code -1} for the tcp listener one
+     * @param maxConcurrentStreams the request streams a client can open at once on a connection
+     * @param initialWindowSize    the stream flow control window, the request body bytes a client
+     *                             can send on a stream before the server read them
+     * @param connectionWindowSize the connection flow control window, the request body bytes a
+     *                             client can send on all the streams of a connection before the
+     *                             server read them
+     * @return server initializer builder
+     */
+    public Builder enableHttp3(int port, long maxConcurrentStreams, long initialWindowSize,
+                               long connectionWindowSize) {
+      this.http3 = new Http3(port, maxConcurrentStreams, initialWindowSize,
+          connectionWindowSize);
+      return this;
+    }
+
+    /**
+     * Read timeout duration, the header, body and keep alive timeouts at once.
      *
      * @param timeout duration timeout
      * @return server initializer builder
+     * @deprecated use the {@link #headerTimeout(Duration)}, {@link #bodyTimeout(Duration)} and
+     *             {@link #keepAliveTimeout(Duration)} timeouts.
      */
+    @Deprecated
     public Builder timeout(Duration timeout) {
-      if (timeout != null) {
-        this.timeout = timeout;
+      return headerTimeout(timeout).bodyTimeout(timeout).keepAliveTimeout(timeout);
+    }
+
+    /**
+     * The time to receive a whole request head since its first bytes, default duration is
+     * {@code Duration.ofSeconds(30)}, {@link Duration#ZERO} for none. The connection is closed
+     * once it expired.
+     *
+     * @param headerTimeout the request head timeout
+     * @return server initializer builder
+     */
+    public Builder headerTimeout(Duration headerTimeout) {
+      this.headerTimeout = checkTimeout(headerTimeout, this.headerTimeout);
+      return this;
+    }
+
+    /**
+     * The time without any body bytes while receiving a request body, default duration is
+     * {@code Duration.ofSeconds(60)}, {@link Duration#ZERO} for none. The connection is closed
+     * once it expired.
+     *
+     * @param bodyTimeout the request body timeout
+     * @return server initializer builder
+     */
+    public Builder bodyTimeout(Duration bodyTimeout) {
+      this.bodyTimeout = checkTimeout(bodyTimeout, this.bodyTimeout);
+      return this;
+    }
+
+    /**
+     * The time an idle connection is kept open after its last response, default duration is
+     * {@code Duration.ofSeconds(60)}, {@link Duration#ZERO} for none. The connection is closed
+     * silently once it expired.
+     *
+     * @param keepAliveTimeout the keep alive timeout
+     * @return server initializer builder
+     */
+    public Builder keepAliveTimeout(Duration keepAliveTimeout) {
+      this.keepAliveTimeout = checkTimeout(keepAliveTimeout, this.keepAliveTimeout);
+      return this;
+    }
+
+    /**
+     * The time without any write progress while the response bytes wait for the client to read
+     * them, default duration is {@code Duration.ofSeconds(60)}, {@link Duration#ZERO} for none.
+     * The connection is closed once it expired.
+     *
+     * @param writeTimeout the write stall timeout
+     * @return server initializer builder
+     */
+    public Builder writeTimeout(Duration writeTimeout) {
+      this.writeTimeout = checkTimeout(writeTimeout, this.writeTimeout);
+      return this;
+    }
+
+    /**
+     * The time the server waits for the response of the routes without their own timeout,
+     * since the request was received. The request deadline is exposed to the route providers,
+     * a request whose deadline expired before its provider was called is answered with {@code
+     * 503 Service Unavailable}, and an async or offloaded provider not done in time is answered
+     * with {@code 504 Gateway Timeout} and cancelled, interrupting its thread.
+     *
+     * @param requestTimeout the request timeout or {@code null} for none
+     * @return server initializer builder
+     */
+    public Builder requestTimeout(Duration requestTimeout) {
+      if (requestTimeout != null && requestTimeout.isNegative()) {
+        throw new IllegalArgumentException("requestTimeout: " + requestTimeout);
       }
+      this.requestTimeout = requestTimeout;
+      return this;
+    }
+
+    /**
+     * Describe the errors in the error responses with their message, the request detail and the
+     * stack trace, for debugging only. Otherwise the errors are answered with preallocated status
+     * responses, the unexpected errors being logged instead.
+     *
+     * @return server initializer builder
+     */
+    public Builder debugErrors() {
+      this.debugErrors = true;
+      return this;
+    }
+
+    /**
+     * The threads of the event loop group accepting the connections, default is the netty one.
+     *
+     * @param bossThreads the boss thread count, {@code 0} for the netty default
+     * @return server initializer builder
+     */
+    public Builder bossThreads(int bossThreads) {
+      if (bossThreads < 0) {
+        throw new IllegalArgumentException("bossThreads: " + bossThreads);
+      }
+      this.bossThreads = bossThreads;
+      return this;
+    }
+
+    /**
+     * The threads of the event loop group serving the connections, default is the netty one,
+     * twice the available processors.
+     *
+     * @param workerThreads the worker thread count, {@code 0} for the netty default
+     * @return server initializer builder
+     */
+    public Builder workerThreads(int workerThreads) {
+      if (workerThreads < 0) {
+        throw new IllegalArgumentException("workerThreads: " + workerThreads);
+      }
+      this.workerThreads = workerThreads;
+      return this;
+    }
+
+    /**
+     * Bind one listening socket per worker thread with {@code SO_REUSEPORT}.
+     *
+     * @return server initializer builder
+     * @see #reusePort(int)
+     */
+    public Builder reusePort() {
+      this.acceptors = 0;
+      return this;
+    }
+
+    /**
+     * Bind several listening sockets on the same address with {@code SO_REUSEPORT}, each accepted
+     * by its own boss thread, so the kernel spreads the connections among them instead of a
+     * single acceptor serializing them. Only on epoll, otherwise a single socket is bound. The
+     * boss threads default to the acceptor count.
+     *
+     * @param acceptors the listening socket count
+     * @return server initializer builder
+     */
+    public Builder reusePort(int acceptors) {
+      if (acceptors <= 0) {
+        throw new IllegalArgumentException("acceptors: " + acceptors);
+      }
+      this.acceptors = acceptors;
+      return this;
+    }
+
+    /**
+     * The pending connections queue of the listening sockets, default is the system one ({@code
+     * somaxconn}).
+     *
+     * @param backlog the backlog
+     * @return server initializer builder
+     */
+    public Builder backlog(int backlog) {
+      if (backlog <= 0) {
+        throw new IllegalArgumentException("backlog: " + backlog);
+      }
+      this.backlog = backlog;
+      return this;
+    }
+
+    /**
+     * Disable the Nagle algorithm of the connections, sending the small responses at once,
+     * default is {@code true}.
+     *
+     * @param tcpNoDelay true to disable the Nagle algorithm
+     * @return server initializer builder
+     */
+    public Builder tcpNoDelay(boolean tcpNoDelay) {
+      this.tcpNoDelay = tcpNoDelay;
+      return this;
+    }
+
+    /**
+     * Enable TCP Fast Open, the clients sending their request with the handshake on the next
+     * connections. Only on epoll.
+     *
+     * @param queueLength the pending fast open requests a listening socket can hold
+     * @return server initializer builder
+     */
+    public Builder tcpFastOpen(int queueLength) {
+      if (queueLength <= 0) {
+        throw new IllegalArgumentException("queueLength: " + queueLength);
+      }
+      this.tcpFastOpen = queueLength;
+      return this;
+    }
+
+    /**
+     * Leave the connections in the kernel until their first bytes, so the idle ones never reach
+     * the server. Only on epoll, rounded to seconds.
+     *
+     * @param tcpDeferAccept the time to wait for the first bytes, {@link Duration#ZERO} for none
+     * @return server initializer builder
+     */
+    public Builder tcpDeferAccept(Duration tcpDeferAccept) {
+      this.tcpDeferAccept = checkTimeout(tcpDeferAccept, Duration.ZERO);
+      return this;
+    }
+
+    /**
+     * The write buffer water marks of the connections: above the high one the connection stops
+     * being writable, pausing the streamed responses until the buffered bytes fall under the low
+     * one.
+     *
+     * @param low  the low water mark in bytes
+     * @param high the high water mark in bytes
+     * @return server initializer builder
+     */
+    public Builder writeBufferWaterMark(int low, int high) {
+      this.writeBufferWaterMark = new WriteBufferWaterMark(low, high);
       return this;
     }
 
@@ -228,30 +1036,199 @@ public final class ServerInitializer extends ChannelInitializer<SocketChannel> {
       return this;
     }
 
+    /**
+     * Limit the request body bytes buffered at once by all the connections, pausing the reads
+     * of the connections receiving a body while the budget is exhausted.
+     *
+     * @param maxBytes the maximum buffered request body bytes
+     * @return server initializer builder
+     */
+    public Builder bodyBudget(long maxBytes) {
+      return bodyBudget(maxBytes, BodyBudget.Policy.PAUSE);
+    }
+
+    /**
+     * Limit the request body bytes buffered at once by all the connections.
+     *
+     * @param maxBytes the maximum buffered request body bytes
+     * @param policy   pause the reads or shed the requests with 503 when the budget is exhausted
+     * @return server initializer builder
+     */
+    public Builder bodyBudget(long maxBytes, BodyBudget.Policy policy) {
+      this.bodyBudget = new BodyBudget(maxBytes, policy);
+      return this;
+    }
+
     public Builder executorGroupThreadPoll(int threads) {
       this.eventExecutorGroup = new DefaultEventExecutorGroup(threads);
       return this;
     }
 
+    /**
+     * Shed the requests waiting longer than five millis for an executor group thread, once the
+     * queue stands above it for a hundred millis. The shed requests are answered with {@code 503
+     * Service Unavailable} without calling their route provider.
+     *
+     * @return server initializer builder
+     */
+    public Builder codel() {
+      return codel(new Codel());
+    }
+
+    /**
+     * Shed the requests waiting too long for an executor group thread.
+     *
+     * @param codel the codel policy
+     * @return server initializer builder
+     */
+    public Builder codel(Codel codel) {
+      this.codel = codel;
+      return this;
+    }
+
+    /**
+     * Run each route provider on a virtual thread, available from Java 21, instead of an event
+     * loop or executor group thread, without limiting the providers running at once.
+     *
+     * @return server initializer builder
+     */
+    public Builder virtualThreads() {
+      return virtualThreads(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Run each route provider on a virtual thread, available from Java 21, instead of an event
+     * loop or executor group thread. The providers beyond the maximum concurrency wait in
+     * arrival order for a running one to complete. On older runtimes cached platform threads
+     * are used instead.
+     *
+     * @param maxConcurrency the maximum number of providers running at once
+     * @return server initializer builder
+     */
+    public Builder virtualThreads(int maxConcurrency) {
+      return providerExecutor(ProviderExecutor.virtualThreads(maxConcurrency));
+    }
+
+    /**
+     * Run the route providers on the provider executor, instead of an event loop or executor
+     * group thread. Async route providers are still called by the channel thread.
+     *
+     * @param providerExecutor the provider executor
+     * @return server initializer builder
+     */
+    public Builder providerExecutor(ProviderExecutor providerExecutor) {
+      this.providerExecutor = providerExecutor;
+      return this;
+    }
+
+    /**
+     * Add a named provider executor of a fixed number of threads, running the providers of the
+     * routes naming it. When its queue is full the requests are answered with {@code 503 Service
+     * Unavailable} and a one second {@code Retry-After}.
+     *
+     * @param name      the provider executor name
+     * @param threads   the number of threads
+     * @param maxQueued the maximum number of providers waiting for a thread
+     * @return server initializer builder
+     */
+    public Builder providerExecutor(String name, int threads, int maxQueued) {
+      return providerExecutor(name, ProviderExecutor.fixedThreads(
+          name, threads, maxQueued, ProviderExecutor.DEFAULT_RETRY_AFTER));
+    }
+
+    /**
+     * Add a named provider executor, running the providers of the routes naming it.
+     *
+     * @param name             the provider executor name
+     * @param providerExecutor the provider executor
+     * @return server initializer builder
+     */
+    public Builder providerExecutor(String name, ProviderExecutor providerExecutor) {
+      this.providerExecutors.put(Objects.requireNonNull(name, "name"),
+          Objects.requireNonNull(providerExecutor, "providerExecutor"));
+      return this;
+    }
+
+    /**
+     * Limit the requests handled at once by every route with an adaptive limit, following the
+     * observed latency, starting at 20 and between 4 and 1000. The requests beyond the limit are
+     * answered with {@code 503 Service Unavailable} before their route provider runs.
+     *
+     * @return server initializer builder
+     */
+    public Builder concurrencyLimit() {
+      return concurrencyLimit(new ConcurrencyLimiter());
+    }
+
+    /**
+     * Limit the requests handled at once by every route.
+     *
+     * @param concurrencyLimiter the concurrency limiter
+     * @return server initializer builder
+     */
+    public Builder concurrencyLimit(ConcurrencyLimiter concurrencyLimiter) {
+      this.concurrencyLimiter = concurrencyLimiter;
+      return this;
+    }
+
+    /**
+     * Limit the requests handled at once by a route, along with the limit of every route if
+     * any. Streaming routes are not limited.
+     *
+     * @param uri                the route uri
+     * @param concurrencyLimiter the concurrency limiter
+     * @return server initializer builder
+     */
+    public Builder concurrencyLimit(String uri, ConcurrencyLimiter concurrencyLimiter) {
+      this.concurrencyLimiters.put(normalize(Objects.requireNonNull(uri, "uri")),
+          Objects.requireNonNull(concurrencyLimiter, "concurrencyLimiter"));
+      return this;
+    }
+
     public Builder ssl() {
       return ssl(DEFAULT_SERVER_CERTIFICATE);
     }
 
     public Builder ssl(ServerCertificate certificate) {
-      return ssl(createSslContext(certificate));
+      // created on build, once the protocols to negotiate are known.
+      this.serverCertificate = certificate;
+      this.sslContext = null;
+      return this;
     }
 
     public Builder ssl(SslContext sslContext) {
       this.sslContext = sslContext;
+      this.serverCertificate = null;
       return this;
     }
 
+    private static Duration checkTimeout(Duration timeout, Duration defaultTimeout) {
+      if (timeout == null) {
+        return defaultTimeout;
+      }
+      if (timeout.isNegative()) {
+        throw new IllegalArgumentException("timeout: " + timeout);
+      }
+      return timeout;
+    }
+
     private SslContext createSslContext(ServerCertificate serverCertificate) {
       try {
-        return SslContextBuilder.forServer(
+        final SslContextBuilder builder = SslContextBuilder.forServer(
             serverCertificate.getCertificate().toFile(),
             serverCertificate.getPrivateKey().toFile()
-        ).build();
+        );
+        if (http2 != null) {
+          builder
+              .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+              .applicationProtocolConfig(new ApplicationProtocolConfig(
+                  ApplicationProtocolConfig.Protocol.ALPN,
+                  ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                  ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                  ApplicationProtocolNames.HTTP_2,
+                  ApplicationProtocolNames.HTTP_1_1));
+        }
+        return builder.build();
       } catch (SSLException ignore) {
         return null;
       }
@@ -277,8 +1254,22 @@ public final class ServerInitializer extends ChannelInitializer<SocketChannel> {
      * @return server initializer builder
      */
     public Builder enableSecurityRoutesScan(Path securityDirectory) {
-      SecurityScanner securityScanner = new SecurityScanner(Security.INSTANCE, securityDirectory);
+      return enableSecurityRoutesScan(securityDirectory, SecurityScanner.DEFAULT_QUIET_PERIOD);
+    }
+
+    /**
+     * Enable the security route scan approach.
+     *
+     * @param securityDirectory the security directory to scan
+     * @param quietPeriod the period without file system events a changed jar must wait
+     *                    before being rescanned
+     * @return server initializer builder
+     */
+    public Builder enableSecurityRoutesScan(Path securityDirectory, Duration quietPeriod) {
+      SecurityScanner securityScanner = new SecurityScanner(
+          Security.INSTANCE, securityDirectory, quietPeriod);
       securityScanner.scan();
+      scanners.add(securityScanner);
       return this;
     }
 
@@ -293,8 +1284,53 @@ public final class ServerInitializer extends ChannelInitializer<SocketChannel> {
      * @return server initializer builder
      */
     public Builder enableRoutesScan(Path routeDirectory) {
-      RouteScanner routeScanner = new RouteScanner(Route.INSTANCE, routeDirectory);
+      return enableRoutesScan(routeDirectory, RouteScanner.DEFAULT_QUIET_PERIOD);
+    }
+
+    /**
+     * Enable the route scan approach.
+     *
+     * @param routeDirectory the route directory to scan
+     * @param quietPeriod the period without file system events a changed jar must wait
+     *                    before being rescanned
+     * @return server initializer builder
+     */
+    public Builder enableRoutesScan(Path routeDirectory, Duration quietPeriod) {
+      RouteScanner routeScanner = new RouteScanner(Route.INSTANCE, routeDirectory, quietPeriod);
+      routeScanner.scan();
+      scanners.add(routeScanner);
+      return this;
+    }
+
+    /**
+     * Enable the route scan approach, compiling each route provider only on its first request.
+     *
+     * @param routeDirectory the route directory to scan
+     * @param prewarm true to link the providers not requested yet in background at low priority
+     * @return server initializer builder
+     */
+    public Builder enableLazyRoutesScan(Path routeDirectory, boolean prewarm) {
+      return enableLazyRoutesScan(routeDirectory, RouteScanner.DEFAULT_QUIET_PERIOD, prewarm);
+    }
+
+    /**
+     * Enable the route scan approach, compiling each route provider only on its first request.
+     *
+     * @param routeDirectory the route directory to scan
+     * @param quietPeriod the period without file system events a changed jar must wait
+     *                    before being rescanned
+     * @param prewarm true to link the providers not requested yet in background at low priority
+     * @return server initializer builder
+     */
+    public Builder enableLazyRoutesScan(Path routeDirectory, Duration quietPeriod,
+                                        boolean prewarm) {
+      RouteScanner routeScanner = new RouteScanner(
+          Route.INSTANCE, routeDirectory, quietPeriod, true);
       routeScanner.scan();
+      if (prewarm) {
+        routeScanner.prewarm();
+      }
+      scanners.add(routeScanner);
       return this;
     }
 
@@ -321,6 +1357,10 @@ public final class ServerInitializer extends ChannelInitializer<SocketChannel> {
       // register default health check route.
       route("/ping", request -> Response.ok("pong").build());
 
+      if (this.serverCertificate != null) {
+        this.sslContext = createSslContext(this.serverCertificate);
+      }
+
       // register default port.
       if (this.bindAddress == null) {
         if (this.sslContext == null) {
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BodyBudgetTest {
+
+  private final List<String> admitted = new ArrayList<>();
+
+  @Test
+  public void waitingRequestsAreAdmittedInArrivalOrder() {
+    BodyBudget budget = new BodyBudget(100, BodyBudget.Policy.PAUSE);
+    assertTrue(budget.reserve(60, admit("first")));
+    assertFalse(budget.reserve(50, admit("large")));
+    // it would fit, but it does not overtake the large request.
+    assertFalse(budget.reserve(10, admit("small")));
+    assertEquals(2, budget.getPausedCount());
+
+    budget.release(60);
+    assertEquals(Arrays.asList("large", "small"), admitted);
+    assertEquals(60, budget.getUsedBytes());
+    assertEquals(0, budget.getPausedCount());
+  }
+
+  @Test
+  public void requestLargerThanTheBudgetFitsWhenNothingIsUsed() {
+    BodyBudget budget = new BodyBudget(100, BodyBudget.Policy.PAUSE);
+    assertTrue(budget.reserve(500, admit("huge")));
+    assertEquals(500, budget.getUsedBytes());
+    assertFalse(budget.reserve(1, admit("tiny")));
+
+    budget.release(500);
+    assertEquals(Collections.singletonList("tiny"), admitted);
+    assertEquals(1, budget.getUsedBytes());
+  }
+
+  @Test
+  public void cancelledRequestIsNeverAdmittedAndUnblocksTheNextOnes() {
+    BodyBudget budget = new BodyBudget(100, BodyBudget.Policy.PAUSE);
+    assertTrue(budget.reserve(90, admit("first")));
+    Runnable large = admit("large");
+    assertFalse(budget.reserve(50, large));
+    assertFalse(budget.reserve(10, admit("small")));
+
+    budget.cancel(large);
+    assertEquals(Collections.singletonList("small"), admitted);
+    assertEquals(100, budget.getUsedBytes());
+
+    budget.release(100);
+    assertEquals(Collections.singletonList("small"), admitted);
+    assertEquals(0, budget.getUsedBytes());
+  }
+
+  @Test
+  public void pausePolicyCountsThePausedRequests() {
+    BodyBudget budget = new BodyBudget(100, BodyBudget.Policy.PAUSE);
+    assertTrue(budget.reserve(100, admit("first")));
+    assertFalse(budget.reserve(10, admit("second")));
+    assertFalse(budget.reserve(10, admit("third")));
+
+    assertEquals(2, budget.getPausedCount());
+    assertEquals(2, budget.getPauseCount());
+    assertEquals(0, budget.getShedCount());
+
+    budget.release(100);
+    assertEquals(0, budget.getPausedCount());
+    assertEquals(2, budget.getPauseCount());
+  }
+
+  @Test
+  public void shedPolicyReservesNothingAndNeverWaits() {
+    BodyBudget budget = new BodyBudget(100, BodyBudget.Policy.SHED);
+    assertTrue(budget.reserve(80, admit("first")));
+    assertFalse(budget.reserve(30, admit("shed")));
+
+    assertEquals(80, budget.getUsedBytes());
+    assertEquals(0, budget.getPausedCount());
+    assertEquals(0, budget.getPauseCount());
+    assertEquals(1, budget.getShedCount());
+
+    budget.release(80);
+    assertTrue(admitted.isEmpty());
+    assertEquals(0, budget.getUsedBytes());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void maxBytesMustBePositive() {
+    new BodyBudget(0, BodyBudget.Policy.PAUSE);
+  }
+
+  private Runnable admit(String name) {
+    return () -> admitted.add(name);
+  }
+}
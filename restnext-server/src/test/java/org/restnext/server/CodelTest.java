@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CodelTest {
+
+  private static final long SHORT = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long LONG = TimeUnit.MILLISECONDS.toNanos(20);
+
+  private final Codel codel = new Codel(Duration.ofMillis(5), Duration.ofMillis(100));
+
+  @Test
+  public void burstIsNotShed() throws InterruptedException {
+    nextInterval();
+    assertFalse(codel.shed(LONG));
+    assertFalse(codel.shed(LONG));
+    // the queue drained within the interval.
+    assertFalse(codel.shed(SHORT));
+
+    nextInterval();
+    assertFalse(codel.shed(LONG));
+    assertFalse(codel.isOverloaded());
+    assertEquals(0, codel.getShedCount());
+    assertEquals(4, codel.getQueueDelay().getCount());
+  }
+
+  @Test
+  public void standingQueueIsShedOnceItLastsAWholeInterval() throws InterruptedException {
+    nextInterval();
+    assertFalse(codel.shed(LONG));
+    assertFalse(codel.shed(LONG));
+
+    nextInterval();
+    assertTrue(codel.shed(LONG));
+    assertTrue(codel.isOverloaded());
+    // only the requests waiting longer than the target are shed.
+    assertFalse(codel.shed(SHORT));
+    assertEquals(1, codel.getShedCount());
+  }
+
+  @Test
+  public void idleIntervalResetsTheOverload() throws InterruptedException {
+    nextInterval();
+    codel.shed(LONG);
+    nextInterval();
+    assertTrue(codel.shed(LONG));
+
+    Thread.sleep(250);
+    assertFalse(codel.shed(LONG));
+    assertFalse(codel.isOverloaded());
+  }
+
+  // a bit more than an interval, so the next delay starts a new interval.
+  private static void nextInterval() throws InterruptedException {
+    Thread.sleep(120);
+  }
+}
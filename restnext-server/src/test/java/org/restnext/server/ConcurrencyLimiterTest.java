@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+
+  private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void failedWindowShrinksTheLimit() throws InterruptedException {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 100);
+    window(limiter, true);
+    assertEquals(18, limiter.getLimit());
+  }
+
+  @Test
+  public void stableLatencyGrowsTheLimit() throws InterruptedException {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 4, 100);
+    for (int i = 0; i < 3; i++) {
+      window(limiter, false);
+    }
+    assertTrue(limiter.getLimit() > 10);
+    assertEquals(0, limiter.getInflightCount());
+  }
+
+  @Test
+  public void limitIsClampedBetweenMinAndMax() throws InterruptedException {
+    ConcurrencyLimiter shrinking = new ConcurrencyLimiter(5, 4, 100);
+    for (int i = 0; i < 3; i++) {
+      window(shrinking, true);
+    }
+    assertEquals(4, shrinking.getLimit());
+
+    ConcurrencyLimiter growing = new ConcurrencyLimiter(10, 4, 10);
+    for (int i = 0; i < 2; i++) {
+      window(growing, false);
+    }
+    assertEquals(10, growing.getLimit());
+  }
+
+  @Test
+  public void cancelGivesBackTheAdmission() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 4, 100);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(limiter.tryAcquire());
+    }
+    assertFalse(limiter.tryAcquire());
+    assertEquals(1, limiter.getRejectedCount());
+
+    limiter.cancel();
+    assertEquals(3, limiter.getInflightCount());
+    assertTrue(limiter.tryAcquire());
+    // a cancelled request is not a latency sample.
+    assertEquals(4, limiter.getLimit());
+  }
+
+  /**
+   * Run a whole limit window: at least 100 millis and 10 requests, every one of them admitted
+   * while the limit is reached.
+   */
+  private static void window(ConcurrencyLimiter limiter, boolean failed)
+      throws InterruptedException {
+    Thread.sleep(110);
+    int samples = 0;
+    while (samples < 10) {
+      final int admitted = acquireAll(limiter);
+      for (int i = 0; i < admitted; i++) {
+        limiter.release(LATENCY, failed);
+      }
+      samples += admitted;
+    }
+  }
+
+  private static int acquireAll(ConcurrencyLimiter limiter) {
+    int admitted = 0;
+    while (limiter.tryAcquire()) {
+      admitted++;
+    }
+    return admitted;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+
+import java.time.Duration;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ConnectionTimeoutHandlerTest {
+
+  private static final Duration TIMEOUT = Duration.ofMillis(100);
+
+  private EmbeddedChannel channel;
+
+  @After
+  public void tearDown() {
+    if (channel != null) {
+      channel.finishAndReleaseAll();
+    }
+  }
+
+  @Test
+  public void headerTimeoutClosesAnIncompleteRequestHead() throws InterruptedException {
+    channel = new EmbeddedChannel(new ConnectionTimeoutHandler(
+        TIMEOUT, Duration.ZERO, Duration.ZERO, Duration.ZERO));
+    // bytes read, but no request decoded yet.
+    channel.pipeline().fireChannelReadComplete();
+
+    assertClosedAfterTimeout();
+  }
+
+  @Test
+  public void bodyTimeoutClosesAStalledRequestBody() throws InterruptedException {
+    channel = new EmbeddedChannel(new ConnectionTimeoutHandler(
+        Duration.ZERO, TIMEOUT, Duration.ZERO, Duration.ZERO));
+    channel.writeInbound(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/"));
+    ReferenceCountUtil.release(channel.readInbound());
+
+    assertClosedAfterTimeout();
+  }
+
+  @Test
+  public void keepAliveTimeoutClosesAnIdleConnection() throws InterruptedException {
+    channel = new EmbeddedChannel(new ConnectionTimeoutHandler(
+        Duration.ZERO, Duration.ZERO, TIMEOUT, Duration.ZERO));
+    channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/"));
+    ReferenceCountUtil.release(channel.readInbound());
+    channel.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+        HttpResponseStatus.OK));
+    ReferenceCountUtil.release(channel.readOutbound());
+
+    assertClosedAfterTimeout();
+  }
+
+  @Test
+  public void keepAliveTimeoutWaitsForTheResponse() throws InterruptedException {
+    channel = new EmbeddedChannel(new ConnectionTimeoutHandler(
+        Duration.ZERO, Duration.ZERO, TIMEOUT, Duration.ZERO));
+    channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/"));
+    ReferenceCountUtil.release(channel.readInbound());
+
+    Thread.sleep(TIMEOUT.toMillis() * 2);
+    channel.runPendingTasks();
+    // the request is being handled, that is the request deadline job.
+    assertTrue(channel.isOpen());
+  }
+
+  private void assertClosedAfterTimeout() throws InterruptedException {
+    assertTrue(channel.isOpen());
+    Thread.sleep(TIMEOUT.toMillis() * 2);
+    channel.runPendingTasks();
+    assertFalse(channel.isOpen());
+    // silently, without any error response.
+    assertNull(channel.readOutbound());
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.junit.Assert.assertEquals;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.restnext.core.http.BodyConsumer;
+import org.restnext.core.http.Response;
+import org.restnext.route.Route;
+
+public class Http2Test {
+
+  private int port;
+  private Server server;
+  private Thread serverThread;
+  private NioEventLoopGroup clientGroup;
+  private Channel connection;
+
+  @Before
+  public void setUp() throws Exception {
+    port = freePort();
+    server = new Server(ServerInitializer.builder()
+        .bindAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))
+        .enableHttp2()
+        .route("/h2", request -> Response.ok("over h2").build())
+        .route("/h2/echo", request -> Response.ok(
+            new String(request.getContent(), StandardCharsets.UTF_8)).build())
+        .route(Route.Mapping.stream("/h2/upload", request -> new CountingConsumer()).build())
+        .build());
+    serverThread = new Thread(server::start, "http2-test-server");
+    serverThread.start();
+    awaitListening();
+    clientGroup = new NioEventLoopGroup(1);
+    // h2c with prior knowledge, the connection preface is sent right away.
+    connection = new Bootstrap()
+        .group(clientGroup)
+        .channel(NioSocketChannel.class)
+        .handler(new ChannelInitializer<Channel>() {
+          @Override
+          protected void initChannel(Channel ch) {
+            ch.pipeline().addLast(Http2FrameCodecBuilder.forClient().build(),
+                new Http2MultiplexHandler(new ChannelInboundHandlerAdapter()));
+          }
+        })
+        .connect(InetAddress.getLoopbackAddress(), port).sync().channel();
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    if (connection != null) {
+      connection.close().sync();
+    }
+    if (clientGroup != null) {
+      clientGroup.shutdownGracefully().awaitUninterruptibly();
+    }
+    if (server != null) {
+      server.stop();
+      serverThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+    // the routes are registered globally.
+    for (String uri : new String[] {"/h2", "/h2/echo", "/h2/upload"}) {
+      Route.INSTANCE.unregister(uri);
+    }
+  }
+
+  @Test
+  public void getWithPriorKnowledge() throws Exception {
+    assertEquals("200 over h2", exchange(request(HttpMethod.GET, "/h2", "")));
+  }
+
+  @Test
+  public void aggregatedBodiesOnConcurrentStreams() throws Exception {
+    CompletableFuture<String> first = send(request(HttpMethod.POST, "/h2/echo", "first body"));
+    CompletableFuture<String> second = send(request(HttpMethod.POST, "/h2/echo", "second body"));
+
+    assertEquals("200 first body", first.get(10, TimeUnit.SECONDS));
+    assertEquals("200 second body", second.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void streamedBodyOnAStream() throws Exception {
+    assertEquals("200 11 bytes", exchange(request(HttpMethod.POST, "/h2/upload", "stream body")));
+  }
+
+  private String exchange(FullHttpRequest request) throws Exception {
+    return send(request).get(10, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Send the request on a new stream of the connection.
+   */
+  private CompletableFuture<String> send(FullHttpRequest request) throws InterruptedException {
+    CompletableFuture<String> result = new CompletableFuture<>();
+    Http2StreamChannel stream = new Http2StreamChannelBootstrap(connection)
+        .handler(new ChannelInitializer<Http2StreamChannel>() {
+          @Override
+          protected void initChannel(Http2StreamChannel ch) {
+            ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(false),
+                new HttpObjectAggregator(1024 * 1024),
+                new SimpleChannelInboundHandler<FullHttpResponse>() {
+                  @Override
+                  protected void channelRead0(ChannelHandlerContext ctx,
+                                              FullHttpResponse response) {
+                    result.complete(response.status().code() + " "
+                        + response.content().toString(StandardCharsets.UTF_8));
+                  }
+
+                  @Override
+                  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                    result.completeExceptionally(cause);
+                    ctx.close();
+                  }
+                });
+          }
+        })
+        .open().sync().getNow();
+    stream.writeAndFlush(request);
+    return result;
+  }
+
+  private FullHttpRequest request(HttpMethod method, String uri, String content) {
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri,
+        Unpooled.copiedBuffer(content, StandardCharsets.UTF_8));
+    request.headers().set(HttpHeaderNames.HOST, "127.0.0.1:" + port);
+    HttpUtil.setContentLength(request, request.content().readableBytes());
+    return request;
+  }
+
+  private void awaitListening() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (System.nanoTime() < deadline) {
+      try (Socket ignore = new Socket(InetAddress.getLoopbackAddress(), port)) {
+        return;
+      } catch (IOException notYet) {
+        Thread.sleep(50);
+      }
+    }
+    throw new IllegalStateException("The server is not listening on " + port);
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket tcp = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      return tcp.getLocalPort();
+    }
+  }
+
+  private static final class CountingConsumer implements BodyConsumer {
+
+    private int bytes;
+
+    @Override
+    public void onChunk(ByteBuffer chunk) {
+      bytes += chunk.remaining();
+    }
+
+    @Override
+    public Response onComplete() {
+      return Response.ok(bytes + " bytes").build();
+    }
+
+    @Override
+    public void onError(Throwable cause) {
+      // the response is not written.
+    }
+  }
+}
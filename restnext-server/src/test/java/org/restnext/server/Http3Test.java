@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.incubator.codec.http3.DefaultHttp3HeadersFrame;
+import io.netty.incubator.codec.http3.Http3;
+import io.netty.incubator.codec.http3.Http3ClientConnectionHandler;
+import io.netty.incubator.codec.http3.Http3DataFrame;
+import io.netty.incubator.codec.http3.Http3HeadersFrame;
+import io.netty.incubator.codec.http3.Http3RequestStreamInboundHandler;
+import io.netty.incubator.codec.quic.Quic;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.incubator.codec.quic.QuicSslContextBuilder;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.restnext.core.http.Response;
+
+public class Http3Test {
+
+  private int port;
+  private Server server;
+  private Thread serverThread;
+  private NioEventLoopGroup clientGroup;
+
+  @Before
+  public void setUp() throws Exception {
+    assumeTrue("no native quic library", Quic.isAvailable());
+    port = freePort();
+    server = new Server(ServerInitializer.builder()
+        .bindAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))
+        .enableHttp3()
+        .route("/http3", request -> Response.ok("over quic").build())
+        .build());
+    serverThread = new Thread(server::start, "http3-test-server");
+    serverThread.start();
+    awaitListening();
+    clientGroup = new NioEventLoopGroup(1);
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    if (clientGroup != null) {
+      clientGroup.shutdownGracefully().awaitUninterruptibly();
+    }
+    if (server != null) {
+      server.stop();
+      serverThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+  }
+
+  @Test
+  public void tcpResponsesAdvertiseTheHttp3Listener() throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(
+        "http://127.0.0.1:" + port + "/ping").openConnection();
+    try {
+      assertEquals(200, connection.getResponseCode());
+      assertEquals("h3=\":" + port + "\"; ma=86400", connection.getHeaderField("alt-svc"));
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Test
+  public void getOverQuic() throws Exception {
+    ChannelHandler codec = Http3.newQuicClientCodecBuilder()
+        .sslContext(QuicSslContextBuilder.forClient()
+            .trustManager(InsecureTrustManagerFactory.INSTANCE)
+            .applicationProtocols(Http3.supportedApplicationProtocols())
+            .build())
+        .maxIdleTimeout(5, TimeUnit.SECONDS)
+        .initialMaxData(1024 * 1024)
+        .initialMaxStreamDataBidirectionalLocal(1024 * 1024)
+        .build();
+    Channel channel = new Bootstrap()
+        .group(clientGroup)
+        .channel(NioDatagramChannel.class)
+        .handler(codec)
+        .bind(0).sync().channel();
+    QuicChannel quic = QuicChannel.newBootstrap(channel)
+        .handler(new Http3ClientConnectionHandler())
+        .remoteAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))
+        .connect().get(10, TimeUnit.SECONDS);
+
+    ResponseRecorder response = new ResponseRecorder();
+    QuicStreamChannel stream = Http3.newRequestStream(quic, response).sync().getNow();
+    Http3HeadersFrame request = new DefaultHttp3HeadersFrame();
+    request.headers().method("GET").path("/http3").authority("127.0.0.1").scheme("https");
+    // the request end is told by a fin of its own, after the headers frame.
+    stream.writeAndFlush(request).addListener(QuicStreamChannel.SHUTDOWN_OUTPUT);
+
+    assertEquals("200 over quic", response.result.get(10, TimeUnit.SECONDS));
+    quic.close().sync();
+  }
+
+  private void awaitListening() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (System.nanoTime() < deadline) {
+      try (Socket ignore = new Socket(InetAddress.getLoopbackAddress(), port)) {
+        return;
+      } catch (IOException notYet) {
+        Thread.sleep(50);
+      }
+    }
+    throw new IllegalStateException("The server is not listening on " + port);
+  }
+
+  private static int freePort() throws IOException {
+    while (true) {
+      try (ServerSocket tcp = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+        // the udp port of the http/3 listener is the tcp one.
+        try (DatagramSocket ignore = new DatagramSocket(tcp.getLocalPort(),
+            InetAddress.getLoopbackAddress())) {
+          return tcp.getLocalPort();
+        } catch (IOException inUse) {
+          // try another one.
+        }
+      }
+    }
+  }
+
+  private static final class ResponseRecorder extends Http3RequestStreamInboundHandler {
+
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+    private final StringBuilder content = new StringBuilder();
+    private CharSequence status;
+
+    @Override
+    protected void channelRead(ChannelHandlerContext ctx, Http3HeadersFrame frame,
+                               boolean isLast) {
+      status = frame.headers().status();
+      complete(ctx, isLast);
+    }
+
+    @Override
+    protected void channelRead(ChannelHandlerContext ctx, Http3DataFrame frame, boolean isLast) {
+      ByteBuf buf = frame.content();
+      content.append(buf.toString(StandardCharsets.UTF_8));
+      ReferenceCountUtil.release(frame);
+      complete(ctx, isLast);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      result.completeExceptionally(cause);
+      ctx.close();
+    }
+
+    private void complete(ChannelHandlerContext ctx, boolean isLast) {
+      if (isLast) {
+        result.complete(status + " " + content);
+        ctx.close();
+      }
+    }
+  }
+}
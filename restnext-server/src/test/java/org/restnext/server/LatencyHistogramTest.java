@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  private final LatencyHistogram histogram = new LatencyHistogram();
+
+  @Test
+  public void durationsAreCountedInPowerOfTwoMicrosecondBuckets() {
+    histogram.record(-1);
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(1));
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(2));
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+    histogram.record(TimeUnit.DAYS.toNanos(1));
+
+    long[] counts = histogram.getCounts();
+    assertEquals(2, counts[0]);
+    assertEquals(1, counts[1]);
+    assertEquals(1, counts[2]);
+    // 1000 micros, up to 1024.
+    assertEquals(1, counts[10]);
+    // every longer duration is in the last bucket.
+    assertEquals(1, counts[counts.length - 1]);
+    assertEquals(6, histogram.getCount());
+  }
+
+  @Test
+  public void bucketBoundsArePowersOfTwoMicroseconds() {
+    assertEquals(Duration.ofNanos(1000), histogram.getBound(0));
+    assertEquals(Duration.ofNanos(1024_000), histogram.getBound(10));
+  }
+
+  @Test
+  public void percentileIsTheBoundOfItsBucket() {
+    assertEquals(Duration.ZERO, histogram.getPercentile(99));
+
+    for (int i = 0; i < 99; i++) {
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(1));
+    }
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+
+    assertEquals(histogram.getBound(0), histogram.getPercentile(0));
+    assertEquals(histogram.getBound(0), histogram.getPercentile(99));
+    assertEquals(histogram.getBound(10), histogram.getPercentile(100));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void boundOfAnUnknownBucket() {
+    histogram.getBound(histogram.getCounts().length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void percentileAboveOneHundred() {
+    histogram.getPercentile(101);
+  }
+}
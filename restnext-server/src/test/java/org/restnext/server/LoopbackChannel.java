@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * An embedded channel with loopback socket addresses, the request base uri is built from the
+ * channel local address.
+ */
+class LoopbackChannel extends EmbeddedChannel {
+
+  private static final SocketAddress LOCAL = new InetSocketAddress(
+      InetAddress.getLoopbackAddress(), 8080);
+  private static final SocketAddress REMOTE = new InetSocketAddress(
+      InetAddress.getLoopbackAddress(), 50000);
+
+  LoopbackChannel(ChannelHandler... handlers) {
+    super(handlers);
+  }
+
+  @Override
+  protected SocketAddress localAddress0() {
+    return LOCAL;
+  }
+
+  @Override
+  protected SocketAddress remoteAddress0() {
+    return REMOTE;
+  }
+}
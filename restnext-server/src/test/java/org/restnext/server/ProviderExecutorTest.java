@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+public class ProviderExecutorTest {
+
+  private final List<Runnable> running = new ArrayList<>();
+  private boolean shutdown;
+
+  @Test
+  public void queuedProviderRejectedByTheExecutorIsCompletedExceptionally()
+      throws InterruptedException {
+    ProviderExecutor providers = new ProviderExecutor(command -> {
+      if (shutdown) {
+        throw new RejectedExecutionException("shutdown");
+      }
+      running.add(command);
+    }, 1, 10, Duration.ofSeconds(1));
+    Task first = new Task();
+    Task queued = new Task();
+    providers.execute(first);
+    providers.execute(queued);
+    assertEquals(1, providers.getQueuedCount());
+
+    // the queued provider is drained by the completion of the running one.
+    shutdown = true;
+    running.get(0).run();
+
+    assertTrue(first.isDone());
+    assertTrue(queued.isCompletedExceptionally());
+    assertEquals(0, providers.getQueuedCount());
+    assertEquals(0, providers.getActiveCount());
+    assertEquals(1, providers.getRejectedCount());
+    try {
+      queued.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+  }
+
+  @Test
+  public void rejectedProviderIsNotThrownIntoTheCaller() {
+    ProviderExecutor providers = new ProviderExecutor(command -> {
+      throw new RejectedExecutionException("shutdown");
+    }, 1, 10, Duration.ofSeconds(1));
+    Task task = new Task();
+    providers.execute(task);
+
+    assertTrue(task.isCompletedExceptionally());
+    assertFalse(task.ran);
+    assertEquals(0, providers.getActiveCount());
+  }
+
+  private static final class Task extends CompletableFuture<Void> implements Runnable {
+
+    private boolean ran;
+
+    @Override
+    public void run() {
+      ran = true;
+      complete(null);
+    }
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.restnext.core.http.MediaType;
+import org.restnext.core.http.Request;
+import org.restnext.core.http.Response;
+import org.restnext.route.Route;
+import org.restnext.security.Security;
+
+public class RequestHeadHandlerTest {
+
+  // the security providers run by the test, when it runs the queued tasks.
+  private final Queue<Runnable> securityTasks = new ArrayDeque<>();
+  private final Executor securityExecutor = securityTasks::offer;
+  private final AtomicInteger securityChecks = new AtomicInteger();
+  private final CompletableFuture<Response> slow = new CompletableFuture<>();
+  private EmbeddedChannel channel;
+
+  @Before
+  public void setUp() {
+    Route.INSTANCE.register(Route.Mapping.uri("/ok", request -> Response.ok("ok").build())
+        .build());
+    Route.INSTANCE.register(Route.Mapping.uri("/get", request -> Response.ok("ok").build())
+        .methods(Request.Method.GET).build());
+    Route.INSTANCE.register(Route.Mapping.uri("/json", request -> Response.ok("ok").build())
+        .medias(MediaType.JSON).build());
+    Route.INSTANCE.register(Route.Mapping.uri("/small", request -> Response.ok("ok").build())
+        .maxContentLength(4).build());
+    Route.INSTANCE.register(Route.Mapping.async("/slow", request -> slow).build());
+    Security.INSTANCE.register(Security.Mapping.uri("/ok", request -> {
+      securityChecks.incrementAndGet();
+      return true;
+    }).build());
+    Security.INSTANCE.register(Security.Mapping.uri("/get", request -> {
+      securityChecks.incrementAndGet();
+      return request.getHeader("x-denied") == null;
+    }).build());
+  }
+
+  @After
+  public void tearDown() {
+    if (channel != null) {
+      channel.finishAndReleaseAll();
+    }
+    for (String uri : new String[] {"/ok", "/get", "/json", "/small", "/slow"}) {
+      Route.INSTANCE.unregister(uri);
+    }
+    Security.INSTANCE.unregister("/ok");
+    Security.INSTANCE.unregister("/get");
+  }
+
+  @Test
+  public void unauthorizedRequestIsRejectedBeforeItsBody() {
+    channel = newChannel(null);
+    final HttpRequest head = chunked(HttpMethod.GET, "/get");
+    head.headers().set("X-Denied", "true");
+
+    assertRejectedBeforeItsBody(head, HttpResponseStatus.UNAUTHORIZED);
+  }
+
+  @Test
+  public void unknownUriIsRejectedBeforeItsBody() {
+    channel = newChannel(null);
+
+    assertRejectedBeforeItsBody(chunked(HttpMethod.POST, "/missing"),
+        HttpResponseStatus.NOT_FOUND);
+  }
+
+  @Test
+  public void unsupportedMethodIsRejectedBeforeItsBody() {
+    channel = newChannel(null);
+
+    assertRejectedBeforeItsBody(chunked(HttpMethod.POST, "/get"),
+        HttpResponseStatus.METHOD_NOT_ALLOWED);
+  }
+
+  @Test
+  public void unsupportedMediaTypeIsRejectedBeforeItsBody() {
+    channel = newChannel(null);
+    final HttpRequest head = chunked(HttpMethod.POST, "/json");
+    head.headers().set(HttpHeaderNames.ACCEPT, "text/plain");
+
+    assertRejectedBeforeItsBody(head, HttpResponseStatus.UNSUPPORTED_MEDIA_TYPE);
+  }
+
+  @Test
+  public void unsupportedExpectationIsRejectedBeforeItsBody() {
+    channel = newChannel(null);
+    final HttpRequest head = chunked(HttpMethod.POST, "/ok");
+    head.headers().set(HttpHeaderNames.EXPECT, "something");
+
+    assertRejectedBeforeItsBody(head, HttpResponseStatus.EXPECTATION_FAILED);
+  }
+
+  @Test
+  public void securityProviderRunsOnTheSecurityExecutor() {
+    channel = newChannel(securityExecutor);
+    channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/ok",
+        content("body")));
+    // the reads are paused until the request is authorized.
+    assertFalse(channel.config().isAutoRead());
+    assertEquals(0, securityChecks.get());
+    assertNull(channel.readOutbound());
+
+    runSecurityTasks();
+    assertEquals(1, securityChecks.get());
+    assertTrue(channel.config().isAutoRead());
+    assertStatus(HttpResponseStatus.OK, channel.readOutbound());
+  }
+
+  @Test
+  public void continueIsSentOnlyOnceTheRequestIsAccepted() {
+    channel = newChannel(securityExecutor);
+    final HttpRequest head = expectingContinue("/ok");
+    channel.writeInbound(head);
+    assertNull(channel.readOutbound());
+
+    runSecurityTasks();
+    assertStatus(HttpResponseStatus.CONTINUE, channel.readOutbound());
+    channel.writeInbound(new DefaultLastHttpContent(content("body")));
+    assertStatus(HttpResponseStatus.OK, channel.readOutbound());
+    assertTrue(channel.isOpen());
+  }
+
+  @Test
+  public void continueIsNotSentToARejectedRequest() {
+    channel = newChannel(securityExecutor);
+    final HttpRequest head = expectingContinue("/get");
+    head.headers().set("X-Denied", "true");
+    channel.writeInbound(head);
+
+    runSecurityTasks();
+    // the final status instead, the client does not send the body.
+    assertStatus(HttpResponseStatus.UNAUTHORIZED, channel.readOutbound());
+    assertNull(channel.readOutbound());
+    assertFalse(channel.isOpen());
+  }
+
+  @Test
+  public void bodyOverTheRouteMaximumContentLengthIsRejectedAsItArrives() {
+    channel = newChannel(null);
+    channel.writeInbound(chunked(HttpMethod.POST, "/small"));
+    channel.writeInbound(new DefaultHttpContent(content("123")));
+    assertNull(channel.readOutbound());
+
+    final HttpContent over = new DefaultHttpContent(content("45"));
+    channel.writeInbound(over);
+    assertEquals(0, over.refCnt());
+    assertStatus(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, channel.readOutbound());
+    assertFalse(channel.isOpen());
+  }
+
+  @Test
+  public void pipelinedRequestsAreAnsweredInOrder() {
+    channel = newChannel(securityExecutor);
+    channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET,
+        "/slow"));
+    // the head of the next request waits for its authorization.
+    channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/ok"));
+    runSecurityTasks();
+    assertNull(channel.readOutbound());
+
+    slow.complete(Response.ok("slow").build());
+    channel.runPendingTasks();
+    assertResponse("slow", channel.readOutbound());
+    assertResponse("ok", channel.readOutbound());
+  }
+
+  private EmbeddedChannel newChannel(Executor securityExecutor) {
+    return new LoopbackChannel(
+        new RequestHeadHandler(Integer.MAX_VALUE, null, securityExecutor, false),
+        new RouteAggregator(),
+        new ServerHandler(null, Collections.emptyMap(), null, Collections.emptyMap(), null, null,
+            false, null));
+  }
+
+  private void runSecurityTasks() {
+    Runnable task;
+    while ((task = securityTasks.poll()) != null) {
+      task.run();
+    }
+    channel.runPendingTasks();
+  }
+
+  private void assertRejectedBeforeItsBody(HttpRequest head, HttpResponseStatus status) {
+    channel.writeInbound(head);
+    assertStatus(status, channel.readOutbound());
+
+    // the body is discarded as it arrives.
+    final HttpContent chunk = new DefaultHttpContent(content("chunk"));
+    final HttpContent last = new DefaultLastHttpContent(content("last"));
+    channel.writeInbound(chunk);
+    channel.writeInbound(last);
+    assertEquals(0, chunk.refCnt());
+    assertEquals(0, last.refCnt());
+    assertNull(channel.readOutbound());
+
+    // the connection is kept for the next request.
+    assertTrue(channel.isOpen());
+    channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST,
+        "/ok", content("body")));
+    assertStatus(HttpResponseStatus.OK, channel.readOutbound());
+  }
+
+  private static HttpRequest chunked(HttpMethod method, String uri) {
+    final HttpRequest head = new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, uri);
+    HttpUtil.setTransferEncodingChunked(head, true);
+    return head;
+  }
+
+  private static HttpRequest expectingContinue(String uri) {
+    final HttpRequest head = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    HttpUtil.setContentLength(head, 4);
+    HttpUtil.set100ContinueExpected(head, true);
+    return head;
+  }
+
+  private static ByteBuf content(String content) {
+    return Unpooled.copiedBuffer(content, StandardCharsets.UTF_8);
+  }
+
+  private static void assertStatus(HttpResponseStatus status, FullHttpResponse response) {
+    try {
+      assertEquals(status, response.status());
+    } finally {
+      response.release();
+    }
+  }
+
+  private static void assertResponse(String content, FullHttpResponse response) {
+    try {
+      assertEquals(HttpResponseStatus.OK, response.status());
+      assertEquals(content, response.content().toString(StandardCharsets.UTF_8));
+    } finally {
+      response.release();
+    }
+  }
+}
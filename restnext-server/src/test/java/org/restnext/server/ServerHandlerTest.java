@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.restnext.core.http.Response;
+import org.restnext.route.Route;
+
+public class ServerHandlerTest {
+
+  private static final String NOT_FOUND = "statusCode: 404\r\nstatusMessage: Not Found\r\n"
+      + "statusFamily: CLIENT_ERROR\r\nerrorMessage: HTTP 404 Not Found CLIENT_ERROR";
+  private static final String BAD_REQUEST = "statusCode: 400\r\nstatusMessage: Bad Request\r\n"
+      + "statusFamily: CLIENT_ERROR\r\nerrorMessage: HTTP 400 Bad Request CLIENT_ERROR";
+  private static final String INTERNAL_SERVER_ERROR = "statusCode: 500\r\n"
+      + "statusMessage: Internal Server Error\r\nstatusFamily: SERVER_ERROR\r\n"
+      + "errorMessage: HTTP 500 Internal Server Error SERVER_ERROR";
+
+  private EmbeddedChannel channel;
+
+  @Before
+  public void setUp() {
+    Route.INSTANCE.register(Route.Mapping.uri("/ok", request -> Response.ok("ok").build())
+        .build());
+    Route.INSTANCE.register(Route.Mapping.uri("/invalid", request -> {
+      throw new ServerException("Invalid secret parameter", null, Response.Status.BAD_REQUEST);
+    }).build());
+    Route.INSTANCE.register(Route.Mapping.uri("/failing", request -> {
+      throw new IllegalStateException("Secret failure");
+    }).build());
+  }
+
+  @After
+  public void tearDown() {
+    channel.finishAndReleaseAll();
+    Route.INSTANCE.unregister("/ok");
+    Route.INSTANCE.unregister("/invalid");
+    Route.INSTANCE.unregister("/failing");
+  }
+
+  @Test
+  public void connectionIsKeptAfterAClientError() {
+    channel = newChannel(false);
+    channel.writeInbound(request("/invalid"));
+
+    // without the error message, it may describe the request.
+    assertError(HttpResponseStatus.BAD_REQUEST, BAD_REQUEST, true, channel.readOutbound());
+    assertTrue(channel.isOpen());
+    channel.writeInbound(request("/ok"));
+    assertOk(channel.readOutbound());
+  }
+
+  @Test
+  public void connectionIsClosedAfterAServerError() {
+    channel = newChannel(false);
+    channel.writeInbound(request("/failing"));
+
+    assertError(HttpResponseStatus.INTERNAL_SERVER_ERROR, INTERNAL_SERVER_ERROR, false,
+        channel.readOutbound());
+    assertFalse(channel.isOpen());
+  }
+
+  @Test
+  public void rejectedRequestIsAnsweredWithThePreallocatedBody() {
+    channel = newChannel(false);
+    for (int i = 0; i < 2; i++) {
+      channel.pipeline().fireUserEventTriggered(
+          new RejectedRequest(ServerException.of(Response.Status.NOT_FOUND)));
+      // fired by the head handler at the end of the read.
+      channel.pipeline().fireChannelReadComplete();
+
+      assertError(HttpResponseStatus.NOT_FOUND, NOT_FOUND, true, channel.readOutbound());
+      assertTrue(channel.isOpen());
+    }
+  }
+
+  @Test
+  public void debugErrorsDescribeTheError() {
+    channel = newChannel(true);
+    channel.writeInbound(request("/invalid"));
+
+    final FullHttpResponse response = channel.readOutbound();
+    try {
+      assertEquals(HttpResponseStatus.BAD_REQUEST, response.status());
+      final String content = response.content().toString(StandardCharsets.UTF_8);
+      assertTrue(content.contains("errorMessage: Invalid secret parameter"));
+      assertTrue(content.contains("stackTraceMessage: "));
+    } finally {
+      response.release();
+    }
+  }
+
+  private static EmbeddedChannel newChannel(boolean debugErrors) {
+    return new LoopbackChannel(new ServerHandler(null, Collections.emptyMap(), null,
+        Collections.emptyMap(), null, null, debugErrors, null));
+  }
+
+  private static DefaultFullHttpRequest request(String uri) {
+    return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+  }
+
+  private static void assertError(HttpResponseStatus status, String content, boolean keepAlive,
+                                  FullHttpResponse response) {
+    try {
+      assertEquals(status, response.status());
+      assertEquals(content, response.content().toString(StandardCharsets.UTF_8));
+      assertEquals(keepAlive, HttpUtil.isKeepAlive(response));
+    } finally {
+      response.release();
+    }
+  }
+
+  private static void assertOk(FullHttpResponse response) {
+    try {
+      assertEquals(HttpResponseStatus.OK, response.status());
+      assertEquals("ok", response.content().toString(StandardCharsets.UTF_8));
+    } finally {
+      response.release();
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.restnext.core.http.BodyConsumer;
+import org.restnext.core.http.Response;
+import org.restnext.route.Route;
+
+public class StreamingRouteTest {
+
+  private final RecordingConsumer consumer = new RecordingConsumer();
+  // the reads requested by the pipeline, that is the next chunk asked to the connection.
+  private int reads;
+  private EmbeddedChannel channel;
+
+  @Before
+  public void setUp() {
+    Route.INSTANCE.register(Route.Mapping.stream("/upload", request -> consumer).build());
+    channel = new LoopbackChannel(
+        new ChannelOutboundHandlerAdapter() {
+          @Override
+          public void read(ChannelHandlerContext ctx) throws Exception {
+            reads++;
+            super.read(ctx);
+          }
+        },
+        new RequestHeadHandler(Integer.MAX_VALUE, null, null, false),
+        new RouteAggregator(),
+        new ServerHandler(null, Collections.emptyMap(), null, Collections.emptyMap(), null, null,
+            false, null));
+  }
+
+  @After
+  public void tearDown() {
+    channel.finishAndReleaseAll();
+    Route.INSTANCE.unregister("/upload");
+  }
+
+  @Test
+  public void nextChunkIsReadOnlyOnceThePreviousOneWasConsumed() {
+    final HttpRequest head = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST,
+        "/upload");
+    HttpUtil.setTransferEncodingChunked(head, true);
+    channel.writeInbound(head);
+    // backpressure, the chunks are read one by one.
+    assertFalse(channel.config().isAutoRead());
+
+    final int headReads = reads;
+    channel.writeInbound(new DefaultHttpContent(content("first")));
+    // not asked while the consumer was running.
+    assertEquals(headReads, consumer.readsOnChunk.get(0).intValue());
+    assertEquals(headReads + 1, reads);
+
+    channel.writeInbound(new DefaultLastHttpContent(content("last")));
+    assertEquals(Arrays.asList("first", "last"), consumer.chunks);
+    assertTrue(consumer.completed);
+    assertTrue(channel.config().isAutoRead());
+    assertOk(channel.readOutbound());
+  }
+
+  @Test
+  public void wholeHttp2RequestIsSplitIntoAHeadAndItsBody() {
+    // an http/2 request received at once, as the stream codec hands it.
+    channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST,
+        "/upload", content("whole")));
+
+    assertEquals(Collections.singletonList("whole"), consumer.chunks);
+    assertTrue(consumer.completed);
+    assertTrue(channel.config().isAutoRead());
+    assertOk(channel.readOutbound());
+  }
+
+  @Test
+  public void consumerIsToldWhenTheConnectionIsClosedMidBody() {
+    final HttpRequest head = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST,
+        "/upload");
+    HttpUtil.setTransferEncodingChunked(head, true);
+    channel.writeInbound(head);
+    channel.writeInbound(new DefaultHttpContent(content("first")));
+
+    channel.close();
+
+    assertTrue(consumer.error instanceof ClosedChannelException);
+    assertFalse(consumer.completed);
+    assertTrue(channel.config().isAutoRead());
+    assertNull(channel.readOutbound());
+  }
+
+  private static ByteBuf content(String content) {
+    return Unpooled.copiedBuffer(content, StandardCharsets.UTF_8);
+  }
+
+  private static void assertOk(FullHttpResponse response) {
+    try {
+      assertEquals(HttpResponseStatus.OK, response.status());
+      assertEquals("consumed", response.content().toString(StandardCharsets.UTF_8));
+    } finally {
+      response.release();
+    }
+  }
+
+  private final class RecordingConsumer implements BodyConsumer {
+
+    private final List<String> chunks = new ArrayList<>();
+    private final List<Integer> readsOnChunk = new ArrayList<>();
+    private boolean completed;
+    private Throwable error;
+
+    @Override
+    public void onChunk(ByteBuffer chunk) {
+      readsOnChunk.add(reads);
+      chunks.add(StandardCharsets.UTF_8.decode(chunk).toString());
+    }
+
+    @Override
+    public Response onComplete() {
+      completed = true;
+      return Response.ok("consumed").build();
+    }
+
+    @Override
+    public void onError(Throwable cause) {
+      error = cause;
+    }
+  }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.util;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single watch service and daemon thread shared by every scanned directory.
+ *
+ * <p>The file system events of the same file are coalesced until no event was seen for the
+ * quiet period of its registration and its size and modification time are stable, then the
+ * listener is notified only once.
+ */
+public enum DirectoryWatcher {
+
+  INSTANCE;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+  private static final Duration STOP_TIMEOUT = Duration.ofSeconds(5);
+
+  // the registrations of the current watch service generation, a released generation keeps its
+  // own map, so its thread never touches the registrations of the next one.
+  private Map<WatchKey, List<Registration>> registrations = new ConcurrentHashMap<>();
+
+  private WatchService watchService;
+  private Thread thread;
+
+  /**
+   * Register a listener to be notified about the changes of the directory files matching the
+   * provided glob filter.
+   *
+   * @param directory   the directory to watch
+   * @param glob        the glob filter
+   * @param quietPeriod the period without events a changed file must wait before notification
+   * @param listener    the listener
+   * @throws IOException if the directory could not be registered
+   */
+  public synchronized void register(final Path directory, final String glob,
+                                    final Duration quietPeriod, final Listener listener)
+      throws IOException {
+    Objects.requireNonNull(directory, "directory");
+    Objects.requireNonNull(quietPeriod, "quietPeriod");
+    Objects.requireNonNull(listener, "listener");
+
+    start();
+
+    WatchKey key = directory.register(watchService,
+        StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY,
+        StandardWatchEventKinds.ENTRY_DELETE);
+
+    registrations.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>())
+        .add(new Registration(directory, glob, quietPeriod, listener));
+
+    LOGGER.info("Watching directory for changes - {}", directory);
+  }
+
+  /**
+   * Unregister a listener previously registered for the directory, the last registration
+   * removed releases the watch service and its thread.
+   *
+   * @param directory the watched directory
+   * @param listener  the listener
+   */
+  public void unregister(final Path directory, final Listener listener) {
+    final Thread stopped;
+    synchronized (this) {
+      Iterator<Map.Entry<WatchKey, List<Registration>>> iterator =
+          registrations.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<WatchKey, List<Registration>> entry = iterator.next();
+        for (Registration registration : entry.getValue()) {
+          if (registration.listener == listener && registration.directory.equals(directory)) {
+            registration.released = true;
+            entry.getValue().remove(registration);
+          }
+        }
+        if (entry.getValue().isEmpty()) {
+          entry.getKey().cancel();
+          iterator.remove();
+          LOGGER.info("Stopped watching directory for changes - {}", directory);
+        }
+      }
+      stopped = registrations.isEmpty() ? release() : null;
+    }
+    join(stopped);
+  }
+
+  /**
+   * Stop watching every registered directory and release the watch service and its thread,
+   * waiting a bounded time for a listener notification in progress to finish.
+   */
+  public void stop() {
+    final Thread stopped;
+    synchronized (this) {
+      registrations.values().forEach(list -> list.forEach(registration ->
+          registration.released = true));
+      registrations.clear();
+      stopped = release();
+    }
+    join(stopped);
+  }
+
+  public synchronized boolean isRunning() {
+    return thread != null && thread.isAlive();
+  }
+
+  // must be called holding the lock, returns the released thread to join.
+  private Thread release() {
+    if (watchService == null) {
+      return null;
+    }
+    try {
+      watchService.close();
+    } catch (IOException e) {
+      LOGGER.warn("Could not close the directory watch service", e);
+    }
+    final Thread stopped = thread;
+    watchService = null;
+    thread = null;
+    return stopped;
+  }
+
+  // joined without the lock, the watcher thread may be waiting for it.
+  private static void join(final Thread stopped) {
+    // a listener may unregister itself from the watcher thread.
+    if (stopped == null || stopped == Thread.currentThread()) {
+      return;
+    }
+    try {
+      stopped.join(STOP_TIMEOUT.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (stopped.isAlive()) {
+      LOGGER.warn("The directory watcher thread did not stop in {} ms", STOP_TIMEOUT.toMillis());
+    }
+  }
+
+  private void start() throws IOException {
+    if (watchService == null) {
+      final WatchService ws = FileSystems.getDefault().newWatchService();
+      final Map<WatchKey, List<Registration>> generation = new ConcurrentHashMap<>();
+      watchService = ws;
+      registrations = generation;
+      thread = new Thread(() -> watch(ws, generation), "directory-watcher");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  private void watch(final WatchService ws,
+                     final Map<WatchKey, List<Registration>> registrations) {
+    try {
+      while (true) {
+        // block until something happens, unless there are files waiting for their quiet period.
+        long timeout = nextTimeout(registrations);
+        WatchKey key = timeout < 0 ? ws.take() : ws.poll(timeout, TimeUnit.MILLISECONDS);
+
+        if (key != null) {
+          // looked up under the lock, the key may be signalled before register() has added
+          // its registration.
+          final List<Registration> keyRegistrations;
+          synchronized (this) {
+            keyRegistrations = registrations.get(key);
+          }
+          for (WatchEvent<?> we : key.pollEvents()) {
+            if (keyRegistrations != null) {
+              keyRegistrations.forEach(registration -> registration.offer(we));
+            }
+          }
+          if (!key.reset()) {
+            registrations.remove(key);
+          }
+        }
+
+        for (List<Registration> list : registrations.values()) {
+          for (Registration registration : list) {
+            // a released generation must not notify anymore, a listener may have released it
+            // and a new generation may be already running.
+            if (ws != currentWatchService()) {
+              LOGGER.debug("Directory watcher stopped");
+              return;
+            }
+            registration.process();
+          }
+        }
+      }
+    } catch (ClosedWatchServiceException | InterruptedException ignore) {
+      LOGGER.debug("Directory watcher stopped");
+    }
+  }
+
+  private synchronized WatchService currentWatchService() {
+    return watchService;
+  }
+
+  private static long nextTimeout(final Map<WatchKey, List<Registration>> registrations) {
+    long timeout = -1;
+    for (List<Registration> list : registrations.values()) {
+      for (Registration registration : list) {
+        if (registration.hasPendingFiles()
+            && (timeout < 0 || registration.quietPeriodMillis < timeout)) {
+          timeout = registration.quietPeriodMillis;
+        }
+      }
+    }
+    return timeout;
+  }
+
+  /**
+   * Listener of the directory file changes, always notified by the watcher thread.
+   */
+  public interface Listener {
+
+    /**
+     * The file was created or modified and it is stable.
+     *
+     * @param file the file
+     */
+    void onChange(Path file);
+
+    /**
+     * The file was deleted.
+     *
+     * @param file the file
+     */
+    void onDelete(Path file);
+
+    /**
+     * Some events were lost, so the whole directory state must be resynchronized.
+     *
+     * @param directory the directory
+     */
+    void onOverflow(Path directory);
+  }
+
+  private static final class Registration {
+
+    private final Path directory;
+    private final PathMatcher matcher;
+    private final long quietPeriodMillis;
+    private final Listener listener;
+    // only accessed by the watcher thread.
+    private final Map<Path, PendingFile> pendingFiles = new HashMap<>();
+    private boolean overflow;
+    // set by the unregistering thread, a listener may unregister itself while notified.
+    private volatile boolean released;
+
+    Registration(Path directory, String glob, Duration quietPeriod, Listener listener) {
+      this.directory = directory;
+      this.matcher = directory.getFileSystem().getPathMatcher("glob:"
+          + (glob == null || glob.trim().isEmpty() ? FileUtils.DEFAULT_GLOB : glob));
+      this.quietPeriodMillis = quietPeriod.toMillis();
+      this.listener = listener;
+    }
+
+    boolean hasPendingFiles() {
+      return !pendingFiles.isEmpty();
+    }
+
+    void offer(WatchEvent<?> we) {
+      if (StandardWatchEventKinds.OVERFLOW.equals(we.kind())) {
+        overflow = true;
+        return;
+      }
+      Path filename = (Path) we.context();
+      if (matcher.matches(filename)) {
+        Path file = directory.resolve(filename);
+        pendingFiles.put(file, new PendingFile(file));
+      }
+    }
+
+    void process() {
+      if (overflow) {
+        overflow = false;
+        pendingFiles.clear();
+        LOGGER.warn("Directory events overflow, resynchronizing - {}", directory);
+        notify(() -> listener.onOverflow(directory));
+        return;
+      }
+
+      final long now = System.nanoTime();
+      Iterator<Map.Entry<Path, PendingFile>> iterator = pendingFiles.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<Path, PendingFile> entry = iterator.next();
+        Path file = entry.getKey();
+        PendingFile pendingFile = entry.getValue();
+
+        if (TimeUnit.NANOSECONDS.toMillis(now - pendingFile.timestamp) < quietPeriodMillis) {
+          continue;
+        }
+
+        // the file is still being written, wait for another quiet period.
+        PendingFile current = new PendingFile(file);
+        if (current.exists && !current.isSameState(pendingFile)) {
+          entry.setValue(current);
+          continue;
+        }
+
+        iterator.remove();
+        if (current.exists) {
+          notify(() -> listener.onChange(file));
+        } else {
+          notify(() -> listener.onDelete(file));
+        }
+      }
+    }
+
+    private void notify(Runnable notification) {
+      if (released) {
+        return;
+      }
+      try {
+        notification.run();
+      } catch (RuntimeException e) {
+        LOGGER.error("Directory listener failed to handle a change of {}", directory, e);
+      }
+    }
+  }
+
+  private static final class PendingFile {
+
+    private final long timestamp;
+    private final boolean exists;
+    private final long size;
+    private final long lastModified;
+
+    PendingFile(final Path file) {
+      BasicFileAttributes attributes = null;
+      try {
+        attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      } catch (IOException ignore) {
+        // the file was deleted.
+      }
+      this.timestamp = System.nanoTime();
+      this.exists = attributes != null;
+      this.size = exists ? attributes.size() : -1;
+      this.lastModified = exists ? attributes.lastModifiedTime().toMillis() : -1;
+    }
+
+    boolean isSameState(PendingFile other) {
+      return exists == other.exists && size == other.size && lastModified == other.lastModified;
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 Thiago Gutenberg Carvalho da Costa
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.restnext.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DirectoryWatcherTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @After
+  public void tearDown() {
+    DirectoryWatcher.INSTANCE.stop();
+  }
+
+  @Test
+  public void coalesceEventsOfTheSameFile() throws IOException, InterruptedException {
+    final Path directory = folder.newFolder("watched").toPath();
+    final RecordingListener listener = new RecordingListener();
+
+    DirectoryWatcher.INSTANCE.register(directory, "*.jar", Duration.ofMillis(300), listener);
+    assertTrue(DirectoryWatcher.INSTANCE.isRunning());
+
+    Path jar = directory.resolve("routes.jar");
+    Files.write(jar, "first".getBytes(StandardCharsets.UTF_8));
+    Files.write(jar, "second".getBytes(StandardCharsets.UTF_8));
+    Files.write(directory.resolve("ignored.txt"), "ignored".getBytes(StandardCharsets.UTF_8));
+
+    assertEquals("change:routes.jar", listener.events.poll(30, TimeUnit.SECONDS));
+    // no other notification for the same write burst.
+    assertNull(listener.events.poll(1, TimeUnit.SECONDS));
+
+    Files.delete(jar);
+    assertEquals("delete:routes.jar", listener.events.poll(30, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void stopReleasesTheWatcherThread() throws IOException, InterruptedException {
+    final Path directory = folder.newFolder("stopped").toPath();
+    final RecordingListener listener = new RecordingListener();
+
+    DirectoryWatcher.INSTANCE.register(directory, "*.jar", Duration.ZERO, listener);
+    Files.write(directory.resolve("routes.jar"), "jar".getBytes(StandardCharsets.UTF_8));
+    assertEquals("change:routes.jar", listener.events.poll(30, TimeUnit.SECONDS));
+
+    DirectoryWatcher.INSTANCE.unregister(directory, listener);
+    DirectoryWatcher.INSTANCE.stop();
+
+    assertFalse(DirectoryWatcher.INSTANCE.isRunning());
+    // the listeners are notified by the watcher thread, it must have ended.
+    assertFalse(listener.thread.isAlive());
+  }
+
+  @Test
+  public void lastUnregisterReleasesTheWatcherThread() throws IOException {
+    final Path first = folder.newFolder("first").toPath();
+    final Path second = folder.newFolder("second").toPath();
+    final RecordingListener listener = new RecordingListener();
+
+    DirectoryWatcher.INSTANCE.register(first, "*.jar", Duration.ZERO, listener);
+    DirectoryWatcher.INSTANCE.register(second, "*.jar", Duration.ZERO, listener);
+
+    DirectoryWatcher.INSTANCE.unregister(first, listener);
+    assertTrue(DirectoryWatcher.INSTANCE.isRunning());
+    DirectoryWatcher.INSTANCE.unregister(second, listener);
+    assertFalse(DirectoryWatcher.INSTANCE.isRunning());
+  }
+
+  @Test
+  public void releasedWatcherThreadStopsWhenANewOneIsStarted()
+      throws IOException, InterruptedException {
+    final Path first = folder.newFolder("released").toPath();
+    final Path second = folder.newFolder("started").toPath();
+    final RecordingListener listener = new RecordingListener();
+    final RecordingListener replaced = new RecordingListener() {
+      @Override
+      public void onChange(Path file) {
+        super.onChange(file);
+        // released and registered again from the watcher thread itself.
+        DirectoryWatcher.INSTANCE.unregister(first, this);
+        try {
+          DirectoryWatcher.INSTANCE.register(second, "*.jar", Duration.ZERO, listener);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    };
+
+    DirectoryWatcher.INSTANCE.register(first, "*.jar", Duration.ZERO, replaced);
+    Files.write(first.resolve("first.jar"), "jar".getBytes(StandardCharsets.UTF_8));
+    Files.write(first.resolve("second.jar"), "jar".getBytes(StandardCharsets.UTF_8));
+    assertTrue(replaced.events.poll(30, TimeUnit.SECONDS).startsWith("change:"));
+
+    replaced.thread.join(TimeUnit.SECONDS.toMillis(30));
+    assertFalse(replaced.thread.isAlive());
+    assertTrue(DirectoryWatcher.INSTANCE.isRunning());
+
+    Files.write(second.resolve("routes.jar"), "jar".getBytes(StandardCharsets.UTF_8));
+    assertEquals("change:routes.jar", listener.events.poll(30, TimeUnit.SECONDS));
+    // the released thread did not notify the other pending file.
+    assertNull(replaced.events.poll(1, TimeUnit.SECONDS));
+  }
+
+  private static class RecordingListener implements DirectoryWatcher.Listener {
+
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+    private volatile Thread thread;
+
+    @Override
+    public void onChange(Path file) {
+      thread = Thread.currentThread();
+      events.add("change:" + file.getFileName());
+    }
+
+    @Override
+    public void onDelete(Path file) {
+      events.add("delete:" + file.getFileName());
+    }
+
+    @Override
+    public void onOverflow(Path directory) {
+      events.add("overflow:" + directory.getFileName());
+    }
+  }
+}